@@ -0,0 +1,96 @@
+package com.github.agubler.changelog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the classification and jira linking of synthetic commit messages, cycling through a pool of messages with
+ * a mix of pull request merges (with none, one or several jira keys) and plain commits. The legacy benchmark is the
+ * per commit pattern compilation and splitting the classifier replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassifierBenchmark {
+
+    @Param({"1048576"})
+    public int messageCount;
+
+    private String[] messages;
+
+    private CommitMessageClassifier classifier;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        messages = new String[messageCount];
+        for (int i = 0; i < messageCount; i++) {
+            messages[i] = message(random, i);
+        }
+        classifier = new CommitMessageClassifier(true, "https://jira.example.com");
+    }
+
+    /**
+     * Returns a synthetic commit message, three in four are pull request merges
+     */
+    static String message(Random random, int number) {
+        if (random.nextInt(4) == 0) {
+            return "Fix typo in the readme for change " + number + "\n\nSigned-off-by: Developer";
+        }
+        StringBuilder title = new StringBuilder("Change ").append(number);
+        for (int keys = random.nextInt(3); keys > 0; keys--) {
+            title.append(" for ABC-").append(random.nextInt(100000));
+        }
+        return "Merge pull request #" + number + " from agubler/feature-" + number + "\n\n" + title;
+    }
+
+    private String nextMessage() {
+        String message = messages[next];
+        next = (next + 1) % messages.length;
+        return message;
+    }
+
+    @Benchmark
+    public Object classify() {
+        ChangeLogEntry entry = classifier.classify(nextMessage());
+        return entry != null ? classifier.linkJiraReferences(entry.getTitle()) : null;
+    }
+
+    @Benchmark
+    public Object legacy() {
+        String message = nextMessage();
+        Pattern pattern = Pattern.compile("^Merge pull request #.*", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(message);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String[] mergeMessageArray = message.split("\\n\\n");
+        String prNumber = mergeMessageArray[0].split("#")[1].split(" ")[0];
+        String title = mergeMessageArray[1];
+        Pattern jiraPattern = Pattern.compile("(\\w\\w\\w-\\d+)");
+        Matcher jiraMatcher = jiraPattern.matcher(title);
+        if (jiraMatcher.find()) {
+            title = title.replaceAll("(\\w\\w\\w-\\d+)", "[" + jiraMatcher.group(0) + "](https://jira.example.com/browse/" + jiraMatcher.group(0) + ")");
+        }
+        return prNumber + title;
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.agubler.changelog;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.eclipse.egit.github.core.client.GsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the change log as a string and encoding it in memory with rendering it straight into a base64
+ * encoder, for synthetic histories of releases x entries (up to 50k entries). Run with "-prof gc" to compare the
+ * allocation as well as the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RenderBenchmark {
+
+    private static final String PULL_REQUEST_URL = "https://github.com/agubler/changelog/pull/";
+
+    @Param({"50", "500"})
+    public int releases;
+
+    @Param({"100"})
+    public int entriesPerRelease;
+
+    @Param({"false", "true"})
+    public boolean linkJira;
+
+    private List<ChangeLogRelease> changeLog;
+
+    private CommitMessageClassifier classifier;
+
+    private MarkdownRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        changeLog = new ArrayList<ChangeLogRelease>(releases);
+        int number = releases * entriesPerRelease;
+        for (int i = 0; i < releases; i++) {
+            ChangeLogRelease release = new ChangeLogRelease();
+            release.setTitle("1." + (releases - i) + ".0");
+            release.setDate(new Date(1400000000000L - i * 86400000L));
+            for (int j = 0; j < entriesPerRelease; j++, number--) {
+                release.getEntries().add(new ChangeLogEntry(Integer.toString(number), "Change number " + number + " for ABC-" + number));
+            }
+            changeLog.add(release);
+        }
+        classifier = new CommitMessageClassifier(linkJira, "https://jira.example.com");
+        renderer = new MarkdownRenderer(PULL_REQUEST_URL, classifier);
+    }
+
+    /**
+     * The change log built by string concatenation, then copied to bytes, encoded and copied into the JSON request
+     */
+    @Benchmark
+    public int concatenated() throws IOException {
+        String changeLogText = "## Change Log\n";
+        for (ChangeLogRelease release : changeLog) {
+            String releaseText = MarkdownRenderer.releaseTitle(release.getTitle()) + release.getDate().toString() + ")\n";
+            for (ChangeLogEntry entry : release.getEntries()) {
+                releaseText = releaseText + "- [#" + entry.getNumber() + "](" + PULL_REQUEST_URL + entry.getNumber() + ") " + classifier.linkJiraReferences(entry.getTitle()) + "\n";
+            }
+            changeLogText = changeLogText + releaseText;
+        }
+        GitHubFileContentRequest request = new GitHubFileContentRequest();
+        request.setContent(new String(Base64.encodeBase64(changeLogText.getBytes("UTF-8")), "UTF-8"));
+        return GsonUtils.toJson(request).getBytes("UTF-8").length;
+    }
+
+    /**
+     * The change log rendered straight into the base64 encoder
+     */
+    @Benchmark
+    public long streamed() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new Base64OutputStream(output, true, 0, new byte[0]), "UTF-8"));
+        renderer.render(writer, null, changeLog, "");
+        writer.close();
+        return output.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sorting shuffled tags newest first, with the {@link TagComparator} parsing on every comparison and with
+ * the pre-parsed {@link VersionKey}s
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TagSortBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tagCount;
+
+    private List<RepositoryTag> shuffled;
+
+    private List<RepositoryTag> tags;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        shuffled = new ArrayList<RepositoryTag>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            RepositoryTag tag = new RepositoryTag();
+            tag.setName("asset-version-" + random.nextInt(10) + "." + random.nextInt(100) + "." + random.nextInt(1000));
+            shuffled.add(tag);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        tags = new ArrayList<RepositoryTag>(shuffled);
+    }
+
+    @Benchmark
+    public List<RepositoryTag> tagComparator() {
+        Collections.sort(tags, Collections.reverseOrder(new TagComparator()));
+        return tags;
+    }
+
+    @Benchmark
+    public List<RepositoryTag> versionKey() {
+        VersionKey.sortNewestFirst(tags);
+        return tags;
+    }
+}
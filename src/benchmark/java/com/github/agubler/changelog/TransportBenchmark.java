@@ -0,0 +1,131 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures a request to the local stub server with the default transport of the client, and over a
+ * {@link GitHubTransport} that reuses the connection and requests a compressed response. The body is about the size of
+ * a small compare or of a large compare with its patches; it is compressed once up front, as github's time compressing
+ * is not the client's, and sent over the loopback at full speed or paced to the bandwidth of a link to github.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"2048", "524288"})
+    public int bodySize;
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    /**
+     * The bandwidth the body is sent at in megabits per second, 0 for the full speed of the loopback
+     */
+    @Param({"0", "100"})
+    public int linkMbps;
+
+    private GitHubStubServer server;
+
+    private RepositoryService repositoryService;
+
+    private RepositoryId repositoryId;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; description.length() < bodySize; i++) {
+            description.append("Merge pull request #").append(i).append(" from agubler/change-").append(i).append(' ');
+        }
+        final byte[] body = ("{\"name\":\"changelog\",\"description\":\"" + description + "\"}").getBytes("UTF-8");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(body);
+        gzip.close();
+        final byte[] compressedBody = compressed.toByteArray();
+
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                byte[] response = body;
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    response = compressedBody;
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, response.length);
+                send(exchange.getResponseBody(), response);
+            }
+        });
+        server.start();
+
+        ChangeLogGitHubClient client = server.createClient();
+        if (pooled) {
+            client.setTransport(new GitHubTransport());
+        }
+        repositoryService = new RepositoryService(client);
+        repositoryId = new RepositoryId("agubler", "changelog");
+    }
+
+    /**
+     * Writes the body, pacing it to the bandwidth of the link
+     */
+    private void send(OutputStream out, byte[] response) throws IOException {
+        int chunk = linkMbps > 0 ? linkMbps * 1000 / 8 : response.length;
+        try {
+            for (int offset = 0; offset < response.length; offset += chunk) {
+                out.write(response, offset, Math.min(chunk, response.length - offset));
+                out.flush();
+                if (linkMbps > 0) {
+                    //a millisecond per chunk of the bytes the link carries in a millisecond
+                    Thread.sleep(1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clearRequests() {
+        server.getRequests().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public Repository request() throws IOException {
+        return repositoryService.getRepository(repositoryId);
+    }
+}
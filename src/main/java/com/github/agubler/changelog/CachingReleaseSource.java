@@ -0,0 +1,68 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Shares the tags, branches and releases of a repository between the builds through the {@link SharedMetadataCache}.
+ * Releases between two commits never change and are kept until evicted. Tags and branches move, so builds only share
+ * a fetch in progress and otherwise refetch them, which conditional requests keep cheap. Callers get their own copies,
+ * which they may modify.
+ */
+public class CachingReleaseSource implements ReleaseSource {
+
+    private final ReleaseSource releaseSource;
+
+    private final SharedMetadataCache cache;
+
+    /**
+     * Identifies the repository in the cache keys
+     */
+    private final String keyPrefix;
+
+    /**
+     * Constructor; takes the source to cache
+     *
+     * @param releaseSource the source of the releases
+     * @param cache the shared cache
+     * @param repositoryKey identifies the repository, including the github host
+     */
+    public CachingReleaseSource(ReleaseSource releaseSource, SharedMetadataCache cache, String repositoryKey) {
+        this.releaseSource = releaseSource;
+        this.cache = cache;
+        this.keyPrefix = repositoryKey + ":";
+    }
+
+    public List<RepositoryTag> getTags(final String prefix) throws IOException {
+        List<RepositoryTag> tags = cache.share(keyPrefix + "tags:" + prefix, new Callable<List<RepositoryTag>>() {
+            public List<RepositoryTag> call() throws IOException {
+                return releaseSource.getTags(prefix);
+            }
+        });
+        return new ArrayList<RepositoryTag>(tags);
+    }
+
+    public String getBranchSha(final String branchName) throws IOException {
+        return cache.share(keyPrefix + "branch:" + branchName, new Callable<String>() {
+            public String call() throws IOException {
+                return releaseSource.getBranchSha(branchName);
+            }
+        });
+    }
+
+    public ChangeLogRelease getRelease(final String baseSha, final String headSha) throws IOException {
+        ChangeLogRelease release = cache.get(keyPrefix + "release:" + baseSha + ".." + headSha, 0, new Callable<ChangeLogRelease>() {
+            public ChangeLogRelease call() throws IOException {
+                return releaseSource.getRelease(baseSha, headSha);
+            }
+        });
+        ChangeLogRelease copy = new ChangeLogRelease();
+        copy.setDate(release.getDate());
+        copy.setEntries(new ArrayList<ChangeLogEntry>(release.getEntries()));
+        return copy;
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.agubler.changelog;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pull request entry in a release of the change log
+ */
+public class ChangeLogEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The pull request number
+     */
+    private String number;
+
+    /**
+     * The pull request title, as written in the merge commit message
+     */
+    private String title;
+
+    /**
+     * The jira keys referenced in the title, in order of appearance
+     */
+    private List<String> jiraKeys = new ArrayList<String>();
+
+    /**
+     * The labels of the pull request, empty if the entry was parsed from a merge commit message
+     */
+    private List<String> labels = new ArrayList<String>();
+
+    /**
+     * Default constructor
+     */
+    public ChangeLogEntry() {
+    }
+
+    /**
+     * Constructor; takes the pull request details
+     *
+     * @param number the pull request number
+     * @param title the pull request title
+     */
+    public ChangeLogEntry(String number, String title) {
+        this.number = number;
+        this.title = title;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    public void setNumber(String number) {
+        this.number = number;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<String> getJiraKeys() {
+        return jiraKeys;
+    }
+
+    public void setJiraKeys(List<String> jiraKeys) {
+        this.jiraKeys = jiraKeys;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public void setLabels(List<String> labels) {
+        this.labels = labels;
+    }
+}
@@ -0,0 +1,246 @@
+package com.github.agubler.changelog;
+
+import hudson.model.Run;
+import hudson.util.StreamBuildListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A change log generation run by the {@link ChangeLogQueue} on behalf of one or more builds. Builds that request the
+ * same change log while the generation is still queued are attached to it, and the latest of their jobs is the one
+ * that runs. The generation is kept by the build actions, so only its outcome is persisted with the builds.
+ */
+public class ChangeLogGeneration {
+
+    public static final String QUEUED = "queued";
+
+    public static final String RUNNING = "running";
+
+    public static final String SUCCEEDED = "succeeded";
+
+    public static final String UNSTABLE = "unstable";
+
+    public static final String FAILED = "failed";
+
+    /**
+     * Identifies the change log, the repositories, branch and file
+     */
+    private final String key;
+
+    /**
+     * queued, running, succeeded, unstable or failed
+     */
+    private volatile String status = QUEUED;
+
+    /**
+     * The reason the generation failed, null if it did not
+     */
+    private volatile String message;
+
+    /**
+     * The time the generation was first requested, in milliseconds
+     */
+    private final long submitted;
+
+    /**
+     * The time the generation started, 0 until it starts
+     */
+    private volatile long started;
+
+    /**
+     * The time the generation finished, 0 until it finishes
+     */
+    private volatile long finished;
+
+    /**
+     * The number of builds the generation was requested by
+     */
+    private int requests;
+
+    /**
+     * The build log of the generation, null until it finishes
+     */
+    private volatile String log;
+
+    /**
+     * The metrics of the generation, null until it starts
+     */
+    private volatile ChangeLogMetrics metrics;
+
+    /**
+     * The generation to run, the one requested last
+     */
+    private transient ChangeLogQueue.Job job;
+
+    /**
+     * The builds the generation was requested by
+     */
+    private transient List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>();
+
+    /**
+     * The build log written while the generation runs
+     */
+    private transient volatile ByteArrayOutputStream logBuffer;
+
+    /**
+     * Released when the generation finishes
+     */
+    private transient CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * Constructor; takes the change log the generation is for
+     *
+     * @param key the key of the change log
+     */
+    ChangeLogGeneration(String key) {
+        this.key = key;
+        this.submitted = System.currentTimeMillis();
+    }
+
+    /**
+     * Requests the generation for a build, replacing the job of any earlier request
+     *
+     * @param job The generation to run
+     * @param build The build requesting it, optional
+     */
+    synchronized void request(ChangeLogQueue.Job job, Run<?, ?> build) {
+        this.job = job;
+        this.requests++;
+        if (build != null) {
+            builds.add(build);
+        }
+    }
+
+    /**
+     * Runs the job requested last, then attaches its metrics to the builds that requested it
+     */
+    void run() {
+        ChangeLogQueue.Job generationJob;
+        synchronized (this) {
+            generationJob = job;
+            job = null;
+            logBuffer = new ByteArrayOutputStream();
+            metrics = new ChangeLogMetrics();
+            started = System.currentTimeMillis();
+            status = RUNNING;
+        }
+
+        StreamBuildListener listener = new StreamBuildListener(logBuffer, Charset.forName("UTF-8"));
+        int coalesced = getRequests();
+        if (coalesced > 1) {
+            listener.getLogger().println("[INFO] " + coalesced + " requests for the change log coalesced into one generation");
+        }
+        try {
+            generationJob.run(listener, metrics);
+            status = metrics.isSucceeded() ? SUCCEEDED : UNSTABLE;
+        } catch (Exception e) {
+            message = e.getMessage();
+            status = FAILED;
+            listener.getLogger().println("[ERROR] Unable to generate github change log: " + e.getMessage());
+        } finally {
+            metrics.endPhase();
+            ChangeLogMetricsRootAction metricsRootAction = ChangeLogMetricsRootAction.get();
+            if (metricsRootAction != null) {
+                metricsRootAction.record(metrics);
+            }
+            finished = System.currentTimeMillis();
+            listener.getLogger().println("[INFO] Change log generation " + status + " in " + (finished - started) + " ms");
+
+            for (Run<?, ?> build : getBuilds()) {
+                build.addAction(new ChangeLogMetricsAction(metrics));
+                try {
+                    build.save();
+                } catch (IOException e) {
+                    listener.getLogger().println("[WARNING] Unable to save " + build.getFullDisplayName() + ": " + e.getMessage());
+                }
+            }
+            log = readLog();
+            done.countDown();
+        }
+    }
+
+    /**
+     * Waits for the generation to finish
+     *
+     * @param timeout The longest time to wait
+     * @param unit The unit of the timeout
+     * @return true if the generation finished, false if the timeout passed first
+     * @throws InterruptedException
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        //a generation read back with its build finished long ago
+        return done == null || done.await(timeout, unit);
+    }
+
+    public boolean isFinished() {
+        return finished > 0;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public long getFinished() {
+        return finished;
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public ChangeLogMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the build log of the generation, so far if it is still running
+     *
+     * @return The log text
+     */
+    public String getLog() {
+        if (log != null) {
+            return log;
+        }
+        return logBuffer != null ? readLog() : "";
+    }
+
+    /**
+     * Returns the builds the generation was requested by
+     *
+     * @return The builds
+     */
+    private synchronized List<Run<?, ?>> getBuilds() {
+        return new ArrayList<Run<?, ?>>(builds);
+    }
+
+    private String readLog() {
+        try {
+            return logBuffer.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
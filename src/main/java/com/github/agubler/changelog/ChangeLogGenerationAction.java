@@ -0,0 +1,40 @@
+package com.github.agubler.changelog;
+
+import hudson.model.Action;
+
+/**
+ * Links a build to the background generation of its change log, shown in the summary of the build page with the log
+ * of the generation at changelog-generation/
+ */
+public class ChangeLogGenerationAction implements Action {
+
+    /**
+     * The generation the build requested, shared with the builds coalesced into it
+     */
+    private final ChangeLogGeneration generation;
+
+    /**
+     * Constructor; takes the generation the build requested
+     *
+     * @param generation the generation
+     */
+    public ChangeLogGenerationAction(ChangeLogGeneration generation) {
+        this.generation = generation;
+    }
+
+    public ChangeLogGeneration getGeneration() {
+        return generation;
+    }
+
+    public String getIconFileName() {
+        return "clipboard.png";
+    }
+
+    public String getDisplayName() {
+        return "Github Change Log Generation";
+    }
+
+    public String getUrlName() {
+        return "changelog-generation";
+    }
+}
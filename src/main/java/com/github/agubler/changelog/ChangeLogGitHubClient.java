@@ -0,0 +1,540 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.RequestException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Extends the {@link GitHubClient} to make conditional GET requests, replaying the cached response body when github
+ * responds "304 Not Modified", to schedule requests within the github rate limit, to make the requests over the
+ * pooled, compressed connections of the host's {@link GitHubTransport} and to record the requests and bytes of each
+ * endpoint
+ */
+public class ChangeLogGitHubClient extends GitHubClient {
+
+    /**
+     * The ETag response header
+     */
+    private static final String HEADER_ETAG = "ETag";
+
+    /**
+     * The Last-Modified response header
+     */
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * The If-None-Match request header
+     */
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * The If-Modified-Since request header
+     */
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * The endpoints whose responses change between builds and are worth validating. The responses of every other
+     * endpoint, such as compares and commits between fixed shas, never change and are streamed rather than cached.
+     */
+    private static final Set<String> CONDITIONAL_ENDPOINTS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "repository", "tags", "pulls", "contents", "git/refs", "git/matching-refs", "git/ref")));
+
+    /**
+     * The cache of responses to validate, optional
+     */
+    private ConditionalRequestCache conditionalRequestCache;
+
+    /**
+     * The scheduler for the github host, optional
+     */
+    private RateLimitScheduler rateLimitScheduler;
+
+    /**
+     * The metrics of the build, optional
+     */
+    private ChangeLogMetrics metrics;
+
+    /**
+     * The connections to the github host, optional
+     */
+    private GitHubTransport transport;
+
+    /**
+     * The retry delay github asked for in the last response received by the thread, 0 if not rate limited
+     */
+    private final ThreadLocal<Long> retryDelay = new ThreadLocal<Long>();
+
+    /**
+     * Constructor for github.com
+     */
+    public ChangeLogGitHubClient() {
+        super();
+    }
+
+    /**
+     * Constructor with the github host
+     * @param hostname The github host
+     */
+    public ChangeLogGitHubClient(String hostname) {
+        super(hostname);
+    }
+
+    /**
+     * Constructor with the github host, port and scheme
+     * @param hostname The github host
+     * @param port The port
+     * @param scheme The scheme, http or https
+     */
+    public ChangeLogGitHubClient(String hostname, int port, String scheme) {
+        super(hostname, port, scheme);
+    }
+
+    /**
+     * Sets the cache used to make conditional requests
+     *
+     * @param conditionalRequestCache the conditional request cache
+     * @return this client
+     */
+    public ChangeLogGitHubClient setConditionalRequestCache(ConditionalRequestCache conditionalRequestCache) {
+        this.conditionalRequestCache = conditionalRequestCache;
+        return this;
+    }
+
+    /**
+     * Sets the scheduler that requests wait on to stay within the rate limit
+     *
+     * @param rateLimitScheduler the scheduler for the github host
+     * @return this client
+     */
+    public ChangeLogGitHubClient setRateLimitScheduler(RateLimitScheduler rateLimitScheduler) {
+        this.rateLimitScheduler = rateLimitScheduler;
+        return this;
+    }
+
+    /**
+     * Sets the metrics the requests are recorded in
+     *
+     * @param metrics the metrics of the build
+     * @return this client
+     */
+    public ChangeLogGitHubClient setMetrics(ChangeLogMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Sets the transport the requests are made over
+     *
+     * @param transport the transport of the github host
+     * @return this client
+     */
+    public ChangeLogGitHubClient setTransport(GitHubTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    @Override
+    public GitHubResponse get(final GitHubRequest request) throws IOException {
+        return schedule(new Request<GitHubResponse>() {
+            public GitHubResponse execute() throws IOException {
+                return conditionalGet(request);
+            }
+        });
+    }
+
+    @Override
+    public <V> V post(final String uri, final Object params, final Type type) throws IOException {
+        return schedule(new Request<V>() {
+            public V execute() throws IOException {
+                return ChangeLogGitHubClient.super.post(uri, params, type);
+            }
+        });
+    }
+
+    @Override
+    public <V> V put(final String uri, final Object params, final Type type) throws IOException {
+        return schedule(new Request<V>() {
+            public V execute() throws IOException {
+                return ChangeLogGitHubClient.super.put(uri, params, type);
+            }
+        });
+    }
+
+    /**
+     * Put the body to the uri, streaming it into the request rather than serializing it to a string first
+     *
+     * @param uri The uri
+     * @param body The JSON request body
+     * @param type The type of the response
+     * @return The response
+     * @throws IOException
+     */
+    public <V> V putStream(final String uri, final StreamingBody body, final Type type) throws IOException {
+        return schedule(new Request<V>() {
+            public V execute() throws IOException {
+                return sendStream(createPut(uri), body, type);
+            }
+        });
+    }
+
+    /**
+     * Post the body to the uri, streaming it into the request rather than serializing it to a string first
+     *
+     * @param uri The uri
+     * @param body The JSON request body
+     * @param type The type of the response
+     * @return The response
+     * @throws IOException
+     */
+    public <V> V postStream(final String uri, final StreamingBody body, final Type type) throws IOException {
+        return schedule(new Request<V>() {
+            public V execute() throws IOException {
+                return sendStream(createPost(uri), body, type);
+            }
+        });
+    }
+
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        super.updateRateLimits(request);
+        //every response passes through here, including those of retried and conditional requests
+        if (metrics != null) {
+            metrics.request(ChangeLogMetrics.endpoint(request.getURL().getPath()));
+        }
+        if (rateLimitScheduler != null) {
+            retryDelay.set(rateLimitScheduler.update(request));
+        }
+        return this;
+    }
+
+    @Override
+    protected HttpURLConnection configureRequest(HttpURLConnection request) {
+        super.configureRequest(request);
+        if (transport != null) {
+            transport.configure(request);
+        }
+        return request;
+    }
+
+    @Override
+    protected InputStream getStream(HttpURLConnection request) throws IOException {
+        InputStream stream = super.getStream(request);
+        if (stream == null) {
+            return null;
+        }
+        if (metrics != null) {
+            //the bytes are counted as sent, before they are decompressed
+            stream = new CountingInputStream(stream, ChangeLogMetrics.endpoint(request.getURL().getPath()));
+        }
+        return transport != null ? transport.open(request, stream) : stream;
+    }
+
+    /**
+     * Makes the request once the scheduler allows it, retrying if it is rate limited
+     *
+     * @param request The request
+     * @return The request result
+     * @throws IOException if the request fails or is still rate limited after the maximum retries
+     */
+    private <V> V schedule(Request<V> request) throws IOException {
+        if (rateLimitScheduler == null) {
+            return execute(request);
+        }
+        for (int attempt = 0; ; attempt++) {
+            rateLimitScheduler.acquire();
+            retryDelay.remove();
+            try {
+                return execute(request);
+            } catch (IOException e) {
+                Long delay = retryDelay.get();
+                boolean rateLimited = delay != null && delay > 0;
+                //secondary rate limits are not always sent with a Retry-After header
+                boolean secondaryRateLimited = e instanceof RequestException && ((RequestException) e).getStatus() == 403 &&
+                        e.getMessage() != null && e.getMessage().toLowerCase().contains("rate limit");
+                if (!(rateLimited || secondaryRateLimited) || attempt >= RateLimitScheduler.MAX_RETRIES) {
+                    throw e;
+                }
+                rateLimitScheduler.backoff(rateLimited ? delay : 0, attempt);
+            }
+        }
+    }
+
+    /**
+     * Makes the request over a connection of the transport's pool
+     *
+     * @param request The request
+     * @return The request result
+     * @throws IOException
+     */
+    private <V> V execute(Request<V> request) throws IOException {
+        if (transport == null) {
+            return request.execute();
+        }
+        Semaphore connection = transport.acquire();
+        try {
+            return request.execute();
+        } finally {
+            connection.release();
+        }
+    }
+
+    /**
+     * Makes the GET request, conditionally if there is a cached response
+     *
+     * @param request The request
+     * @return The response
+     * @throws IOException
+     */
+    private GitHubResponse conditionalGet(GitHubRequest request) throws IOException {
+        String uri = request.generateUri();
+        if (conditionalRequestCache == null || !isConditional(uri)) {
+            return super.get(request);
+        }
+
+        String accept = request.getResponseContentType();
+        String cacheKey = baseUri + uri + (accept != null ? " " + accept : "");
+        ConditionalRequestCache.CachedResponse cachedResponse = conditionalRequestCache.getResponse(cacheKey);
+
+        HttpURLConnection httpRequest = createGet(uri);
+        if (accept != null) {
+            httpRequest.setRequestProperty(HEADER_ACCEPT, accept);
+        }
+        if (cachedResponse != null) {
+            if (cachedResponse.getEtag() != null) {
+                httpRequest.setRequestProperty(HEADER_IF_NONE_MATCH, cachedResponse.getEtag());
+            }
+            if (cachedResponse.getLastModified() != null) {
+                httpRequest.setRequestProperty(HEADER_IF_MODIFIED_SINCE, cachedResponse.getLastModified());
+            }
+        }
+
+        final int code = httpRequest.getResponseCode();
+        updateRateLimits(httpRequest);
+
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cachedResponse != null) {
+            conditionalRequestCache.notModified();
+            return new NotModifiedResponse(httpRequest, getBody(request, toStream(cachedResponse.getBody())), cachedResponse);
+        }
+        if (isOk(code)) {
+            String body = read(getStream(httpRequest));
+            GitHubResponse response = new GitHubResponse(httpRequest, getBody(request, toStream(body)));
+            String etag = httpRequest.getHeaderField(HEADER_ETAG);
+            String lastModified = httpRequest.getHeaderField(HEADER_LAST_MODIFIED);
+            if (etag != null || lastModified != null) {
+                ConditionalRequestCache.CachedResponse validated = new ConditionalRequestCache.CachedResponse(cacheKey, etag, lastModified, body);
+                validated.setLinks(response.getFirst(), response.getPrevious(), response.getNext(), response.getLast());
+                conditionalRequestCache.putResponse(validated);
+            }
+            return response;
+        }
+        if (isEmpty(code)) {
+            return new GitHubResponse(httpRequest, null);
+        }
+        throw createException(getStream(httpRequest), code, httpRequest.getResponseMessage());
+    }
+
+    /**
+     * Indicates if the responses of a uri are validated with conditional requests
+     *
+     * @param uri The request uri
+     * @return true if the uri is of an endpoint whose responses change
+     */
+    static boolean isConditional(String uri) {
+        int query = uri.indexOf('?');
+        return CONDITIONAL_ENDPOINTS.contains(ChangeLogMetrics.endpoint(query >= 0 ? uri.substring(0, query) : uri));
+    }
+
+    /**
+     * Streams the body as the request content and parses the response
+     *
+     * @param request The request
+     * @param body The JSON request body
+     * @param type The type of the response
+     * @return The response
+     * @throws IOException
+     */
+    private <V> V sendStream(HttpURLConnection request, StreamingBody body, Type type) throws IOException {
+        request.setDoOutput(true);
+        request.setRequestProperty(HEADER_CONTENT_TYPE, "application/json; charset=utf-8");
+        //a fixed length keeps the connection from buffering the whole body to work out the Content-Length
+        long length = body.getLength();
+        request.setFixedLengthStreamingMode(length);
+        if (metrics != null) {
+            metrics.sent(ChangeLogMetrics.endpoint(request.getURL().getPath()), length);
+        }
+        OutputStream output = request.getOutputStream();
+        try {
+            body.writeTo(output);
+        } finally {
+            output.close();
+        }
+
+        final int code = request.getResponseCode();
+        updateRateLimits(request);
+        if (isOk(code)) {
+            if (type != null) {
+                return parseJson(getStream(request), type);
+            }
+            return null;
+        }
+        if (isEmpty(code)) {
+            return null;
+        }
+        throw createException(getStream(request), code, request.getResponseMessage());
+    }
+
+    /**
+     * Reads the response body
+     *
+     * @param stream The response stream
+     * @return The body
+     * @throws IOException
+     */
+    private static String read(InputStream stream) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toString("UTF-8");
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static InputStream toStream(String body) throws IOException {
+        return new ByteArrayInputStream(body.getBytes("UTF-8"));
+    }
+
+    /**
+     * A request body that is written out as it is generated, it must be able to write itself more than once
+     */
+    public interface StreamingBody {
+
+        /**
+         * Returns the length of the body in bytes
+         *
+         * @return The length
+         * @throws IOException
+         */
+        long getLength() throws IOException;
+
+        /**
+         * Writes the body, exactly {@link #getLength()} bytes
+         *
+         * @param output The request stream
+         * @throws IOException
+         */
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Counts the bytes of a response body, recording them in the metrics once the body is read or closed
+     */
+    private class CountingInputStream extends FilterInputStream {
+
+        private final String endpoint;
+
+        private long count;
+
+        private boolean recorded;
+
+        private CountingInputStream(InputStream stream, String endpoint) {
+            super(stream);
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            } else {
+                record();
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read != -1) {
+                count += read;
+            } else {
+                record();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            super.close();
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                metrics.received(endpoint, count);
+            }
+        }
+    }
+
+    /**
+     * A request made through the scheduler
+     */
+    private interface Request<V> {
+
+        V execute() throws IOException;
+    }
+
+    /**
+     * A response replayed from the cache, the paging links are those of the cached response
+     */
+    private static class NotModifiedResponse extends GitHubResponse {
+
+        private final ConditionalRequestCache.CachedResponse cachedResponse;
+
+        private NotModifiedResponse(HttpURLConnection response, Object body, ConditionalRequestCache.CachedResponse cachedResponse) {
+            super(response, body);
+            this.cachedResponse = cachedResponse;
+        }
+
+        @Override
+        public String getFirst() {
+            return cachedResponse.getFirst();
+        }
+
+        @Override
+        public String getPrevious() {
+            return cachedResponse.getPrevious();
+        }
+
+        @Override
+        public String getNext() {
+            return cachedResponse.getNext();
+        }
+
+        @Override
+        public String getLast() {
+            return cachedResponse.getLast();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.agubler.changelog;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The marker written into the change log that records the last release published, this is a markdown (html) comment
+ * so it is not rendered by github
+ */
+public class ChangeLogMarker {
+
+    /**
+     * The pattern to find the marker within the change log text
+     */
+    private static final Pattern MARKER_PATTERN = Pattern.compile("<!-- github-changelog last-tag:(\\S+) sha:(\\w+) -->");
+
+    /**
+     * The name of the last tag published
+     */
+    private final String tagName;
+
+    /**
+     * The commit sha of the last tag published
+     */
+    private final String sha;
+
+    /**
+     * Constructor; takes the last tag published
+     *
+     * @param tagName the tag name
+     * @param sha the commit sha of the tag
+     */
+    public ChangeLogMarker(String tagName, String sha) {
+        this.tagName = tagName;
+        this.sha = sha;
+    }
+
+    /**
+     * Finds the marker in the change log text
+     *
+     * @param changeLogText The change log text
+     * @return The marker, null if the change log does not contain one
+     */
+    public static ChangeLogMarker parse(String changeLogText) {
+        Matcher matcher = MARKER_PATTERN.matcher(changeLogText);
+        if (matcher.find()) {
+            return new ChangeLogMarker(matcher.group(1), matcher.group(2));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the position of the marked tag in the index, the tag must still point at the same commit
+     *
+     * @param releaseRefIndex The release tags
+     * @return The index of the tag, -1 if the tag no longer exists or has moved
+     */
+    public int indexOf(ReleaseRefIndex releaseRefIndex) {
+        int index = releaseRefIndex.indexOf(tagName);
+        return index >= 0 && sha.equals(releaseRefIndex.get(index).getCommit().getSha()) ? index : -1;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    @Override
+    public String toString() {
+        return "<!-- github-changelog last-tag:" + tagName + " sha:" + sha + " -->";
+    }
+}
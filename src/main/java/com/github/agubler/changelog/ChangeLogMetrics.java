@@ -0,0 +1,324 @@
+package com.github.agubler.changelog;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instrumentation of a change log build: the wall time of each phase, the requests and bytes by github endpoint,
+ * the cache hits and the rate limit left. The releases are fetched concurrently so the requests and bytes are recorded
+ * from any thread.
+ */
+public class ChangeLogMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The wall time of the phases in milliseconds, in the order they ran
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+    /**
+     * The time of the phases of the repositories of a build generating several change logs in milliseconds, summed
+     * over the repositories. The repositories run concurrently within a phase of the build, so their phases are kept
+     * apart from those of the build.
+     */
+    private final Map<String, Long> repositoryPhases = new LinkedHashMap<String, Long>();
+
+    /**
+     * The requests by endpoint, in the order the endpoints were first called
+     */
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<String, Endpoint>();
+
+    /**
+     * The hits and misses by cache
+     */
+    private final Map<String, Cache> caches = new LinkedHashMap<String, Cache>();
+
+    /**
+     * The phase running, null if none is
+     */
+    private String currentPhase;
+
+    /**
+     * The time the running phase started, in milliseconds
+     */
+    private long currentPhaseStart;
+
+    /**
+     * The requests remaining in the rate limit once the build finished, -1 if unknown
+     */
+    private int rateLimitRemaining = -1;
+
+    /**
+     * Indicates if the change log was generated
+     */
+    private boolean succeeded;
+
+    /**
+     * Returns the github endpoint of a request path, the path segment after the repository (two segments for the
+     * git data api) so that requests for different shas and files are counted together
+     *
+     * @param path The request path
+     * @return The endpoint
+     */
+    public static String endpoint(String path) {
+        int repos = path.indexOf("/repos/");
+        String[] segments = (repos >= 0 ? path.substring(repos + 1) : path.replaceFirst("^/api/v3", "").replaceFirst("^/", "")).split("/");
+        if (repos < 0) {
+            return segments[0];
+        }
+        if (segments.length < 4) {
+            return "repository";
+        }
+        if ("git".equals(segments[3]) && segments.length > 4) {
+            return "git/" + segments[4];
+        }
+        return segments[3];
+    }
+
+    /**
+     * Ends the running phase, if any, and starts the next
+     *
+     * @param phase The name of the phase
+     */
+    public synchronized void startPhase(String phase) {
+        endPhase();
+        currentPhase = phase;
+        currentPhaseStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Ends the running phase, if any
+     */
+    public synchronized void endPhase() {
+        if (currentPhase != null) {
+            Long time = phases.get(currentPhase);
+            phases.put(currentPhase, (time != null ? time : 0) + System.currentTimeMillis() - currentPhaseStart);
+            currentPhase = null;
+        }
+    }
+
+    /**
+     * Records a request
+     *
+     * @param endpoint The endpoint requested
+     */
+    public synchronized void request(String endpoint) {
+        countsFor(endpoint).requests++;
+    }
+
+    /**
+     * Records the bytes of a response body
+     *
+     * @param endpoint The endpoint requested
+     * @param bytes The number of bytes received
+     */
+    public synchronized void received(String endpoint, long bytes) {
+        countsFor(endpoint).bytesReceived += bytes;
+    }
+
+    /**
+     * Records the bytes of a request body
+     *
+     * @param endpoint The endpoint requested
+     * @param bytes The number of bytes sent
+     */
+    public synchronized void sent(String endpoint, long bytes) {
+        countsFor(endpoint).bytesSent += bytes;
+    }
+
+    /**
+     * Records the hits and misses of a cache
+     *
+     * @param cache The name of the cache
+     * @param hits The number of hits
+     * @param misses The number of misses
+     */
+    public synchronized void cache(String cache, long hits, long misses) {
+        Cache counts = caches.get(cache);
+        if (counts == null) {
+            counts = new Cache(cache);
+            caches.put(cache, counts);
+        }
+        counts.hits += hits;
+        counts.misses += misses;
+    }
+
+    /**
+     * Adds the metrics of one of the repositories of the build, its phases to the repository phases and its requests
+     * and caches to those of the build
+     *
+     * @param repositoryMetrics The metrics of the repository, its running phase is ended
+     */
+    public void merge(ChangeLogMetrics repositoryMetrics) {
+        repositoryMetrics.endPhase();
+        //copied first so the two metrics are never locked together
+        Map<String, Long> mergedPhases = repositoryMetrics.getPhases();
+        List<Endpoint> mergedEndpoints = repositoryMetrics.getEndpoints();
+        List<Cache> mergedCaches = repositoryMetrics.getCaches();
+        synchronized (this) {
+            for (Map.Entry<String, Long> phase : mergedPhases.entrySet()) {
+                Long time = repositoryPhases.get(phase.getKey());
+                repositoryPhases.put(phase.getKey(), (time != null ? time : 0) + phase.getValue());
+            }
+            for (Endpoint endpoint : mergedEndpoints) {
+                Endpoint counts = countsFor(endpoint.name);
+                counts.requests += endpoint.requests;
+                counts.bytesReceived += endpoint.bytesReceived;
+                counts.bytesSent += endpoint.bytesSent;
+            }
+            for (Cache cache : mergedCaches) {
+                cache(cache.name, cache.hits, cache.misses);
+            }
+        }
+    }
+
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<String, Long>(phases);
+    }
+
+    public synchronized Map<String, Long> getRepositoryPhases() {
+        return new LinkedHashMap<String, Long>(repositoryPhases);
+    }
+
+    public synchronized long getTotalTime() {
+        long total = 0;
+        for (Long time : phases.values()) {
+            total += time;
+        }
+        return total;
+    }
+
+    public synchronized List<Endpoint> getEndpoints() {
+        List<Endpoint> copies = new ArrayList<Endpoint>(endpoints.size());
+        for (Endpoint endpoint : endpoints.values()) {
+            copies.add(endpoint.copy());
+        }
+        return copies;
+    }
+
+    public synchronized long getRequests() {
+        long requests = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            requests += endpoint.requests;
+        }
+        return requests;
+    }
+
+    public synchronized List<Cache> getCaches() {
+        List<Cache> copies = new ArrayList<Cache>(caches.size());
+        for (Cache cache : caches.values()) {
+            copies.add(cache.copy());
+        }
+        return copies;
+    }
+
+    public synchronized int getRateLimitRemaining() {
+        return rateLimitRemaining;
+    }
+
+    public synchronized void setRateLimitRemaining(int rateLimitRemaining) {
+        this.rateLimitRemaining = rateLimitRemaining;
+    }
+
+    public synchronized boolean isSucceeded() {
+        return succeeded;
+    }
+
+    public synchronized void setSucceeded(boolean succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    private Endpoint countsFor(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            endpoint = new Endpoint(name);
+            endpoints.put(name, endpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * The requests made to an endpoint
+     */
+    public static class Endpoint implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        private long requests;
+
+        private long bytesReceived;
+
+        private long bytesSent;
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        private Endpoint copy() {
+            Endpoint copy = new Endpoint(name);
+            copy.requests = requests;
+            copy.bytesReceived = bytesReceived;
+            copy.bytesSent = bytesSent;
+            return copy;
+        }
+    }
+
+    /**
+     * The hits and misses of a cache
+     */
+    public static class Cache implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        private long hits;
+
+        private long misses;
+
+        private Cache(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        private Cache copy() {
+            Cache copy = new Cache(name);
+            copy.hits = hits;
+            copy.misses = misses;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.agubler.changelog;
+
+import hudson.model.Action;
+
+/**
+ * Attaches the metrics of the change log generation to the build, shown in the summary of the build page
+ */
+public class ChangeLogMetricsAction implements Action {
+
+    /**
+     * The metrics of the build
+     */
+    private final ChangeLogMetrics metrics;
+
+    /**
+     * Constructor; takes the metrics of the build
+     *
+     * @param metrics the metrics
+     */
+    public ChangeLogMetricsAction(ChangeLogMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ChangeLogMetrics getMetrics() {
+        return metrics;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Github Change Log Metrics";
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.agubler.changelog;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.UnprotectedRootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the metrics of all the change log builds on the controller and serves them in the prometheus text format
+ * at /github-changelog-metrics/, to users with the overall read permission. The action is unprotected so that a
+ * scraper without that permission is refused with a 403 rather than redirected to the login page.
+ */
+@Extension
+public class ChangeLogMetricsRootAction implements UnprotectedRootAction {
+
+    /**
+     * The url of the metrics under the jenkins root
+     */
+    public static final String URL_NAME = "github-changelog-metrics";
+
+    /**
+     * The prefix of the metric names
+     */
+    private static final String PREFIX = "github_changelog_";
+
+    /**
+     * The number of builds by result
+     */
+    private final Map<String, Long> builds = new TreeMap<String, Long>();
+
+    /**
+     * The wall time of the phases in milliseconds
+     */
+    private final Map<String, Long> phases = new TreeMap<String, Long>();
+
+    /**
+     * The time of the phases of the repositories of multi-repository builds in milliseconds
+     */
+    private final Map<String, Long> repositoryPhases = new TreeMap<String, Long>();
+
+    private final Map<String, Long> requests = new TreeMap<String, Long>();
+
+    private final Map<String, Long> bytesReceived = new TreeMap<String, Long>();
+
+    private final Map<String, Long> bytesSent = new TreeMap<String, Long>();
+
+    private final Map<String, Long> cacheHits = new TreeMap<String, Long>();
+
+    private final Map<String, Long> cacheMisses = new TreeMap<String, Long>();
+
+    /**
+     * The requests remaining in the rate limit after the last build that knew it, -1 if unknown
+     */
+    private int rateLimitRemaining = -1;
+
+    /**
+     * Returns the metrics of the controller
+     *
+     * @return The metrics, null if jenkins is not running
+     */
+    public static ChangeLogMetricsRootAction get() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        ExtensionList<ChangeLogMetricsRootAction> actions = jenkins.getExtensionList(ChangeLogMetricsRootAction.class);
+        return actions.isEmpty() ? null : actions.get(0);
+    }
+
+    /**
+     * Adds the metrics of a build to the totals
+     *
+     * @param metrics The metrics of the build
+     */
+    public synchronized void record(ChangeLogMetrics metrics) {
+        add(builds, metrics.isSucceeded() ? "success" : "failure", 1);
+        for (Map.Entry<String, Long> phase : metrics.getPhases().entrySet()) {
+            add(phases, phase.getKey(), phase.getValue());
+        }
+        for (Map.Entry<String, Long> phase : metrics.getRepositoryPhases().entrySet()) {
+            add(repositoryPhases, phase.getKey(), phase.getValue());
+        }
+        for (ChangeLogMetrics.Endpoint endpoint : metrics.getEndpoints()) {
+            add(requests, endpoint.getName(), endpoint.getRequests());
+            add(bytesReceived, endpoint.getName(), endpoint.getBytesReceived());
+            add(bytesSent, endpoint.getName(), endpoint.getBytesSent());
+        }
+        for (ChangeLogMetrics.Cache cache : metrics.getCaches()) {
+            add(cacheHits, cache.getName(), cache.getHits());
+            add(cacheMisses, cache.getName(), cache.getMisses());
+        }
+        if (metrics.getRateLimitRemaining() >= 0) {
+            rateLimitRemaining = metrics.getRateLimitRemaining();
+        }
+    }
+
+    /**
+     * Writes the totals in the prometheus text format
+     *
+     * @param writer The writer
+     * @throws IOException
+     */
+    public synchronized void writeTo(Writer writer) throws IOException {
+        writeCounter(writer, "builds_total", "Change log builds by result", "result", builds, 1);
+        writeCounter(writer, "phase_seconds_total", "Wall time of the change log build phases", "phase", phases, 1000);
+        writeCounter(writer, "repository_phase_seconds_total", "Time of the phases of the repositories of multi-repository builds",
+                "phase", repositoryPhases, 1000);
+        writeCounter(writer, "requests_total", "Github api responses by endpoint", "endpoint", requests, 1);
+        writeCounter(writer, "received_bytes_total", "Github api response bytes by endpoint", "endpoint", bytesReceived, 1);
+        writeCounter(writer, "sent_bytes_total", "Github api streamed request bytes by endpoint", "endpoint", bytesSent, 1);
+        writeCounter(writer, "cache_hits_total", "Cache hits by cache", "cache", cacheHits, 1);
+        writeCounter(writer, "cache_misses_total", "Cache misses by cache", "cache", cacheMisses, 1);
+        if (rateLimitRemaining >= 0) {
+            writer.write("# HELP " + PREFIX + "rate_limit_remaining Github api requests remaining after the last build\n");
+            writer.write("# TYPE " + PREFIX + "rate_limit_remaining gauge\n");
+            writer.write(PREFIX + "rate_limit_remaining " + rateLimitRemaining + "\n");
+        }
+    }
+
+    /**
+     * Serves the totals
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        //the endpoints and the rate limit of the token are not for anonymous users
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null) {
+            jenkins.checkPermission(Jenkins.READ);
+        }
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        PrintWriter writer = rsp.getWriter();
+        writeTo(writer);
+        writer.flush();
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Github Change Log Metrics";
+    }
+
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    private static void add(Map<String, Long> totals, String key, long value) {
+        Long total = totals.get(key);
+        totals.put(key, (total != null ? total : 0) + value);
+    }
+
+    /**
+     * Writes a counter with a sample for each key
+     *
+     * @param divisor The divisor converting the totals into the unit of the counter
+     */
+    private static void writeCounter(Writer writer, String name, String help, String label, Map<String, Long> totals,
+                                     int divisor) throws IOException {
+        if (totals.isEmpty()) {
+            return;
+        }
+        writer.write("# HELP " + PREFIX + name + " " + help + "\n");
+        writer.write("# TYPE " + PREFIX + name + " counter\n");
+        for (Map.Entry<String, Long> total : totals.entrySet()) {
+            String value = divisor == 1 ? Long.toString(total.getValue()) : Double.toString((double) total.getValue() / divisor);
+            writer.write(PREFIX + name + "{" + label + "=\"" + escape(total.getKey()) + "\"} " + value + "\n");
+        }
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,219 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.JsonParseException;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The releases of a change log as data, the model the markdown is rendered from. It is archived with the build as
+ * compact JSON, for dashboards and downstream jobs to read instead of the markdown or the github api, and the model
+ * archived by the previous build is a warm start for the next: a release whose commits are unchanged is taken from it
+ * rather than fetched again.
+ */
+public class ChangeLogModel {
+
+    /**
+     * The version of the JSON format, a model of another version is not read. Models before format 2 hold partial jira
+     * keys.
+     */
+    public static final int FORMAT = 2;
+
+    /**
+     * The directory of the models under the build artifacts
+     */
+    public static final String ARTIFACT_DIRECTORY = "github-changelog";
+
+    private int format = FORMAT;
+
+    /**
+     * The repository, owner/name
+     */
+    private String repository;
+
+    /**
+     * The last tag of the change log, null if the repository has no release tags
+     */
+    private String lastTag;
+
+    /**
+     * The commit sha of the last tag
+     */
+    private String lastTagSha;
+
+    /**
+     * Indicates if the model holds every release of the change log, an incremental generation without a warm start
+     * only has the releases it generated
+     */
+    private boolean complete = true;
+
+    /**
+     * The releases, newest first and starting with the upcoming release if there is one
+     */
+    private List<ChangeLogRelease> releases = new ArrayList<ChangeLogRelease>();
+
+    /**
+     * The details of the jira issues referenced by the releases by key, null if they were not fetched
+     */
+    private Map<String, JiraIssue> jiraIssues;
+
+    /**
+     * The releases by commit range, built on the first lookup
+     */
+    private transient Map<String, ChangeLogRelease> releasesByRange;
+
+    /**
+     * Default constructor
+     */
+    public ChangeLogModel() {
+    }
+
+    /**
+     * Constructor; takes the releases generated
+     *
+     * @param repository the repository, owner/name
+     * @param marker the marker of the last tag, null if there are no release tags
+     * @param releases the releases, newest first
+     */
+    public ChangeLogModel(String repository, ChangeLogMarker marker, List<ChangeLogRelease> releases) {
+        this.repository = repository;
+        if (marker != null) {
+            this.lastTag = marker.getTagName();
+            this.lastTagSha = marker.getSha();
+        }
+        this.releases = releases;
+    }
+
+    /**
+     * Returns the file of a repository's model in a directory of models
+     *
+     * @param directory The directory
+     * @param repositoryName The repository
+     * @return The file
+     */
+    public static File file(File directory, String repositoryName) {
+        return new File(directory, repositoryName + ".json");
+    }
+
+    /**
+     * Reads a model
+     *
+     * @param file The model file
+     * @return The model, null if there is no file or it is not a model of this format
+     * @throws IOException if the file cannot be read
+     */
+    public static ChangeLogModel read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            ChangeLogModel model = GsonUtils.fromJson(reader, ChangeLogModel.class);
+            return model != null && model.format == FORMAT && model.releases != null ? model : null;
+        } catch (JsonParseException e) {
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes the model as compact JSON
+     *
+     * @param file The model file, its directory is created if needed
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the directory " + directory);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(GsonUtils.toJson(this));
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the release of a commit range
+     *
+     * @param baseSha The base commit, not part of the release
+     * @param headSha The head commit
+     * @return The release, null if the model has no release of the range
+     */
+    public synchronized ChangeLogRelease getRelease(String baseSha, String headSha) {
+        if (releasesByRange == null) {
+            releasesByRange = new HashMap<String, ChangeLogRelease>();
+            for (ChangeLogRelease release : releases) {
+                if (release.getBaseSha() != null && release.getHeadSha() != null) {
+                    releasesByRange.put(release.getBaseSha() + "..." + release.getHeadSha(), release);
+                }
+            }
+        }
+        return releasesByRange.get(baseSha + "..." + headSha);
+    }
+
+    /**
+     * Returns the release with a title
+     *
+     * @param title The tag name or "upcoming"
+     * @return The release, null if the model has no release with the title
+     */
+    public ChangeLogRelease getRelease(String title) {
+        for (ChangeLogRelease release : releases) {
+            if (title.equals(release.getTitle())) {
+                return release;
+            }
+        }
+        return null;
+    }
+
+    public int getFormat() {
+        return format;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getLastTag() {
+        return lastTag;
+    }
+
+    public String getLastTagSha() {
+        return lastTagSha;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public List<ChangeLogRelease> getReleases() {
+        return releases;
+    }
+
+    public Map<String, JiraIssue> getJiraIssues() {
+        return jiraIssues;
+    }
+
+    public void setJiraIssues(Map<String, JiraIssue> jiraIssues) {
+        this.jiraIssues = jiraIssues;
+    }
+}
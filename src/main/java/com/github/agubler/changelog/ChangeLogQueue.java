@@ -0,0 +1,165 @@
+package com.github.agubler.changelog;
+
+import hudson.model.BuildListener;
+import hudson.model.Run;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates change logs in the background on the controller, off the build executors. The generations of one change
+ * log run one at a time, so builds never race each other to update the same file, and the requests that arrive while
+ * a generation of the change log is waiting to run are coalesced into it: however many builds land in the meantime,
+ * the change log is only generated once more, with the job of the latest build.
+ */
+public class ChangeLogQueue {
+
+    /**
+     * Default number of change logs generated at the same time
+     */
+    public static final int DEFAULT_WORKERS = 2;
+
+    /**
+     * The queue shared by all builds on the controller
+     */
+    private static final ChangeLogQueue QUEUE = new ChangeLogQueue(DEFAULT_WORKERS);
+
+    /**
+     * The workers running the generations
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * The generations waiting to run, by change log
+     */
+    private final Map<String, ChangeLogGeneration> queued = new HashMap<String, ChangeLogGeneration>();
+
+    /**
+     * The generations running, by change log
+     */
+    private final Map<String, ChangeLogGeneration> running = new HashMap<String, ChangeLogGeneration>();
+
+    /**
+     * Constructor; takes the size of the worker pool
+     *
+     * @param workers the number of change logs generated at the same time
+     */
+    public ChangeLogQueue(int workers) {
+        final AtomicInteger threads = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(Math.max(1, workers), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "github-changelog-generation-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the queue shared by all builds on the controller
+     *
+     * @return The queue
+     */
+    public static ChangeLogQueue get() {
+        return QUEUE;
+    }
+
+    /**
+     * Requests the generation of a change log. The request joins the generation already waiting for the change log if
+     * there is one, otherwise a new generation is queued; it runs once any generation of the change log already
+     * running has finished.
+     *
+     * @param key The change log, generations with the same key are coalesced
+     * @param job The generation to run
+     * @param build The build requesting the generation, the metrics are attached to it; optional
+     * @return The generation the request is part of
+     */
+    public synchronized ChangeLogGeneration submit(String key, Job job, Run<?, ?> build) {
+        ChangeLogGeneration generation = queued.get(key);
+        if (generation == null) {
+            generation = new ChangeLogGeneration(key);
+            queued.put(key, generation);
+            if (!running.containsKey(key)) {
+                dispatch(key);
+            }
+        }
+        generation.request(job, build);
+        return generation;
+    }
+
+    /**
+     * Returns the generation of the change log that is waiting to run
+     *
+     * @param key The change log
+     * @return The generation, null if none is waiting
+     */
+    public synchronized ChangeLogGeneration getQueued(String key) {
+        return queued.get(key);
+    }
+
+    /**
+     * Returns the generation of the change log that is running
+     *
+     * @param key The change log
+     * @return The generation, null if none is running
+     */
+    public synchronized ChangeLogGeneration getRunning(String key) {
+        return running.get(key);
+    }
+
+    /**
+     * Hands the queued generation of the change log to a worker, which runs it and then dispatches the generation
+     * queued behind it, if any
+     *
+     * @param key The change log
+     */
+    private void dispatch(final String key) {
+        executorService.execute(new Runnable() {
+            public void run() {
+                ChangeLogGeneration generation;
+                synchronized (ChangeLogQueue.this) {
+                    generation = queued.remove(key);
+                    running.put(key, generation);
+                }
+                try {
+                    generation.run();
+                } finally {
+                    synchronized (ChangeLogQueue.this) {
+                        running.remove(key);
+                        if (queued.containsKey(key)) {
+                            dispatch(key);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the workers, generations that have not started are dropped
+     */
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * A change log generation, run by a worker of the queue
+     */
+    public interface Job {
+
+        /**
+         * Generates the change log
+         *
+         * @param listener The listener the generation logs to
+         * @param metrics The metrics the generation is recorded in, set succeeded once it succeeds
+         * @throws IOException
+         * @throws InterruptedException
+         */
+        void run(BuildListener listener, ChangeLogMetrics metrics) throws IOException, InterruptedException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.agubler.changelog;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A release section of the change log, the pull requests merged between two commits
+ */
+public class ChangeLogRelease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The release title, the tag name or "upcoming"
+     */
+    private String title;
+
+    /**
+     * The date of the head commit of the release
+     */
+    private Date date;
+
+    /**
+     * The pull requests merged in the release, in the order returned by the compare
+     */
+    private List<ChangeLogEntry> entries = new ArrayList<ChangeLogEntry>();
+
+    /**
+     * The commit the release starts after, the previous release tag
+     */
+    private String baseSha;
+
+    /**
+     * The last commit of the release
+     */
+    private String headSha;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
+    public List<ChangeLogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<ChangeLogEntry> entries) {
+        this.entries = entries;
+    }
+
+    public String getBaseSha() {
+        return baseSha;
+    }
+
+    public void setBaseSha(String baseSha) {
+        this.baseSha = baseSha;
+    }
+
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    public void setHeadSha(String headSha) {
+        this.headSha = headSha;
+    }
+}
@@ -1,19 +1,30 @@
 package com.github.agubler.changelog;
 
+import hudson.FilePath;
 import hudson.model.BuildListener;
 import org.apache.commons.codec.binary.Base64;
 import org.eclipse.egit.github.core.*;
-import org.eclipse.egit.github.core.client.GitHubClient;
-import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.client.RequestException;
 import org.eclipse.egit.github.core.service.RepositoryService;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -27,24 +38,119 @@ public class ChangeLogService {
     private static final String COMMIT_MESSAGE = "Auto-generated Change Log from Build";
 
     /**
-     * Markdown new line
+     * The default branch the upcoming release is generated up to
      */
-    private static final String MD_NEW_LINE = "\n";
+    public static final String DEFAULT_HEAD_BRANCH = "integration";
 
     /**
-     * The Change log title
+     * Builder listener
      */
-    private static final String MD_CHANGE_LOG_TITLE = "## Change Log" + MD_NEW_LINE;
+    private BuildListener listener;
 
     /**
-     * The markdown format for the release title
+     * The cache of the pull requests between tags, optional
      */
-    private static final String MD_CHANGE_LOG_RELEASE_FORMAT = "###";
+    private CompareCache compareCache;
 
     /**
-     * Builder listener
+     * The cache of github responses used to make conditional requests, optional
      */
-    private BuildListener listener;
+    private ConditionalRequestCache conditionalRequestCache;
+
+    /**
+     * The cache of the commits annotated tags point to, optional
+     */
+    private TagObjectCache tagObjectCache;
+
+    /**
+     * The scheduler keeping requests within the github rate limit, optional
+     */
+    private RateLimitScheduler rateLimitScheduler;
+
+    /**
+     * The cache of the jira issue details, optional; the jira issues are only fetched when it is set
+     */
+    private JiraIssueCache jiraIssueCache;
+
+    /**
+     * The pooled connections to the github host, optional
+     */
+    private GitHubTransport transport;
+
+    /**
+     * The number of releases fetched concurrently
+     */
+    private int concurrency = 1;
+
+    /**
+     * The clone of the repository in the build workspace to read the releases from, optional
+     */
+    private FilePath workspaceRepository;
+
+    /**
+     * The directory of the pull request indexes, optional
+     */
+    private File pullRequestIndexDirectory;
+
+    /**
+     * The cache of the repository metadata shared by all builds, optional
+     */
+    private SharedMetadataCache metadataCache;
+
+    /**
+     * The metrics the phases and requests of the build are recorded in
+     */
+    private ChangeLogMetrics metrics = new ChangeLogMetrics();
+
+    /**
+     * The number of repositories generated concurrently
+     */
+    private int repositoryConcurrency = 1;
+
+    /**
+     * The branch the upcoming release is generated up to
+     */
+    private String headBranch = DEFAULT_HEAD_BRANCH;
+
+    /**
+     * The prefix of the release tag names
+     */
+    private String tagPrefix = "";
+
+    /**
+     * The pattern the release tag names match, optional
+     */
+    private Pattern tagPattern;
+
+    /**
+     * Prefixes the build log lines, names the repository when generating several at once
+     */
+    private String logPrefix = "";
+
+    /**
+     * The releases kept in the change log, optional; older releases are archived
+     */
+    private ReleaseWindow releaseWindow;
+
+    /**
+     * The directory the change log models of the build are written to, optional
+     */
+    private File modelDirectory;
+
+    /**
+     * The directory of the change log models written by a previous build, optional
+     */
+    private File warmStartDirectory;
+
+    /**
+     * The releases found in the model of the previous build
+     */
+    private final AtomicInteger warmStartHits = new AtomicInteger();
+
+    /**
+     * The releases not found in the model of the previous build
+     */
+    private final AtomicInteger warmStartMisses = new AtomicInteger();
 
     /**
      * Constructor; takes the build listener
@@ -55,6 +161,170 @@ public class ChangeLogService {
         this.listener = listener;
     }
 
+    /**
+     * Sets the cache used for the pull requests between tags
+     *
+     * @param compareCache the compare cache
+     */
+    public void setCompareCache(CompareCache compareCache) {
+        this.compareCache = compareCache;
+    }
+
+    /**
+     * Sets the cache of github responses used to make conditional requests
+     *
+     * @param conditionalRequestCache the conditional request cache
+     */
+    public void setConditionalRequestCache(ConditionalRequestCache conditionalRequestCache) {
+        this.conditionalRequestCache = conditionalRequestCache;
+    }
+
+    /**
+     * Sets the cache of the commits annotated tags point to
+     *
+     * @param tagObjectCache the tag object cache
+     */
+    public void setTagObjectCache(TagObjectCache tagObjectCache) {
+        this.tagObjectCache = tagObjectCache;
+    }
+
+    /**
+     * Sets the scheduler keeping requests within the github rate limit
+     *
+     * @param rateLimitScheduler the scheduler for the github host
+     */
+    public void setRateLimitScheduler(RateLimitScheduler rateLimitScheduler) {
+        this.rateLimitScheduler = rateLimitScheduler;
+    }
+
+    /**
+     * Sets the cache of the jira issue details, the summary, type and status of each jira issue referenced by the
+     * generated releases are then fetched from jira and listed in the change log
+     *
+     * @param jiraIssueCache the jira issue cache
+     */
+    public void setJiraIssueCache(JiraIssueCache jiraIssueCache) {
+        this.jiraIssueCache = jiraIssueCache;
+    }
+
+    /**
+     * Sets the transport the requests to github are made over
+     *
+     * @param transport the transport of the github host
+     */
+    public void setTransport(GitHubTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the number of releases fetched concurrently
+     *
+     * @param concurrency the number of workers, at least one
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Sets the number of repositories generated concurrently when generating the change logs of several repositories
+     *
+     * @param repositoryConcurrency the number of workers, at least one
+     */
+    public void setRepositoryConcurrency(int repositoryConcurrency) {
+        this.repositoryConcurrency = Math.max(1, repositoryConcurrency);
+    }
+
+    /**
+     * Sets the branch the upcoming release is generated up to, there is no upcoming release if it does not exist
+     *
+     * @param headBranch the branch name
+     */
+    public void setHeadBranch(String headBranch) {
+        this.headBranch = headBranch;
+    }
+
+    /**
+     * Sets the tags that are releases, only the tags starting with the prefix are read from github
+     *
+     * @param tagPrefix the prefix of the tag names, empty for all the tags
+     * @param tagPattern the pattern the tag names match, null for all the tags with the prefix
+     */
+    public void setReleaseTags(String tagPrefix, Pattern tagPattern) {
+        this.tagPrefix = tagPrefix != null ? tagPrefix : "";
+        this.tagPattern = tagPattern;
+    }
+
+    /**
+     * Sets the releases kept in the change log, the sections of older releases are moved into an archive file per
+     * major version which is written once and then left alone
+     *
+     * @param releaseWindow the window, null to keep every release
+     */
+    public void setReleaseWindow(ReleaseWindow releaseWindow) {
+        this.releaseWindow = releaseWindow;
+    }
+
+    /**
+     * Sets the clone of the repository in the build workspace to read the tags and releases from instead of the
+     * github api, which is then only used to publish the change log
+     *
+     * @param workspaceRepository the root of the working tree of the repository
+     */
+    public void setWorkspaceRepository(FilePath workspaceRepository) {
+        this.workspaceRepository = workspaceRepository;
+    }
+
+    /**
+     * Sets the directory of the pull request indexes, the pull requests of the releases are then found by their merge
+     * commit sha rather than by the merge commit message
+     *
+     * @param pullRequestIndexDirectory the cache directory
+     */
+    public void setPullRequestIndexDirectory(File pullRequestIndexDirectory) {
+        this.pullRequestIndexDirectory = pullRequestIndexDirectory;
+    }
+
+    /**
+     * Sets the cache of the repository metadata shared by all builds on the controller
+     *
+     * @param metadataCache the shared cache
+     */
+    public void setMetadataCache(SharedMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Sets the directory the model of each change log is written to as JSON, named after the repository
+     *
+     * @param modelDirectory the directory, null to write no models
+     */
+    public void setModelDirectory(File modelDirectory) {
+        this.modelDirectory = modelDirectory;
+    }
+
+    /**
+     * Sets the directory of the models written by a previous build, the releases whose commits are unchanged are
+     * taken from them rather than generated again
+     *
+     * @param warmStartDirectory the directory, null to generate every release
+     */
+    public void setWarmStartDirectory(File warmStartDirectory) {
+        this.warmStartDirectory = warmStartDirectory;
+    }
+
+    /**
+     * Sets the metrics the phases and requests of the build are recorded in
+     *
+     * @param metrics the metrics of the build
+     */
+    public void setMetrics(ChangeLogMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ChangeLogMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Creates the change log
      *
@@ -64,29 +334,177 @@ public class ChangeLogService {
      * @param repositoryName the repository
      * @param changeLogBranch the change log branch
      * @param changeLogName the change log filename (includes path)
+     * @param parseJiraReferences indicates if jira references need to be parsed
+     * @param jiraUrl the jira url
+     * @param incremental indicates if only releases newer than the last published one should be generated
      * @throws IOException
      */
     public void createChangeLog(String gitHubHost, String gitHubAuthToken, String owner, String repositoryName,
-                                String changeLogBranch, String changeLogName, boolean parseJiraReferences, String jiraUrl) throws IOException {
+                                String changeLogBranch, String changeLogName, boolean parseJiraReferences, String jiraUrl,
+                                boolean incremental) throws IOException {
+        ChangeLogGitHubClient client = openClient(gitHubHost, gitHubAuthToken);
+        try {
+            generateChangeLog(client, gitHubHost, owner, repositoryName, changeLogBranch, changeLogName, parseJiraReferences,
+                    jiraUrl, incremental);
+        } finally {
+            //the releases fetched before a failure are still worth caching
+            closeClient(client);
+        }
+    }
 
-        GitHubClient client;
+    /**
+     * Creates the change logs of several repositories of an owner, concurrently and over one client. A repository
+     * that fails does not stop the others, the result of every repository is returned and logged in a summary table.
+     *
+     * @param gitHubHost the github host
+     * @param gitHubAuthToken the github oauth token
+     * @param owner the repositories owner
+     * @param repositoryNames the repositories
+     * @param repositoryPattern the pattern matching the names of further repositories of the owner, optional
+     * @param changeLogBranch the change log branch
+     * @param changeLogName the change log filename (includes path)
+     * @param parseJiraReferences indicates if jira references need to be parsed
+     * @param jiraUrl the jira url
+     * @param incremental indicates if only releases newer than the last published one should be generated
+     * @return The results, in the order of the repositories
+     * @throws IOException if the repositories of the owner cannot be listed
+     */
+    public List<RepositoryResult> createChangeLogs(String gitHubHost, String gitHubAuthToken, String owner,
+                                                   List<String> repositoryNames, Pattern repositoryPattern,
+                                                   final String changeLogBranch, final String changeLogName,
+                                                   final boolean parseJiraReferences, final String jiraUrl,
+                                                   final boolean incremental) throws IOException {
+        final ChangeLogGitHubClient client = openClient(gitHubHost, gitHubAuthToken);
+        List<RepositoryResult> results;
+        try {
+            metrics.startPhase("owner_repositories");
+            Set<String> names = new LinkedHashSet<String>(repositoryNames);
+            if (repositoryPattern != null) {
+                for (Repository repository : getOwnerRepositories(client, owner)) {
+                    if (repositoryPattern.matcher(repository.getName()).matches()) {
+                        names.add(repository.getName());
+                    }
+                }
+            }
+            logger("[INFO] Generating change logs for " + names.size() + " repositories of " + owner);
 
-        if (gitHubHost != null) {
-            client = new GitHubClient(gitHubHost);
-        } else {
-            client = new GitHubClient();
+            results = new ArrayList<RepositoryResult>(names.size());
+            if (!names.isEmpty()) {
+                metrics.startPhase("change_logs");
+                ExecutorService executorService = Executors.newFixedThreadPool(Math.min(repositoryConcurrency, names.size()));
+                try {
+                    List<Future<RepositoryResult>> futures = new ArrayList<Future<RepositoryResult>>(names.size());
+                    for (final String name : names) {
+                        final String host = gitHubHost;
+                        final String repositoryOwner = owner;
+                        futures.add(executorService.submit(new Callable<RepositoryResult>() {
+                            public RepositoryResult call() {
+                                ChangeLogService repositoryService = forRepository(name);
+                                long start = System.currentTimeMillis();
+                                try {
+                                    boolean published = repositoryService.generateChangeLog(client, host, repositoryOwner, name,
+                                            changeLogBranch, changeLogName, parseJiraReferences, jiraUrl, incremental);
+                                    return new RepositoryResult(name, published ? "published" : "unchanged", null,
+                                            System.currentTimeMillis() - start);
+                                } catch (Exception e) {
+                                    repositoryService.logger("[ERROR] Unable to generate github change log: " + e.getMessage());
+                                    return new RepositoryResult(name, "failed", e.getMessage(), System.currentTimeMillis() - start);
+                                } finally {
+                                    metrics.merge(repositoryService.metrics);
+                                }
+                            }
+                        }));
+                    }
+                    for (Future<RepositoryResult> future : futures) {
+                        results.add(future.get());
+                    }
+                } catch (ExecutionException e) {
+                    throw (IOException) new IOException("Change log generation failed: " + e.getCause().getMessage()).initCause(e.getCause());
+                } catch (InterruptedException e) {
+                    throw (IOException) new InterruptedIOException("Change log generation interrupted").initCause(e);
+                } finally {
+                    executorService.shutdownNow();
+                }
+            }
+        } finally {
+            //the releases fetched before a failure are still worth caching
+            closeClient(client);
         }
 
+        logSummary(results);
+        return results;
+    }
+
+    /**
+     * Creates the client shared by the change logs of the build and loads the caches
+     *
+     * @param gitHubHost the github host
+     * @param gitHubAuthToken the github oauth token
+     * @return The client
+     * @throws IOException
+     */
+    private ChangeLogGitHubClient openClient(String gitHubHost, String gitHubAuthToken) throws IOException {
+        ChangeLogGitHubClient client = createClient(gitHubHost);
         client.setOAuth2Token(gitHubAuthToken);
 
+        if (conditionalRequestCache != null) {
+            conditionalRequestCache.load();
+            client.setConditionalRequestCache(conditionalRequestCache);
+        }
+
+        client.setRateLimitScheduler(rateLimitScheduler);
+        client.setTransport(transport);
+        client.setMetrics(metrics);
+
+        if (compareCache != null) {
+            compareCache.load();
+        }
+
+        if (tagObjectCache != null) {
+            tagObjectCache.load();
+        }
+
+        if (jiraIssueCache != null) {
+            jiraIssueCache.load();
+        }
+        return client;
+    }
+
+    /**
+     * Creates the client for the github host
+     *
+     * @param gitHubHost the github host, github.com if null
+     * @return The client
+     */
+    protected ChangeLogGitHubClient createClient(String gitHubHost) {
+        if (gitHubHost != null) {
+            return new ChangeLogGitHubClient(gitHubHost);
+        }
+        return new ChangeLogGitHubClient();
+    }
+
+    /**
+     * Generates and publishes the change log of a repository
+     *
+     * @return true if the change log was published, false if it was unchanged
+     * @throws IOException
+     */
+    private boolean generateChangeLog(ChangeLogGitHubClient client, String gitHubHost, String owner, String repositoryName,
+                                      String changeLogBranch, String changeLogName, boolean parseJiraReferences,
+                                      String jiraUrl, boolean incremental) throws IOException {
         FileContentsService fileContentsService = new FileContentsService(client);
         RepositoryService repositoryService = new RepositoryService(client);
 
+        metrics.startPhase("repository");
         Repository repository = repositoryService.getRepository(owner, repositoryName);
 
         logger("[INFO] Repository: " + repositoryName + " found for owner " + owner);
 
-        RepositoryContents existingChangeLog = fileContentsService.getFile(repository, changeLogName, changeLogBranch);
+        metrics.startPhase("existing_change_log");
+        //only incremental generation reads the existing change log, otherwise its sha is all that is needed
+        RepositoryContents existingChangeLog = incremental
+                ? fileContentsService.getFile(repository, changeLogName, changeLogBranch)
+                : fileContentsService.getFileMetadata(repository, changeLogName, changeLogBranch);
 
         GitHubFileContentRequest gitHubFileContentRequest = new GitHubFileContentRequest();
         gitHubFileContentRequest.setMessage(COMMIT_MESSAGE);
@@ -97,116 +515,695 @@ public class ChangeLogService {
             gitHubFileContentRequest.setSha(existingChangeLog.getSha());
         }
 
-        List<RepositoryTag> repositoryTags = repositoryService.getTags(repository);
-        Collections.sort(repositoryTags, Collections.reverseOrder(new TagComparator()));
-        ListIterator<RepositoryTag> repositoryTagListIterator = repositoryTags.listIterator();
+        CommitMessageClassifier classifier = createClassifier(client, repository, parseJiraReferences, jiraUrl);
+        ReleaseSource releaseSource = createReleaseSource(client, gitHubHost, repository, classifier);
+
+        metrics.startPhase("tags");
+        ReleaseRefIndex releaseRefs = new ReleaseRefIndex(releaseSource.getTags(tagPrefix), tagPattern);
+
+        ChangeLogModel warmStart = readWarmStart(repository, repositoryName);
+
+        //the number of tags (newest first) that need a section generating, all of them unless running incrementally
+        int newTagCount = releaseRefs.size();
+        String publishedReleasesText = "";
+
+        if (incremental && existingChangeLog != null) {
+            String existingChangeLogText = decodeContent(existingChangeLog);
+            ChangeLogMarker marker = ChangeLogMarker.parse(existingChangeLogText);
+            int lastTagIndex = marker != null ? marker.indexOf(releaseRefs) : -1;
+
+            if (lastTagIndex == releaseRefs.size() - 1) {
+                //the last published tag is the oldest tag, so it never had a section of its own
+                newTagCount = lastTagIndex;
+            } else if (lastTagIndex >= 0) {
+                int sectionIndex = existingChangeLogText.indexOf(MarkdownRenderer.releaseTitle(marker.getTagName()));
+                if (sectionIndex >= 0) {
+                    newTagCount = lastTagIndex;
+                    publishedReleasesText = existingChangeLogText.substring(sectionIndex);
+                }
+            }
+
+            if (newTagCount < releaseRefs.size()) {
+                logger("[INFO] Last published release " + marker.getTagName() + " found, " + newTagCount + " new release(s) to generate");
+            } else {
+                logger("[INFO] No usable marker in existing change log " + changeLogName + ", regenerating all releases");
+            }
+        }
 
-        String changeLogText = MD_CHANGE_LOG_TITLE;
+        ChangeLogMarker changeLogMarker = null;
         String gitHubPullRequestUrl = "https://" + gitHubHost + "/" + owner + "/" + repositoryName + "/pull/";
 
-        while (repositoryTagListIterator.hasNext()) {
-            if (repositoryTagListIterator.hasPrevious()) {
-                RepositoryTag head = repositoryTagListIterator.previous();
-                repositoryTagListIterator.remove();
-                TypedResource base = repositoryTagListIterator.next().getCommit();
-                changeLogText = changeLogText + generateChangeLogForCommits(client, repository, gitHubPullRequestUrl,
-                        head.getName(), head.getCommit(), base, parseJiraReferences, jiraUrl);
+        List<ReleaseRange> releaseRanges = new ArrayList<ReleaseRange>();
+
+        if (!releaseRefs.isEmpty()) {
+            RepositoryTag latestTag = releaseRefs.getLatest();
+            changeLogMarker = new ChangeLogMarker(latestTag.getName(), latestTag.getCommit().getSha());
+
+            metrics.startPhase("head_branch");
+            String headBranchSha = releaseSource.getBranchSha(headBranch);
+            if (headBranchSha != null) {
+                //the head of the branch moves so the upcoming release is not cached, unless the webhook has already
+                //generated it for the same commit
+                releaseRanges.add(new ReleaseRange(releaseSource, repository, warmStart, latestTag.getName(), "upcoming",
+                        headBranchSha, latestTag.getCommit().getSha(), false));
+            }
+        }
+
+        //the oldest tag never has a section of its own, and a bounded window generates no more releases than it keeps
+        boolean windowed = releaseWindow != null && releaseWindow.isBounded();
+        int tagRangeCount = Math.min(newTagCount, Math.max(releaseRefs.size() - 1, 0));
+        if (windowed) {
+            tagRangeCount = Math.min(tagRangeCount, releaseWindow.getMaxReleases());
+        }
+
+        for (int i = 0; i < tagRangeCount; i++) {
+            RepositoryTag head = releaseRefs.get(i);
+            String baseSha = releaseRefs.getBaseSha(i);
+            releaseRanges.add(new ReleaseRange(releaseSource, repository, warmStart, releaseRefs.get(i + 1).getName(),
+                    head.getName(), head.getCommit().getSha(), baseSha, true));
+        }
+
+        metrics.startPhase("releases");
+        Date cutoff = windowed ? releaseWindow.getCutoff(System.currentTimeMillis()) : null;
+        List<ChangeLogRelease> releases = cutoff != null ? fetchReleasesSince(releaseRanges, cutoff) : fetchReleases(releaseRanges);
+
+        MarkdownRenderer renderer = new MarkdownRenderer(gitHubPullRequestUrl, classifier);
+        Map<String, JiraIssue> jiraIssues = parseJiraReferences ? getJiraIssues(jiraUrl, releases) : null;
+        if (jiraIssues != null) {
+            renderer.setJiraIssues(jiraIssues);
+        }
+
+        if (windowed) {
+            //the position of the first tag whose section is no longer in the change log
+            int windowEnd = releases.size() - (releaseRanges.size() - tagRangeCount);
+            if (windowEnd == newTagCount) {
+                //every new release is in the window, so the newest published ones may still be
+                publishedReleasesText = ReleaseWindow.truncate(publishedReleasesText,
+                        releaseWindow.getMaxReleases() - windowEnd, cutoff);
+                windowEnd += ReleaseWindow.sections(publishedReleasesText).size();
             } else {
-                RepositoryBranch headBranch = findBranch(repositoryService, repository, "integration");
-                TypedResource base = repositoryTagListIterator.next().getCommit();
-                if (headBranch != null) {
-                    TypedResource head = headBranch.getCommit();
-                    changeLogText = changeLogText + generateChangeLogForCommits(client, repository, gitHubPullRequestUrl,
-                            "upcoming", head, base, parseJiraReferences, jiraUrl);
-                }
+                publishedReleasesText = "";
             }
+            metrics.startPhase("archive");
+            archiveReleases(fileContentsService, releaseSource, repository, warmStart, releaseRefs, windowEnd,
+                    changeLogBranch, changeLogName, renderer);
+        }
+
+        ChangeLogModel model = createModel(repository, changeLogMarker, releases, warmStart, publishedReleasesText);
+        model.setJiraIssues(jiraIssues);
+        //the releases already published are kept as their markdown, only the generated ones are rendered
+        metrics.startPhase("hash");
+        //measured once, the length is reused for the blob sha, the publish threshold and the request length
+        FileContentsService.MeasuredContent changeLog = FileContentsService.measure(renderer.changeLog(changeLogMarker,
+                model.getReleases().subList(0, releases.size()), publishedReleasesText));
+        boolean unchanged = existingChangeLog != null && changeLog.getSha().equals(existingChangeLog.getSha());
+        if (unchanged) {
+            logger("[INFO] Change log " + changeLogName + " unchanged, publish skipped");
+        } else {
+            metrics.startPhase("publish");
+            //put the file onto github, the markdown is rendered and base64 encoded as it is sent
+            fileContentsService.createOrUpdateFile(repository, changeLogName, gitHubFileContentRequest, changeLog);
+        }
+        if (modelDirectory != null) {
+            metrics.startPhase("model");
+            model.write(ChangeLogModel.file(modelDirectory, repositoryName));
+        }
+        if (warmStart != null) {
+            metrics.cache("warm_start", warmStartHits.get(), warmStartMisses.get());
+            logger("[INFO] Warm start: " + warmStartHits.get() + " release(s) reused, " + warmStartMisses.get() + " generated");
+        }
+        metrics.endPhase();
+        logger("[INFO] Change log generation complete - https://" + gitHubHost + "/" + owner + "/" + repositoryName + "/blob/" + changeLogBranch + "/" + changeLogName);
+        return !unchanged;
+    }
+
+    /**
+     * Generates the release that a pushed tag, or a commit pushed to the head branch, adds to the change log and stores
+     * it in the compare cache, so that the next build finds it there and only assembles and publishes the change log
+     *
+     * @param gitHubHost the github host
+     * @param gitHubAuthToken the github oauth token
+     * @param owner the repository owner
+     * @param repositoryName the repository
+     * @param tagName the tag pushed, null for a push to the head branch
+     * @param headSha the commit the head branch was pushed to, ignored for a tag
+     * @param parseJiraReferences indicates if jira references need to be parsed
+     * @param jiraUrl the jira url
+     * @return true if a release was generated, false if the push adds no release
+     * @throws IOException
+     */
+    public boolean precomputeRelease(String gitHubHost, String gitHubAuthToken, String owner, String repositoryName,
+                                     String tagName, String headSha, boolean parseJiraReferences, String jiraUrl) throws IOException {
+        if (compareCache == null) {
+            return false;
         }
+        ChangeLogGitHubClient client = openClient(gitHubHost, gitHubAuthToken);
+        try {
+            metrics.startPhase("repository");
+            Repository repository = new RepositoryService(client).getRepository(owner, repositoryName);
+            CommitMessageClassifier classifier = createClassifier(client, repository, parseJiraReferences, jiraUrl);
+            ReleaseSource releaseSource = createReleaseSource(client, gitHubHost, repository, classifier);
 
-        //base64 encode and set the content on the request object
-        gitHubFileContentRequest.setContent(new String(Base64.encodeBase64(changeLogText.getBytes("UTF-8")), "UTF-8"));
-        //put the file onto github
-        fileContentsService.createOrUpdateFile(repository, changeLogName, gitHubFileContentRequest);
-        listener.getLogger().println("[INFO] Change log generation complete - https://" + gitHubHost + "/" + owner + "/" + repositoryName + "/blob/" + changeLogBranch + "/" + changeLogName);
+            metrics.startPhase("tags");
+            ReleaseRefIndex releaseRefs = new ReleaseRefIndex(releaseSource.getTags(tagPrefix), tagPattern);
+
+            metrics.startPhase("releases");
+            if (tagName != null) {
+                int index = releaseRefs.indexOf(tagName);
+                if (index < 0 || index == releaseRefs.size() - 1) {
+                    //not a release tag, or the oldest release which has no section of its own
+                    logger("[INFO] Tag " + tagName + " adds no release to the change log");
+                    return false;
+                }
+                RepositoryTag head = releaseRefs.get(index);
+                generateChangeLogForCommits(releaseSource, repository, null, head.getName(), head.getCommit().getSha(),
+                        releaseRefs.getBaseSha(index), true);
+            } else {
+                RepositoryTag latestTag = releaseRefs.getLatest();
+                if (latestTag == null || headSha == null) {
+                    logger("[INFO] No release tags, the push adds no upcoming release to the change log");
+                    return false;
+                }
+                //cached by the commits, so it is only found by a build that resolves the head branch to the same commit
+                generateChangeLogForCommits(releaseSource, repository, null, "upcoming", headSha,
+                        latestTag.getCommit().getSha(), true);
+            }
+            metrics.endPhase();
+            return true;
+        } finally {
+            closeClient(client);
+        }
     }
 
     /**
-     * Find specified branch from repositories branch list
+     * Creates the classifier of the commit messages, which finds the pull requests of the merge commits in the pull
+     * request index when it is enabled
      *
-     * @param repositoryService The Github repository service
-     * @param repository The repository to search
-     * @param branchName The branch name to look for
-     * @return The RepositoryBranch
+     * @param client The client
+     * @param repository The repository
+     * @param parseJiraReferences indicates if jira references need to be parsed
+     * @param jiraUrl the jira url
+     * @return The classifier
      * @throws IOException
      */
-    private RepositoryBranch findBranch(RepositoryService repositoryService, IRepositoryIdProvider repository,
-                                        String branchName) throws IOException {
-        List<RepositoryBranch> branches = repositoryService.getBranches(repository);
-        for (RepositoryBranch branch : branches) {
-            if (branch.getName().equals(branchName)) {
-                return branch;
+    private CommitMessageClassifier createClassifier(ChangeLogGitHubClient client, Repository repository,
+                                                     boolean parseJiraReferences, String jiraUrl) throws IOException {
+        CommitMessageClassifier classifier = new CommitMessageClassifier(parseJiraReferences, jiraUrl);
+        if (pullRequestIndexDirectory != null) {
+            metrics.startPhase("pull_request_index");
+            PullRequestIndex pullRequestIndex = new PullRequestIndex(pullRequestIndexDirectory, repository, PullRequestIndex.DEFAULT_MAX_SIZE);
+            pullRequestIndex.load();
+            pullRequestIndex.update(client);
+            pullRequestIndex.save();
+            Map<String, ChangeLogEntry> pullRequests = pullRequestIndex.getEntries(classifier);
+            classifier = new CommitMessageClassifier(parseJiraReferences, jiraUrl, pullRequests);
+            logger("[INFO] Pull request index: " + pullRequestIndex.getFetched() + " pull request(s) fetched, " +
+                    pullRequests.size() + " merged pull request(s) indexed");
+        }
+        return classifier;
+    }
+
+    /**
+     * Returns the details of the jira issues referenced by the releases, from the cache or fetched from jira in batches.
+     * Jira being unreachable does not fail the change log, the issues not cached are then linked without their details.
+     *
+     * @param jiraUrl The jira url
+     * @param releases The releases
+     * @return The issues by key, null if the jira issues are not fetched
+     */
+    private Map<String, JiraIssue> getJiraIssues(String jiraUrl, List<ChangeLogRelease> releases) {
+        if (jiraIssueCache == null || jiraUrl == null || jiraUrl.trim().length() == 0) {
+            return null;
+        }
+        metrics.startPhase("jira_issues");
+        Set<String> keys = new LinkedHashSet<String>();
+        for (ChangeLogRelease release : releases) {
+            for (ChangeLogEntry entry : release.getEntries()) {
+                keys.addAll(entry.getJiraKeys());
+            }
+        }
+
+        Map<String, JiraIssue> issues = new HashMap<String, JiraIssue>();
+        List<String> uncached = new ArrayList<String>();
+        for (String key : keys) {
+            JiraIssue issue = jiraIssueCache.getIssue(jiraUrl, key);
+            if (issue != null) {
+                issues.put(key, issue);
+            } else {
+                uncached.add(key);
+            }
+        }
+
+        Map<String, JiraIssue> fetched = new HashMap<String, JiraIssue>();
+        JiraIssueService jiraIssueService = new JiraIssueService(jiraUrl);
+        if (!uncached.isEmpty()) {
+            try {
+                jiraIssueService.getIssues(uncached, fetched);
+            } catch (IOException e) {
+                logger("[WARNING] Unable to fetch jira issues from " + jiraUrl + ", " + (uncached.size() - fetched.size()) +
+                        " issue(s) linked without their details: " + e.getMessage());
+            }
+            for (JiraIssue issue : fetched.values()) {
+                jiraIssueCache.putIssue(issue);
+            }
+            issues.putAll(fetched);
+        }
+        logger("[INFO] Jira issues: " + (keys.size() - uncached.size()) + " of " + keys.size() + " cached, " +
+                fetched.size() + " fetched in " + jiraIssueService.getRequests() + " request(s)");
+        return issues;
+    }
+
+    /**
+     * Reads the model of the repository written by the previous build
+     *
+     * @param repository The repository
+     * @param repositoryName The repository name the model is named after
+     * @return The model, null if there is none to start from
+     */
+    private ChangeLogModel readWarmStart(Repository repository, String repositoryName) {
+        if (warmStartDirectory == null) {
+            return null;
+        }
+        File file = ChangeLogModel.file(warmStartDirectory, repositoryName);
+        try {
+            ChangeLogModel model = ChangeLogModel.read(file);
+            if (model != null && repository.generateId().equals(model.getRepository())) {
+                logger("[INFO] Warm start from the change log model of a previous build, " + model.getReleases().size() + " release(s)");
+                return model;
             }
+        } catch (IOException e) {
+            logger("[WARNING] Unable to read the change log model " + file + ": " + e.getMessage());
         }
         return null;
     }
 
     /**
-     * Using the initialised {@link GitHubClient} returns the markdown change log text for with the pull requests between to commits
-     * for a specific repository.
+     * Creates the model of the change log, the releases generated followed by the releases already published. The
+     * published releases are taken from the model of the previous build, the model is incomplete if any is not there.
      *
-     * @param client The initialised {@code GitHubClient}
-     * @param repository The repository for comparison
-     * @param gitHubPullRequestUrl The pull request url template
-     * @param head The head commit
-     * @param base The base commit
-     * @return The markdown change log text
+     * @param repository The repository
+     * @param marker The marker of the last release, null if there are no releases
+     * @param releases The releases generated, newest first
+     * @param warmStart The model of the previous build, optional
+     * @param publishedReleasesText The markdown of the already published releases kept in the change log
+     * @return The model
+     */
+    private ChangeLogModel createModel(Repository repository, ChangeLogMarker marker, List<ChangeLogRelease> releases,
+                                       ChangeLogModel warmStart, String publishedReleasesText) {
+        List<ChangeLogRelease> modelReleases = new ArrayList<ChangeLogRelease>(releases);
+        boolean complete = true;
+        for (String section : ReleaseWindow.sections(publishedReleasesText)) {
+            String title = ReleaseWindow.sectionTitle(section);
+            ChangeLogRelease release = warmStart != null && title != null ? warmStart.getRelease(title) : null;
+            if (release != null) {
+                modelReleases.add(release);
+            } else {
+                complete = false;
+            }
+        }
+        ChangeLogModel model = new ChangeLogModel(repository.generateId(), marker, modelReleases);
+        model.setComplete(complete);
+        return model;
+    }
+
+    /**
+     * Creates the source of the tags and releases, the workspace repository if set, otherwise the github api
+     *
+     * @param client The client
+     * @param gitHubHost The github host
+     * @param repository The repository
+     * @param classifier The classifier of the commit messages
+     * @return The release source
+     */
+    private ReleaseSource createReleaseSource(ChangeLogGitHubClient client, String gitHubHost, Repository repository,
+                                              CommitMessageClassifier classifier) {
+        if (workspaceRepository != null) {
+            logger("[INFO] Reading releases from the workspace repository " + workspaceRepository.getRemote());
+            return new WorkspaceReleaseSource(workspaceRepository, classifier);
+        }
+        GitHubReleaseSource gitHubReleaseSource = new GitHubReleaseSource(client, repository, classifier);
+        gitHubReleaseSource.setTagObjectCache(tagObjectCache);
+        gitHubReleaseSource.setConcurrency(concurrency);
+        ReleaseSource releaseSource = gitHubReleaseSource;
+        if (metadataCache != null) {
+            releaseSource = new CachingReleaseSource(releaseSource, metadataCache, gitHubHost + "/" + repository.generateId());
+        }
+        return releaseSource;
+    }
+
+    /**
+     * Saves the caches once the change logs of the build are generated
+     *
+     * @param client The client shared by the change logs
      * @throws IOException
      */
-    private String generateChangeLogForCommits(GitHubClient client, Repository repository, String gitHubPullRequestUrl, String headTitle,
-                                               TypedResource head, TypedResource base, boolean findJiraReferences, String jiraUrl) throws IOException {
-        CommitService commitService = new CommitService(client);
-        RepositoryCommitCompare repositoryCommitCompare = commitService.compare(repository, base.getSha(), head.getSha());
+    private void closeClient(ChangeLogGitHubClient client) throws IOException {
+        if (compareCache != null) {
+            metrics.cache("compare", compareCache.getHits(), compareCache.getMisses());
+            logger("[INFO] Compare cache: " + compareCache.getHits() + " hit(s), " + compareCache.getMisses() + " miss(es)");
+            compareCache.save();
+        }
 
-        logger("[INFO] Generating changelog for version " + headTitle);
-        Date commitDate = commitService.getCommit(repository, head.getSha()).getCommit().getCommitter().getDate();
-        String changeLogText = MD_NEW_LINE + MD_CHANGE_LOG_RELEASE_FORMAT + headTitle + " (" + commitDate.toString() + ")" + MD_NEW_LINE;
+        if (tagObjectCache != null) {
+            metrics.cache("tag_object", tagObjectCache.getHits(), tagObjectCache.getMisses());
+            tagObjectCache.save();
+        }
 
-        for (RepositoryCommit repositoryCommit : repositoryCommitCompare.getCommits()) {
+        if (conditionalRequestCache != null) {
+            int notModified = conditionalRequestCache.getNotModified();
+            metrics.cache("conditional_request", notModified,
+                    conditionalRequestCache.getHits() + conditionalRequestCache.getMisses() - notModified);
+            logger("[INFO] Conditional requests: " + conditionalRequestCache.getNotModified() + " of " +
+                    (conditionalRequestCache.getHits() + conditionalRequestCache.getMisses()) + " not modified");
+            conditionalRequestCache.save();
+        }
 
-            //match PR commits only
-            Pattern pattern = Pattern.compile("^Merge pull request #.*", Pattern.DOTALL);
-            Matcher matcher = pattern.matcher(repositoryCommit.getCommit().getMessage());
+        if (jiraIssueCache != null) {
+            metrics.cache("jira_issue", jiraIssueCache.getHits(), jiraIssueCache.getMisses());
+            jiraIssueCache.save();
+        }
+
+        metrics.setRateLimitRemaining(rateLimitScheduler != null ? rateLimitScheduler.getRemaining() : client.getRemainingRequests());
+        if (rateLimitScheduler != null) {
+            logger("[INFO] Rate limit: " + rateLimitScheduler.getRemaining() + " request(s) remaining, " +
+                    rateLimitScheduler.getRetries() + " rate limited request(s) retried by all builds");
+        }
+    }
 
-            if (matcher.matches()) {
-                //split to separate the message for the merge and the title of the PR
-                String[] mergeMessageArray = repositoryCommit.getCommit().getMessage().split("\\n\\n");
-                String mergeMessage = mergeMessageArray[0];
-                //parse the PR number from the merge commit message
-                String prNumber = mergeMessage.split("#")[1].split(" ")[0];
-                //Append the change log item to the main text
-                changeLogText = changeLogText + "- [#" + prNumber + "](" + gitHubPullRequestUrl + prNumber + ") " +
-                        parseJiraReference(findJiraReferences, jiraUrl, mergeMessageArray[1]) + "\n";
+    /**
+     * Returns the repositories of the owner, which is either an organization or a user
+     *
+     * @param client The client
+     * @param owner The owner
+     * @return The repositories
+     * @throws IOException
+     */
+    private List<Repository> getOwnerRepositories(ChangeLogGitHubClient client, String owner) throws IOException {
+        RepositoryService repositoryService = new RepositoryService(client);
+        try {
+            return repositoryService.getOrgRepositories(owner);
+        } catch (RequestException e) {
+            if (e.getStatus() != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw e;
             }
+            return repositoryService.getRepositories(owner);
         }
-        return changeLogText;
     }
 
     /**
-     * Parse any jira references added to the PR message
+     * Returns a service generating the change log of one of several repositories, sharing the caches of this
+     * service and prefixing its build log lines with the repository name
      *
-     * @param findJiraReferences indicates if jira references need to be parsed
-     * @param jiraUrl The jira url
-     * @param message The PR message to parse
-     * @return The parsed message
+     * @param repositoryName The repository
+     * @return The service
+     */
+    private ChangeLogService forRepository(String repositoryName) {
+        ChangeLogService repositoryService = new ChangeLogService(listener);
+        repositoryService.compareCache = compareCache;
+        repositoryService.tagObjectCache = tagObjectCache;
+        repositoryService.jiraIssueCache = jiraIssueCache;
+        repositoryService.concurrency = concurrency;
+        repositoryService.pullRequestIndexDirectory = pullRequestIndexDirectory;
+        repositoryService.metadataCache = metadataCache;
+        repositoryService.headBranch = headBranch;
+        repositoryService.tagPrefix = tagPrefix;
+        repositoryService.tagPattern = tagPattern;
+        repositoryService.releaseWindow = releaseWindow;
+        repositoryService.modelDirectory = modelDirectory;
+        repositoryService.warmStartDirectory = warmStartDirectory;
+        //the phases of concurrent repositories overlap so they are timed apart, then merged into the build's metrics
+        repositoryService.metrics = new ChangeLogMetrics();
+        repositoryService.logPrefix = "[" + repositoryName + "] ";
+        return repositoryService;
+    }
+
+    /**
+     * Logs the results of the repositories as a table
+     *
+     * @param results The results
+     */
+    private void logSummary(List<RepositoryResult> results) {
+        int width = "Repository".length();
+        for (RepositoryResult result : results) {
+            width = Math.max(width, result.getRepositoryName().length());
+        }
+        String format = "[INFO] %-" + width + "s  %-9s  %9s";
+        logger(String.format(format, "Repository", "Status", "Time (ms)"));
+        int failed = 0;
+        for (RepositoryResult result : results) {
+            String row = String.format(format, result.getRepositoryName(), result.getStatus(), result.getTime());
+            logger(result.getMessage() != null ? row + "  " + result.getMessage() : row);
+            if (result.isFailed()) {
+                failed++;
+            }
+        }
+        logger("[INFO] " + (results.size() - failed) + " of " + results.size() + " change log(s) generated, " + failed + " failed");
+    }
+
+    /**
+     * Decodes the base64 content of an existing file
+     *
+     * @param contents The file contents returned from github
+     * @return The decoded text, empty if the file has no content
+     * @throws IOException
+     */
+    private String decodeContent(RepositoryContents contents) throws IOException {
+        if (contents.getContent() == null) {
+            return "";
+        }
+        return new String(Base64.decodeBase64(contents.getContent().getBytes("UTF-8")), "UTF-8");
+    }
+
+    /**
+     * Fetches the releases for the ranges using a bounded pool of workers
+     *
+     * @param releaseRanges The ranges to fetch, newest first
+     * @return The releases, in the same order as the ranges
+     * @throws IOException if any range fails, naming the range of versions that failed
+     */
+    private List<ChangeLogRelease> fetchReleases(List<ReleaseRange> releaseRanges) throws IOException {
+        List<ChangeLogRelease> releases = new ArrayList<ChangeLogRelease>(releaseRanges.size());
+        if (releaseRanges.isEmpty()) {
+            return releases;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(concurrency, releaseRanges.size()));
+        try {
+            List<Future<ChangeLogRelease>> futures = new ArrayList<Future<ChangeLogRelease>>(releaseRanges.size());
+            for (ReleaseRange releaseRange : releaseRanges) {
+                futures.add(executorService.submit(releaseRange));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    releases.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    ReleaseRange releaseRange = releaseRanges.get(i);
+                    throw (IOException) new IOException("Unable to generate change log for version " +
+                            releaseRange.headTitle + " (" + releaseRange.baseTitle + "..." + releaseRange.headTitle + "): " +
+                            cause.getMessage()).initCause(cause);
+                } catch (InterruptedException e) {
+                    throw (IOException) new InterruptedIOException("Change log generation interrupted").initCause(e);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return releases;
+    }
+
+    /**
+     * Fetches the releases for the ranges a pool's worth at a time, stopping at the first tagged release older than
+     * the cutoff so that releases outside the window are not fetched
+     *
+     * @param releaseRanges The ranges to fetch, newest first
+     * @param cutoff The date the releases must not be older than
+     * @return The releases up to the first one older than the cutoff, in the same order as the ranges
+     * @throws IOException if any range fails, naming the range of versions that failed
+     */
+    private List<ChangeLogRelease> fetchReleasesSince(List<ReleaseRange> releaseRanges, Date cutoff) throws IOException {
+        List<ChangeLogRelease> releases = new ArrayList<ChangeLogRelease>();
+        for (int start = 0; start < releaseRanges.size(); start += concurrency) {
+            List<ReleaseRange> batch = releaseRanges.subList(start, Math.min(start + concurrency, releaseRanges.size()));
+            List<ChangeLogRelease> batchReleases = fetchReleases(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                ChangeLogRelease release = batchReleases.get(i);
+                //the upcoming release is never left out
+                if (batch.get(i).cacheable && release.getDate() != null && release.getDate().before(cutoff)) {
+                    return releases;
+                }
+                releases.add(release);
+            }
+        }
+        return releases;
+    }
+
+    /**
+     * Writes the sections of the releases outside the window into the archive file of their major version. The
+     * archives are checked newest major first and each is only written when releases have left the window since it
+     * was last written, so once an archive is up to date the older ones are too and are not read.
+     *
+     * @param fileContentsService The service reading and writing the archives
+     * @param releaseSource The source of the releases
+     * @param repository The repository
+     * @param warmStart The model of the previous build, optional
+     * @param releaseRefs The release tags
+     * @param windowEnd The position of the newest tag outside the window
+     * @param changeLogBranch The change log branch
+     * @param changeLogName The change log filename (includes path), the archives are written next to it
+     * @param renderer The renderer
+     * @throws IOException
+     */
+    private void archiveReleases(FileContentsService fileContentsService, ReleaseSource releaseSource,
+                                 Repository repository, ChangeLogModel warmStart, ReleaseRefIndex releaseRefs, int windowEnd,
+                                 String changeLogBranch, String changeLogName, MarkdownRenderer renderer) throws IOException {
+        Map<Long, List<Integer>> majors = new LinkedHashMap<Long, List<Integer>>();
+        for (int i = windowEnd; i < releaseRefs.size() - 1; i++) {
+            long major = VersionKey.parse(releaseRefs.get(i).getName()).getMajor();
+            List<Integer> positions = majors.get(major);
+            if (positions == null) {
+                positions = new ArrayList<Integer>();
+                majors.put(major, positions);
+            }
+            positions.add(i);
+        }
+
+        for (Map.Entry<Long, List<Integer>> major : majors.entrySet()) {
+            List<Integer> positions = major.getValue();
+            String archiveName = ReleaseWindow.archiveName(changeLogName, major.getKey());
+            RepositoryContents archive = fileContentsService.getFile(repository, archiveName, changeLogBranch);
+            String archiveText = archive != null ? decodeContent(archive) : "";
+
+            ChangeLogMarker archiveMarker = ChangeLogMarker.parse(archiveText);
+            int archivedIndex = archiveMarker != null ? archiveMarker.indexOf(releaseRefs) : -1;
+            String archivedReleasesText = "";
+            if (archivedIndex >= 0 && positions.contains(archivedIndex)) {
+                int sectionIndex = archiveText.indexOf(MarkdownRenderer.releaseTitle(archiveMarker.getTagName()));
+                if (sectionIndex >= 0) {
+                    archivedReleasesText = archiveText.substring(sectionIndex);
+                } else {
+                    archivedIndex = -1;
+                }
+            } else {
+                archivedIndex = -1;
+            }
+
+            if (archivedIndex == positions.get(0)) {
+                logger("[INFO] Archive " + archiveName + " up to date");
+                break;
+            }
+
+            List<ReleaseRange> releaseRanges = new ArrayList<ReleaseRange>();
+            for (int position : positions) {
+                if (archivedIndex >= 0 && position >= archivedIndex) {
+                    break;
+                }
+                RepositoryTag head = releaseRefs.get(position);
+                releaseRanges.add(new ReleaseRange(releaseSource, repository, warmStart, releaseRefs.get(position + 1).getName(),
+                        head.getName(), head.getCommit().getSha(), releaseRefs.getBaseSha(position), true));
+            }
+            List<ChangeLogRelease> releases = fetchReleases(releaseRanges);
+
+            GitHubFileContentRequest archiveRequest = new GitHubFileContentRequest();
+            archiveRequest.setMessage(COMMIT_MESSAGE);
+            archiveRequest.setBranch(changeLogBranch);
+            if (archive != null) {
+                archiveRequest.setSha(archive.getSha());
+            }
+            RepositoryTag newestTag = releaseRefs.get(positions.get(0));
+            ChangeLogMarker marker = new ChangeLogMarker(newestTag.getName(), newestTag.getCommit().getSha());
+            fileContentsService.createOrUpdateFile(repository, archiveName, archiveRequest,
+                    renderer.changeLog(marker, releases, archivedReleasesText));
+            logger("[INFO] " + releases.size() + " release(s) archived into " + archiveName);
+        }
+    }
+
+    /**
+     * Returns the release with the pull requests between two commits for a specific repository, from the model of the
+     * previous build or the cache if it has been generated before
+     *
+     * @param releaseSource The source of the releases
+     * @param repository The repository for comparison
+     * @param warmStart The model of the previous build, optional
+     * @param headTitle The release title
+     * @param headSha The head commit
+     * @param baseSha The base commit
+     * @param cacheable indicates if the commits are fixed and the release is put in the cache
+     * @return The release
+     * @throws IOException
      */
-    private String parseJiraReference(boolean findJiraReferences, String jiraUrl, String message) {
-        if (findJiraReferences) {
-            Pattern jiraPattern = Pattern.compile("(\\w\\w\\w-\\d+)");
-            Matcher jiraMatcher = jiraPattern.matcher(message);
-            if (jiraMatcher.find()) {
-                return message.replaceAll("(\\w\\w\\w-\\d+)", "[" + jiraMatcher.group(0) + "](" + jiraUrl + "/browse/" + jiraMatcher.group(0) + ")");
+    private ChangeLogRelease generateChangeLogForCommits(ReleaseSource releaseSource, Repository repository,
+                                                         ChangeLogModel warmStart, String headTitle, String headSha,
+                                                         String baseSha, boolean cacheable) throws IOException {
+        logger("[INFO] Generating changelog for version " + headTitle);
+
+        //the release of the same commits, the upcoming one included, is unchanged since the previous build
+        ChangeLogRelease release = null;
+        if (warmStart != null) {
+            release = warmStart.getRelease(baseSha, headSha);
+            if (release != null) {
+                warmStartHits.incrementAndGet();
+            } else {
+                warmStartMisses.incrementAndGet();
+            }
+        }
+
+        //an upcoming release is only put in the cache ahead of a build, by the webhook
+        if (release == null && compareCache != null) {
+            release = compareCache.get(repository, baseSha, headSha);
+        }
+
+        if (release == null) {
+            release = releaseSource.getRelease(baseSha, headSha);
+
+            if (cacheable && compareCache != null) {
+                compareCache.put(repository, baseSha, headSha, release);
             }
         }
-        return message;
+
+        release.setTitle(headTitle);
+        release.setBaseSha(baseSha);
+        release.setHeadSha(headSha);
+        return release;
+    }
+
+    /**
+     * The range of commits between two tags (or a tag and the head branch) that make up a release, fetched by
+     * a worker
+     */
+    private class ReleaseRange implements Callable<ChangeLogRelease> {
+
+        private final ReleaseSource releaseSource;
+
+        private final Repository repository;
+
+        private final ChangeLogModel warmStart;
+
+        private final String baseTitle;
+
+        private final String headTitle;
+
+        private final String headSha;
+
+        private final String baseSha;
+
+        private final boolean cacheable;
+
+        private ReleaseRange(ReleaseSource releaseSource, Repository repository, ChangeLogModel warmStart,
+                             String baseTitle, String headTitle, String headSha, String baseSha, boolean cacheable) {
+            this.releaseSource = releaseSource;
+            this.repository = repository;
+            this.warmStart = warmStart;
+            this.baseTitle = baseTitle;
+            this.headTitle = headTitle;
+            this.headSha = headSha;
+            this.baseSha = baseSha;
+            this.cacheable = cacheable;
+        }
+
+        public ChangeLogRelease call() throws IOException {
+            return generateChangeLogForCommits(releaseSource, repository, warmStart, headTitle, headSha, baseSha, cacheable);
+        }
     }
 
     /**
@@ -215,10 +1212,60 @@ public class ChangeLogService {
      */
     private void logger(String msg) {
         if (this.listener != null) {
-            listener.getLogger().println(msg);
+            listener.getLogger().println(logPrefix + msg);
         } else {
             //Generally for debugging
-            System.out.println(msg);
+            System.out.println(logPrefix + msg);
+        }
+    }
+
+    /**
+     * The result of generating the change log of one of several repositories
+     */
+    public static class RepositoryResult {
+
+        private final String repositoryName;
+
+        /**
+         * published, unchanged or failed
+         */
+        private final String status;
+
+        /**
+         * The reason the repository failed, null if it did not
+         */
+        private final String message;
+
+        /**
+         * The wall time of the repository in milliseconds
+         */
+        private final long time;
+
+        private RepositoryResult(String repositoryName, String status, String message, long time) {
+            this.repositoryName = repositoryName;
+            this.status = status;
+            this.message = message;
+            this.time = time;
+        }
+
+        public String getRepositoryName() {
+            return repositoryName;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public boolean isFailed() {
+            return "failed".equals(status);
         }
     }
 }
@@ -0,0 +1,38 @@
+package com.github.agubler.changelog;
+
+import hudson.Extension;
+import hudson.security.csrf.CrumbExclusion;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Lets the github webhook deliveries to /github-changelog-webhook/ past the crumb filter, github cannot send a crumb.
+ * The deliveries are authenticated by their signature instead, see {@link ChangeLogWebhookRootAction}.
+ */
+@Extension
+public class ChangeLogWebhookCrumbExclusion extends CrumbExclusion {
+
+    @Override
+    public boolean process(HttpServletRequest req, HttpServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        String pathInfo = req.getPathInfo();
+        if (getExclusionPath().equals(pathInfo) || getExclusionPath().equals(pathInfo + "/")) {
+            chain.doFilter(req, resp);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the path of the webhook, the only path excluded
+     *
+     * @return The path
+     */
+    public String getExclusionPath() {
+        return "/" + ChangeLogWebhookRootAction.URL_NAME + "/";
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.JsonParseException;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+/**
+ * A github push or create webhook event that adds a release to a change log, either a new tag or a new commit on a
+ * branch. Only the fields needed to generate the release are read from the payload.
+ */
+public class ChangeLogWebhookEvent {
+
+    private static final String TAG_REF_PREFIX = "refs/tags/";
+
+    private static final String BRANCH_REF_PREFIX = "refs/heads/";
+
+    /**
+     * The owner of the repository
+     */
+    private final String owner;
+
+    /**
+     * The repository
+     */
+    private final String repositoryName;
+
+    /**
+     * The tag created, null for a push to a branch
+     */
+    private final String tagName;
+
+    /**
+     * The branch pushed to, null for a tag
+     */
+    private final String branchName;
+
+    /**
+     * The commit the branch was pushed to, null for a tag
+     */
+    private final String headSha;
+
+    private ChangeLogWebhookEvent(String owner, String repositoryName, String tagName, String branchName, String headSha) {
+        this.owner = owner;
+        this.repositoryName = repositoryName;
+        this.tagName = tagName;
+        this.branchName = branchName;
+        this.headSha = headSha;
+    }
+
+    /**
+     * Reads the event from a webhook delivery
+     *
+     * @param eventType The X-GitHub-Event header
+     * @param payload The json body
+     * @return The event, null if the delivery does not add a release (a ping, a deletion or another event type)
+     * @throws IllegalArgumentException if the payload is not a valid event
+     */
+    public static ChangeLogWebhookEvent parse(String eventType, String payload) {
+        if (!"push".equals(eventType) && !"create".equals(eventType)) {
+            return null;
+        }
+
+        Payload event;
+        try {
+            event = GsonUtils.fromJson(payload, Payload.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid " + eventType + " payload: " + e.getMessage(), e);
+        }
+        if (event == null || event.ref == null || event.repository == null || event.repository.owner == null) {
+            throw new IllegalArgumentException("Invalid " + eventType + " payload: missing ref or repository");
+        }
+        //organization push payloads name the owner by login, user push payloads by name
+        String owner = event.repository.owner.login != null ? event.repository.owner.login : event.repository.owner.name;
+        String repositoryName = event.repository.name;
+
+        if ("create".equals(eventType)) {
+            //a branch created here is pushed to at the same time, which is the event its commits come with
+            return "tag".equals(event.refType) ? new ChangeLogWebhookEvent(owner, repositoryName, event.ref, null, null) : null;
+        }
+        if (event.deleted) {
+            return null;
+        }
+        if (event.ref.startsWith(TAG_REF_PREFIX)) {
+            return new ChangeLogWebhookEvent(owner, repositoryName, event.ref.substring(TAG_REF_PREFIX.length()), null, null);
+        }
+        if (event.ref.startsWith(BRANCH_REF_PREFIX)) {
+            return new ChangeLogWebhookEvent(owner, repositoryName, null, event.ref.substring(BRANCH_REF_PREFIX.length()), event.after);
+        }
+        return null;
+    }
+
+    public boolean isTag() {
+        return tagName != null;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    public String getTagName() {
+        return tagName;
+    }
+
+    public String getBranchName() {
+        return branchName;
+    }
+
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    /**
+     * Returns the repository and ref of the event, a tag push is delivered as both a push and a create event
+     *
+     * @return The key the events of a ref are coalesced by
+     */
+    public String getKey() {
+        return owner + "/" + repositoryName + ":" + (isTag() ? TAG_REF_PREFIX + tagName : BRANCH_REF_PREFIX + branchName);
+    }
+
+    @Override
+    public String toString() {
+        return owner + "/" + repositoryName + (isTag() ? " tag " + tagName : " branch " + branchName + " at " + headSha);
+    }
+
+    /**
+     * The fields read from push and create payloads
+     */
+    private static class Payload {
+
+        private String ref;
+
+        private String refType;
+
+        private String after;
+
+        private boolean deleted;
+
+        private PayloadRepository repository;
+    }
+
+    private static class PayloadRepository {
+
+        private String name;
+
+        private PayloadOwner owner;
+    }
+
+    private static class PayloadOwner {
+
+        private String login;
+
+        private String name;
+    }
+}
@@ -0,0 +1,290 @@
+package com.github.agubler.changelog;
+
+import hudson.Extension;
+import hudson.model.BuildListener;
+import hudson.model.Project;
+import hudson.model.UnprotectedRootAction;
+import hudson.util.Secret;
+import hudson.util.StreamBuildListener;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.binary.Hex;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * Receives the github push and create webhook events at /github-changelog-webhook/ and generates the release each new
+ * tag, or push to the head branch, adds to the change logs of the configured jobs in the background. The releases go
+ * into the compare cache, so the next build of the change log only assembles and publishes it. The push and create
+ * events of a tag, and pushes to a branch that arrive while its release is waiting, are coalesced into one generation.
+ * Deliveries are signed rather than carrying a crumb, see {@link ChangeLogWebhookCrumbExclusion}.
+ */
+@Extension
+public class ChangeLogWebhookRootAction implements UnprotectedRootAction {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeLogWebhookRootAction.class.getName());
+
+    /**
+     * The url of the webhook under the jenkins root
+     */
+    public static final String URL_NAME = "github-changelog-webhook";
+
+    /**
+     * The largest payload accepted, github truncates payloads at 25MB but the fields read are at the start
+     */
+    private static final int MAX_PAYLOAD_SIZE = 25 * 1024 * 1024;
+
+    /**
+     * The prefix of the X-Hub-Signature-256 header
+     */
+    private static final String SIGNATURE_PREFIX = "sha256=";
+
+    /**
+     * The releases waiting to be generated, by repository and ref
+     */
+    private final Map<String, PendingRelease> pending = new HashMap<String, PendingRelease>();
+
+    /**
+     * Generates the releases one at a time, off the request thread
+     */
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "github-changelog-webhook");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Receives a webhook delivery
+     */
+    @RequirePOST
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GithubChangeLogBuilder.DescriptorImpl descriptor = getDescriptor();
+        StringWriter text = new StringWriter();
+        int status = deliver(req.getHeader("X-GitHub-Event"), req.getHeader("X-Hub-Signature-256"), read(req.getInputStream()),
+                descriptor != null ? Secret.toString(descriptor.getWebhookSecret()) : null, getBuilders(), new PrintWriter(text));
+        rsp.setStatus(status);
+        rsp.setContentType("text/plain; charset=utf-8");
+        PrintWriter writer = rsp.getWriter();
+        writer.print(text.toString());
+        writer.flush();
+    }
+
+    /**
+     * Handles a webhook delivery, queueing the release generation for each builder triggered by the event
+     *
+     * @param eventType The X-GitHub-Event header
+     * @param signature The X-Hub-Signature-256 header
+     * @param payload The body of the delivery
+     * @param secret The webhook secret, deliveries are refused while it is blank
+     * @param builders The builders of the configured jobs
+     * @param out The text of the response
+     * @return The http status of the response
+     */
+    public int deliver(String eventType, String signature, byte[] payload, String secret,
+                       List<GithubChangeLogBuilder> builders, PrintWriter out) {
+        //the endpoint is unprotected, so only signed deliveries may spend the api quota of the oauth token
+        if (!hasText(secret)) {
+            out.println("No webhook secret is configured");
+            return 403;
+        }
+        if (!isSignatureValid(secret, payload, signature)) {
+            out.println("Invalid signature");
+            return 403;
+        }
+
+        final ChangeLogWebhookEvent event;
+        try {
+            event = ChangeLogWebhookEvent.parse(eventType, new String(payload, "UTF-8"));
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return 400;
+        } catch (IOException e) {
+            out.println(e.getMessage());
+            return 400;
+        }
+        if (event == null) {
+            out.println("Ignored " + eventType + " event, it adds no release");
+            return 200;
+        }
+
+        List<GithubChangeLogBuilder> triggered = new ArrayList<GithubChangeLogBuilder>();
+        for (GithubChangeLogBuilder builder : builders) {
+            if (builder.isTriggeredBy(event)) {
+                triggered.add(builder);
+            }
+        }
+        final String key = event.getKey();
+        boolean queued;
+        synchronized (pending) {
+            //the latest event of the ref replaces the one waiting, a branch is generated at its newest commit
+            queued = pending.put(key, new PendingRelease(event, triggered)) != null;
+        }
+        if (queued) {
+            out.println("The release of " + event + " is already queued for generation");
+        } else {
+            executorService.execute(new Runnable() {
+                public void run() {
+                    PendingRelease release;
+                    synchronized (pending) {
+                        release = pending.remove(key);
+                    }
+                    for (GithubChangeLogBuilder builder : release.builders) {
+                        precompute(builder, release.event);
+                    }
+                }
+            });
+            out.println("Generating the release of " + event + " for " + triggered.size() + " change log(s)");
+        }
+        return 202;
+    }
+
+    /**
+     * Generates the release of the event for a builder, logging to the controller log
+     *
+     * @param builder The builder
+     * @param event The event
+     */
+    private void precompute(GithubChangeLogBuilder builder, ChangeLogWebhookEvent event) {
+        LOGGER.log(Level.INFO, "Generating the release of webhook event {0}", event);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        BuildListener listener = new StreamBuildListener(log, Charset.forName("UTF-8"));
+        try {
+            builder.precomputeRelease(listener, event);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Unable to generate the release of webhook event " + event, e);
+        } finally {
+            listener.getLogger().flush();
+            if (log.size() > 0) {
+                LOGGER.log(Level.FINE, "Release of webhook event {0}:\n{1}", new Object[]{event, toString(log)});
+            }
+        }
+    }
+
+    private static String toString(ByteArrayOutputStream log) {
+        try {
+            return log.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verifies the hmac github signs the payload with
+     *
+     * @param secret The webhook secret
+     * @param payload The payload
+     * @param signature The X-Hub-Signature-256 header
+     * @return true if the payload was signed with the secret
+     */
+    static boolean isSignatureValid(String secret, byte[] payload, String signature) {
+        if (signature == null || !signature.startsWith(SIGNATURE_PREFIX)) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+            byte[] expected = Hex.encodeHexString(mac.doFinal(payload)).getBytes("UTF-8");
+            return MessageDigest.isEqual(expected, signature.substring(SIGNATURE_PREFIX.length()).getBytes("UTF-8"));
+        } catch (GeneralSecurityException e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the change log builders of the configured jobs
+     *
+     * @return The builders
+     */
+    private static List<GithubChangeLogBuilder> getBuilders() {
+        List<GithubChangeLogBuilder> builders = new ArrayList<GithubChangeLogBuilder>();
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null) {
+            for (Project<?, ?> project : jenkins.getAllItems(Project.class)) {
+                GithubChangeLogBuilder builder = project.getBuildersList().get(GithubChangeLogBuilder.class);
+                if (builder != null) {
+                    builders.add(builder);
+                }
+            }
+        }
+        return builders;
+    }
+
+    private static GithubChangeLogBuilder.DescriptorImpl getDescriptor() {
+        Jenkins jenkins = Jenkins.getInstance();
+        return jenkins != null ? jenkins.getDescriptorByType(GithubChangeLogBuilder.DescriptorImpl.class) : null;
+    }
+
+    /**
+     * Reads the body of the delivery
+     *
+     * @param in The request body
+     * @return The payload
+     * @throws IOException if the body is larger than a github payload
+     */
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            payload.write(buffer, 0, read);
+            if (payload.size() > MAX_PAYLOAD_SIZE) {
+                throw new IOException("Webhook payload larger than " + MAX_PAYLOAD_SIZE + " bytes");
+            }
+        }
+        return payload.toByteArray();
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Github Change Log Webhook";
+    }
+
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * A release waiting to be generated, with the builders of the change logs it is added to
+     */
+    private static class PendingRelease {
+
+        private final ChangeLogWebhookEvent event;
+
+        private final List<GithubChangeLogBuilder> builders;
+
+        private PendingRelease(ChangeLogWebhookEvent event, List<GithubChangeLogBuilder> builders) {
+            this.event = event;
+            this.builders = builders;
+        }
+    }
+}
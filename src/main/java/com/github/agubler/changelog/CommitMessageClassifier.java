@@ -0,0 +1,205 @@
+package com.github.agubler.changelog;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies commits, picking out the pull request merges with their number, title and jira keys, and links the jira
+ * keys in a title. A commit found in the pull request index (including squash and rebase merges) is resolved by its
+ * sha, any other commit by its "Merge pull request #" message. The patterns are compiled once and the classifier holds no per message state, so one
+ * instance is shared by all the workers of a build.
+ */
+public class CommitMessageClassifier implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The start of the message of a github pull request merge commit
+     */
+    private static final String MERGE_PREFIX = "Merge pull request #";
+
+    /**
+     * Separates the merge message from the pull request title
+     */
+    private static final String PARAGRAPH_SEPARATOR = "\n\n";
+
+    /**
+     * A whole jira issue key, a project key of upper case letters and digits, as linked and as the details of the
+     * issues are fetched
+     */
+    private static final Pattern JIRA_KEY_PATTERN = Pattern.compile("\\b[A-Z][A-Z0-9]+-\\d+\\b");
+
+    /**
+     * The url jira issues are linked to, followed by the key, null if jira references are not linked
+     */
+    private final String jiraBrowseUrl;
+
+    /**
+     * The pull request entries by merge commit sha, never modified
+     */
+    private final Map<String, ChangeLogEntry> pullRequests;
+
+    /**
+     * Constructor; takes the jira link configuration
+     *
+     * @param findJiraReferences indicates if jira references need to be linked
+     * @param jiraUrl the jira url
+     */
+    public CommitMessageClassifier(boolean findJiraReferences, String jiraUrl) {
+        this(findJiraReferences, jiraUrl, Collections.<String, ChangeLogEntry>emptyMap());
+    }
+
+    /**
+     * Constructor; takes the jira link configuration and the pull request index
+     *
+     * @param findJiraReferences indicates if jira references need to be linked
+     * @param jiraUrl the jira url
+     * @param pullRequests the pull request entries by merge commit sha
+     */
+    public CommitMessageClassifier(boolean findJiraReferences, String jiraUrl, Map<String, ChangeLogEntry> pullRequests) {
+        this.jiraBrowseUrl = findJiraReferences ? jiraUrl + "/browse/" : null;
+        this.pullRequests = pullRequests;
+    }
+
+    /**
+     * Classifies a commit
+     *
+     * @param sha The commit sha
+     * @param message The commit message
+     * @return The change log entry if the commit merged a pull request, otherwise null
+     */
+    public ChangeLogEntry classify(String sha, String message) {
+        ChangeLogEntry entry = pullRequests.get(sha);
+        return entry != null ? entry : classify(message);
+    }
+
+    /**
+     * Returns the entry for a pull request, with the jira keys referenced in its title
+     *
+     * @param number The pull request number
+     * @param title The pull request title
+     * @return The entry
+     */
+    public ChangeLogEntry createEntry(String number, String title) {
+        ChangeLogEntry entry = new ChangeLogEntry(number, title);
+        entry.setJiraKeys(getJiraKeys(title));
+        return entry;
+    }
+
+    /**
+     * Returns the keys of the jira issues a title references, whole keys only so that no other issue is looked up
+     *
+     * @param title The pull request title
+     * @return The keys, in order of appearance
+     */
+    public List<String> getJiraKeys(String title) {
+        List<String> keys = new ArrayList<String>();
+        Matcher matcher = JIRA_KEY_PATTERN.matcher(title);
+        while (matcher.find()) {
+            keys.add(matcher.group());
+        }
+        return keys;
+    }
+
+    /**
+     * Indicates if a message is a pull request merge message, the only messages {@link #classify(String)} picks out
+     *
+     * @param message The commit message
+     * @return true if the message starts like a github merge commit message
+     */
+    public static boolean isMergeMessage(String message) {
+        return message != null && message.startsWith(MERGE_PREFIX);
+    }
+
+    /**
+     * Classifies a commit message
+     *
+     * @param message The commit message
+     * @return The change log entry if the commit merged a pull request, otherwise null
+     */
+    public ChangeLogEntry classify(String message) {
+        if (!isMergeMessage(message)) {
+            return null;
+        }
+
+        //the merge message is the first paragraph, the title is the second
+        int mergeMessageEnd = message.indexOf(PARAGRAPH_SEPARATOR, MERGE_PREFIX.length());
+        if (mergeMessageEnd < 0) {
+            mergeMessageEnd = message.length();
+        }
+        int numberEnd = MERGE_PREFIX.length();
+        while (numberEnd < mergeMessageEnd && message.charAt(numberEnd) != ' ' && message.charAt(numberEnd) != '#') {
+            numberEnd++;
+        }
+
+        String title = "";
+        int titleStart = mergeMessageEnd + PARAGRAPH_SEPARATOR.length();
+        if (titleStart <= message.length()) {
+            int titleEnd = message.indexOf(PARAGRAPH_SEPARATOR, titleStart);
+            title = message.substring(titleStart, titleEnd >= 0 ? titleEnd : message.length());
+        }
+
+        return createEntry(message.substring(MERGE_PREFIX.length(), numberEnd), title);
+    }
+
+    /**
+     * Writes the title with each jira key linked to its issue
+     *
+     * @param title The pull request title
+     * @param out The output
+     * @throws IOException
+     */
+    public void linkJiraReferences(String title, Appendable out) throws IOException {
+        if (jiraBrowseUrl == null) {
+            out.append(title);
+            return;
+        }
+        Matcher matcher = JIRA_KEY_PATTERN.matcher(title);
+        int position = 0;
+        while (matcher.find()) {
+            out.append(title, position, matcher.start());
+            out.append('[').append(title, matcher.start(), matcher.end()).append("](").append(jiraBrowseUrl)
+                    .append(title, matcher.start(), matcher.end()).append(')');
+            position = matcher.end();
+        }
+        out.append(title, position, title.length());
+    }
+
+    /**
+     * Writes a whole jira key, as found by {@link #getJiraKeys(String)}, linked to its issue
+     *
+     * @param key The jira key
+     * @param out The output
+     * @throws IOException
+     */
+    public void linkJiraKey(String key, Appendable out) throws IOException {
+        if (jiraBrowseUrl == null) {
+            out.append(key);
+        } else {
+            out.append('[').append(key).append("](").append(jiraBrowseUrl).append(key).append(')');
+        }
+    }
+
+    /**
+     * Returns the title with each jira key linked to its issue
+     *
+     * @param title The pull request title
+     * @return The linked title
+     */
+    public String linkJiraReferences(String title) {
+        StringBuilder linked = new StringBuilder(title.length() + 64);
+        try {
+            linkJiraReferences(title, linked);
+        } catch (IOException e) {
+            //a StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+        return linked.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Persistent cache of the pull requests merged between two commits. A compare between two fixed commit shas never
+ * changes so entries are keyed by the repository and both shas and never invalidated, only evicted (least recently
+ * used first) when the cache file grows beyond its maximum size.
+ */
+public class CompareCache extends PersistentCache<CompareCache.Range> {
+
+    /**
+     * The default maximum size of the cache file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The cache file name, versioned as releases cached before the pull request index miss squash and rebase merges,
+     * and those cached before v3 hold partial jira keys
+     */
+    private static final String CACHE_FILE = "compare-cache-v3.jsonl";
+
+    /**
+     * The cache file name of the releases found by their merge commit messages alone, without the pull request index
+     */
+    private static final String MERGE_MESSAGE_CACHE_FILE = "compare-cache-merge-messages-v3.jsonl";
+
+    /**
+     * Constructor; takes the directory to keep the cache file in
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum size of the cache file in bytes
+     */
+    public CompareCache(File directory, long maxSize) {
+        this(directory, maxSize, true);
+    }
+
+    /**
+     * Constructor; takes the directory to keep the cache file in and whether the releases are found with the pull
+     * request index, the releases found without it are kept apart as they miss the squash and rebase merges
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum size of the cache file in bytes
+     * @param pullRequestIndex indicates if the releases are found with the pull request index
+     */
+    public CompareCache(File directory, long maxSize, boolean pullRequestIndex) {
+        super(new File(directory, pullRequestIndex ? CACHE_FILE : MERGE_MESSAGE_CACHE_FILE), Range.class, maxSize);
+    }
+
+    /**
+     * Returns the cached release for the range, the title is not cached and is left unset
+     *
+     * @param repository The repository
+     * @param baseSha The base commit sha
+     * @param headSha The head commit sha
+     * @return The cached release, null if the range is not cached
+     */
+    public ChangeLogRelease get(IRepositoryIdProvider repository, String baseSha, String headSha) {
+        Range range = get(key(repository, baseSha, headSha));
+        if (range == null) {
+            return null;
+        }
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setDate(new Date(range.date));
+        release.setEntries(new ArrayList<ChangeLogEntry>(range.entries));
+        return release;
+    }
+
+    /**
+     * Caches the release for the range
+     *
+     * @param repository The repository
+     * @param baseSha The base commit sha
+     * @param headSha The head commit sha
+     * @param release The release generated for the range
+     */
+    public void put(IRepositoryIdProvider repository, String baseSha, String headSha, ChangeLogRelease release) {
+        Range range = new Range();
+        range.key = key(repository, baseSha, headSha);
+        range.date = release.getDate().getTime();
+        range.entries = new ArrayList<ChangeLogEntry>(release.getEntries());
+        put(range);
+    }
+
+    @Override
+    protected String keyOf(Range range) {
+        return range.entries != null ? range.key : null;
+    }
+
+    /**
+     * Returns the cache key of the range
+     */
+    private static String key(IRepositoryIdProvider repository, String baseSha, String headSha) {
+        return repository.generateId() + ":" + baseSha + ".." + headSha;
+    }
+
+    /**
+     * A cache line
+     */
+    static class Range {
+
+        private String key;
+
+        private long date;
+
+        private List<ChangeLogEntry> entries;
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.agubler.changelog;
+
+import java.io.File;
+
+/**
+ * Persistent cache of github GET responses with their validators (ETag / Last-Modified), used to make conditional
+ * requests. A "304 Not Modified" response does not count against the github rate limit and the cached body is
+ * replayed instead.
+ */
+public class ConditionalRequestCache extends PersistentCache<ConditionalRequestCache.CachedResponse> {
+
+    /**
+     * The default maximum size of the cache file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * The cache file name
+     */
+    private static final String CACHE_FILE = "conditional-request-cache.jsonl";
+
+    /**
+     * The number of cached responses github confirmed were not modified
+     */
+    private int notModified;
+
+    /**
+     * Constructor; takes the directory to keep the cache file in
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum size of the cache file in bytes
+     */
+    public ConditionalRequestCache(File directory, long maxSize) {
+        super(new File(directory, CACHE_FILE), CachedResponse.class, maxSize);
+    }
+
+    /**
+     * Returns the cached response for the request
+     *
+     * @param uri The request uri, including the host
+     * @return The cached response, null if there is no response to validate
+     */
+    public CachedResponse getResponse(String uri) {
+        return get(uri);
+    }
+
+    /**
+     * Caches the response for the request
+     *
+     * @param response The response, must have an ETag or Last-Modified validator
+     */
+    public void putResponse(CachedResponse response) {
+        put(response);
+    }
+
+    /**
+     * Records that github confirmed a cached response was not modified
+     */
+    public synchronized void notModified() {
+        notModified++;
+    }
+
+    public synchronized int getNotModified() {
+        return notModified;
+    }
+
+    @Override
+    protected String keyOf(CachedResponse response) {
+        return response.body != null ? response.uri : null;
+    }
+
+    /**
+     * A cached response
+     */
+    public static class CachedResponse {
+
+        private String uri;
+
+        private String etag;
+
+        private String lastModified;
+
+        private String body;
+
+        private String first;
+
+        private String previous;
+
+        private String next;
+
+        private String last;
+
+        /**
+         * Default constructor
+         */
+        public CachedResponse() {
+        }
+
+        /**
+         * Constructor; takes the response and its validators
+         *
+         * @param uri the request uri, including the host
+         * @param etag the ETag header
+         * @param lastModified the Last-Modified header
+         * @param body the response body
+         */
+        public CachedResponse(String uri, String etag, String lastModified, String body) {
+            this.uri = uri;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        /**
+         * Sets the paging links of the response, which are not reliably repeated on a 304
+         *
+         * @param first the first page link
+         * @param previous the previous page link
+         * @param next the next page link
+         * @param last the last page link
+         */
+        public void setLinks(String first, String previous, String next, String last) {
+            this.first = first;
+            this.previous = previous;
+            this.next = next;
+            this.last = last;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getFirst() {
+            return first;
+        }
+
+        public String getPrevious() {
+            return previous;
+        }
+
+        public String getNext() {
+            return next;
+        }
+
+        public String getLast() {
+            return last;
+        }
+    }
+}
@@ -1,23 +1,73 @@
 package com.github.agubler.changelog;
 
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.codec.binary.Hex;
+import org.eclipse.egit.github.core.Blob;
+import org.eclipse.egit.github.core.Commit;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.Reference;
 import org.eclipse.egit.github.core.RepositoryContents;
+import org.eclipse.egit.github.core.Tree;
+import org.eclipse.egit.github.core.TreeEntry;
+import org.eclipse.egit.github.core.TypedResource;
 import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GsonUtils;
 import org.eclipse.egit.github.core.client.RequestException;
 import org.eclipse.egit.github.core.service.ContentsService;
+import org.eclipse.egit.github.core.service.DataService;
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
+import java.util.List;
 
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_BLOBS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_GIT;
 import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
 import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_CONTENTS;
 
 /**
- * Extends the {@link ContentsService} to provide support for create/update/get files from Github
+ * Extends the {@link ContentsService} to provide support for create/update/get files from Github. Files larger than the
+ * contents api handles well are committed through the git data api instead.
  */
 public class FileContentsService extends ContentsService {
 
+    /**
+     * The default size in bytes above which files are committed through the git data api
+     */
+    public static final long DEFAULT_GIT_DATA_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The number of times a git data commit is rebuilt when the branch moves before it is fast-forwarded
+     */
+    public static final int MAX_REF_RETRIES = 3;
+
+    /**
+     * The contents encoding of files too large for the contents api to return
+     */
+    private static final String ENCODING_NONE = "none";
+
+    /**
+     * The status of a reference update that is not a fast-forward
+     */
+    private static final int HTTP_UNPROCESSABLE_ENTITY = 422;
+
+    /**
+     * The size in bytes above which files are committed through the git data api
+     */
+    private long gitDataThreshold = DEFAULT_GIT_DATA_THRESHOLD;
+
     /**
      * Default constructor
      */
@@ -33,6 +83,15 @@ public class FileContentsService extends ContentsService {
         super(client);
     }
 
+    /**
+     * Sets the size above which files are committed through the git data api rather than the contents api
+     *
+     * @param gitDataThreshold the size of the content in bytes
+     */
+    public void setGitDataThreshold(long gitDataThreshold) {
+        this.gitDataThreshold = gitDataThreshold;
+    }
+
     /**
      * Creates or updates a file in github, updates if a {@link GitHubFileContentRequest#sha} is present
      * @param repository The repository to push the file to
@@ -47,6 +106,160 @@ public class FileContentsService extends ContentsService {
         return client.put(SEGMENT_REPOS + '/' + id + SEGMENT_CONTENTS + "/" + filePath, gitHubFileContent, Object.class);
     }
 
+    /**
+     * Creates or updates a file in github with the content streamed into the request, base64 encoding it on the way,
+     * so neither the content nor its encoding is ever held in memory. Content over the git data threshold is committed
+     * to the branch through the git data api.
+     *
+     * @param repository The repository to push the file to
+     * @param filePath the path of the file (includes name)
+     * @param gitHubFileContent The commit message, branch and sha of the file, the content is ignored
+     * @param content The content of the file
+     * @return The Object created
+     * @throws IOException
+     */
+    public Object createOrUpdateFile(IRepositoryIdProvider repository, String filePath, GitHubFileContentRequest gitHubFileContent,
+                                     StreamingContent content) throws IOException {
+        if (!(client instanceof ChangeLogGitHubClient)) {
+            StringWriter writer = new StringWriter();
+            content.writeTo(writer);
+            gitHubFileContent.setContent(new String(Base64.encodeBase64(writer.toString().getBytes("UTF-8")), "UTF-8"));
+            return createOrUpdateFile(repository, filePath, gitHubFileContent);
+        }
+
+        MeasuredContent measured = measure(content);
+        if (gitHubFileContent.getBranch() != null && measured.getLength() > gitDataThreshold) {
+            return commitFile(repository, filePath, gitHubFileContent, measured);
+        }
+
+        String id = getId(repository);
+
+        return ((ChangeLogGitHubClient) client).putStream(SEGMENT_REPOS + '/' + id + SEGMENT_CONTENTS + "/" + filePath,
+                new Base64ContentBody(fileContentMembers(gitHubFileContent), measured), Object.class);
+    }
+
+    /**
+     * Commits a file to a branch through the git data api: the content is streamed into a new blob, and a tree and a
+     * commit on top of the head of the branch are created before the branch is fast-forwarded. If the branch moves in
+     * the meantime the tree and commit are rebuilt on the new head.
+     *
+     * @param repository The repository to push the file to
+     * @param filePath the path of the file (includes name)
+     * @param gitHubFileContent The commit message and branch, the content and sha are ignored
+     * @param content The content of the file
+     * @return The updated branch reference
+     * @throws IOException
+     */
+    private Reference commitFile(IRepositoryIdProvider repository, String filePath, GitHubFileContentRequest gitHubFileContent,
+                                MeasuredContent content) throws IOException {
+        String id = getId(repository);
+        DataService dataService = new DataService(client);
+
+        //the blob does not depend on the head of the branch so it is only sent once
+        ShaResource blob = ((ChangeLogGitHubClient) client).postStream(SEGMENT_REPOS + '/' + id + SEGMENT_GIT + SEGMENT_BLOBS,
+                new Base64ContentBody("\"encoding\":\"base64\"", content), ShaResource.class);
+        TreeEntry entry = new TreeEntry();
+        entry.setPath(filePath);
+        entry.setMode(TreeEntry.MODE_BLOB);
+        entry.setType(TreeEntry.TYPE_BLOB);
+        entry.setSha(blob.sha);
+
+        String branchRef = "heads/" + gitHubFileContent.getBranch();
+        for (int attempt = 0; ; attempt++) {
+            Reference head = dataService.getReference(repository, branchRef);
+            Commit parent = dataService.getCommit(repository, head.getObject().getSha());
+            Tree tree = dataService.createTree(repository, Collections.singletonList(entry), parent.getTree().getSha());
+
+            Commit commit = new Commit();
+            commit.setMessage(gitHubFileContent.getMessage());
+            commit.setTree(tree);
+            commit.setParents(Collections.singletonList(new Commit().setSha(head.getObject().getSha())));
+            commit = dataService.createCommit(repository, commit);
+
+            head.setObject(new TypedResource().setSha(commit.getSha()).setType(TypedResource.TYPE_COMMIT));
+            try {
+                return dataService.editReference(repository, head, false);
+            } catch (RequestException e) {
+                //422 when the update is no longer a fast-forward as the branch has moved
+                if (e.getStatus() != HTTP_UNPROCESSABLE_ENTITY || attempt >= MAX_REF_RETRIES) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the git blob sha of the content, the sha github reports for a file with the content
+     *
+     * @param content The content
+     * @return The hex sha-1 of the blob header and content
+     * @throws IOException
+     */
+    public static String blobSha(StreamingContent content) throws IOException {
+        return measure(content).getSha();
+    }
+
+    /**
+     * Returns the length of the content in bytes once encoded as UTF-8
+     *
+     * @param content The content
+     * @return The length
+     * @throws IOException
+     */
+    public static long contentLength(StreamingContent content) throws IOException {
+        return measure(content).getLength();
+    }
+
+    /**
+     * Measures the content, so its length is only counted once however often it is needed
+     *
+     * @param content The content
+     * @return The measured content, the content itself if it is already measured
+     * @throws IOException
+     */
+    public static MeasuredContent measure(StreamingContent content) throws IOException {
+        if (content instanceof MeasuredContent) {
+            return (MeasuredContent) content;
+        }
+        CountingOutputStream counter = new CountingOutputStream();
+        Writer writer = new OutputStreamWriter(counter, "UTF-8");
+        content.writeTo(writer);
+        writer.close();
+        return new MeasuredContent(content, counter.getCount());
+    }
+
+    /**
+     * Returns the metadata of a file from github without its content, null if the file cannot be found. The file is
+     * found in the listing of its directory, which never includes the content.
+     *
+     * @param repository The repository
+     * @param filePath the path of the file (includes name)
+     * @param ref the branch to find the file
+     * @return The file contents object, without the content
+     * @throws IOException if the directory cannot be listed for any reason other than not being found
+     */
+    public RepositoryContents getFileMetadata(IRepositoryIdProvider repository, String filePath, String ref) throws IOException {
+        int nameStart = filePath.lastIndexOf('/');
+        String directory = nameStart >= 0 ? filePath.substring(0, nameStart) : "";
+        String name = filePath.substring(nameStart + 1);
+
+        List<RepositoryContents> listing;
+        try {
+            listing = getContents(repository, directory, ref);
+        } catch (RequestException e) {
+            if (e.getStatus() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+        for (RepositoryContents contents : listing) {
+            if (name.equals(contents.getName()) && RepositoryContents.TYPE_FILE.equals(contents.getType())) {
+                return contents;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns a file from github, null if the file cannot be found
      *
@@ -71,6 +284,164 @@ public class FileContentsService extends ContentsService {
             repositoryContents = (RepositoryContents) client.get(request).getBody();
         } catch (RequestException ignored) { }
 
+        if (repositoryContents != null && ENCODING_NONE.equals(repositoryContents.getEncoding())) {
+            //the contents api leaves out the content of large files, which is read from their blob instead
+            Blob blob = new DataService(client).getBlob(repository, repositoryContents.getSha());
+            repositoryContents.setContent(blob.getContent());
+            repositoryContents.setEncoding(blob.getEncoding());
+        }
         return repositoryContents;
     }
+
+    /**
+     * Returns the JSON members of a create or update file request other than the content
+     */
+    private static String fileContentMembers(GitHubFileContentRequest gitHubFileContent) {
+        StringBuilder json = new StringBuilder("\"message\":").append(GsonUtils.toJson(gitHubFileContent.getMessage()));
+        if (gitHubFileContent.getBranch() != null) {
+            json.append(",\"branch\":").append(GsonUtils.toJson(gitHubFileContent.getBranch()));
+        }
+        if (gitHubFileContent.getSha() != null) {
+            json.append(",\"sha\":").append(GsonUtils.toJson(gitHubFileContent.getSha()));
+        }
+        return json.toString();
+    }
+
+    /**
+     * A JSON request body with the base64 encoded content streamed in as its last member
+     */
+    private static class Base64ContentBody implements ChangeLogGitHubClient.StreamingBody {
+
+        /**
+         * The JSON up to the content value
+         */
+        private final byte[] prefix;
+
+        /**
+         * The JSON after the content value
+         */
+        private final byte[] suffix;
+
+        private final MeasuredContent content;
+
+        /**
+         * @param members the JSON members before the content, without the enclosing braces
+         * @param content the content
+         */
+        private Base64ContentBody(String members, MeasuredContent content) throws IOException {
+            this.prefix = ("{" + members + ",\"content\":\"").getBytes("UTF-8");
+            this.suffix = "\"}".getBytes("UTF-8");
+            this.content = content;
+        }
+
+        public long getLength() {
+            //every 3 bytes of content become 4 base64 characters, the last group padded
+            return prefix.length + (content.getLength() + 2) / 3 * 4 + suffix.length;
+        }
+
+        public void writeTo(OutputStream output) throws IOException {
+            output.write(prefix);
+            //closing the encoder writes out the final group, but must leave the request stream open
+            OutputStream encoder = new Base64OutputStream(new FilterOutputStream(output) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            }, true, 0, new byte[0]);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(encoder, "UTF-8"));
+            content.writeTo(writer);
+            writer.close();
+            output.write(suffix);
+        }
+    }
+
+    /**
+     * Content with its length counted, and its blob sha once it is asked for. The blob header holds the length, so
+     * the sha takes a second pass over the content, and the length is never counted again to send the content.
+     */
+    public static class MeasuredContent implements StreamingContent {
+
+        private final StreamingContent content;
+
+        private final long length;
+
+        private String sha;
+
+        private MeasuredContent(StreamingContent content, long length) {
+            this.content = content;
+            this.length = length;
+        }
+
+        /**
+         * Returns the length of the content in bytes once encoded as UTF-8
+         *
+         * @return The length
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the git blob sha of the content, the sha github reports for a file with the content
+         *
+         * @return The hex sha-1 of the blob header and content
+         * @throws IOException
+         */
+        public synchronized String getSha() throws IOException {
+            if (sha == null) {
+                MessageDigest digest;
+                try {
+                    digest = MessageDigest.getInstance("SHA-1");
+                } catch (NoSuchAlgorithmException e) {
+                    throw (IOException) new IOException("SHA-1 is not available").initCause(e);
+                }
+                DigestOutputStream digestStream = new DigestOutputStream(new CountingOutputStream(), digest);
+                digestStream.write(("blob " + length + "\0").getBytes("UTF-8"));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(digestStream, "UTF-8"));
+                content.writeTo(writer);
+                writer.close();
+                sha = Hex.encodeHexString(digest.digest());
+            }
+            return sha;
+        }
+
+        public void writeTo(Writer writer) throws IOException {
+            content.writeTo(writer);
+        }
+    }
+
+    /**
+     * The sha of a created git object
+     */
+    private static class ShaResource {
+
+        private String sha;
+    }
+
+    /**
+     * Counts the bytes written, discarding them
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
 }
@@ -0,0 +1,355 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.Reference;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.Tag;
+import org.eclipse.egit.github.core.TypedResource;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
+import org.eclipse.egit.github.core.client.PageIterator;
+import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.client.RequestException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_COMMITS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_COMPARE;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_GIT;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_TAGS;
+
+/**
+ * Reads the releases through the github api. A release is read with a single compare unless it has more commits than
+ * a compare returns (250), in which case the history is walked back from the head a page at a time until the base is
+ * reached. Only the sha and message of each commit are read, the file lists of the compare are skipped. Refs are
+ * resolved through the git data api so only the tags matching the prefix, or the one branch asked for, are read. The
+ * annotated tags are peeled concurrently, and the commits they point to are kept in the tag object cache when it is set.
+ */
+public class GitHubReleaseSource implements ReleaseSource {
+
+    /**
+     * The number of commits listed per page when walking the history, the most github allows
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * The refs whose names start with a prefix
+     */
+    private static final String SEGMENT_MATCHING_REFS = "/matching-refs";
+
+    /**
+     * A single ref, by its exact name
+     */
+    private static final String SEGMENT_REF = "/ref";
+
+    private static final String TAGS_REF = "refs/tags/";
+
+    private final GitHubClient client;
+
+    private final Repository repository;
+
+    private final CommitMessageClassifier classifier;
+
+    /**
+     * The cache of the commits annotated tags point to, optional
+     */
+    private TagObjectCache tagObjectCache;
+
+    /**
+     * The number of annotated tags peeled concurrently
+     */
+    private int concurrency = 1;
+
+    /**
+     * Constructor; takes the client for the github host
+     *
+     * @param client the github client
+     * @param repository the repository
+     * @param classifier the classifier for the commit messages
+     */
+    public GitHubReleaseSource(GitHubClient client, Repository repository, CommitMessageClassifier classifier) {
+        this.client = client;
+        this.repository = repository;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Sets the cache of the commits annotated tags point to
+     *
+     * @param tagObjectCache the tag object cache
+     */
+    public void setTagObjectCache(TagObjectCache tagObjectCache) {
+        this.tagObjectCache = tagObjectCache;
+    }
+
+    /**
+     * Sets the number of annotated tags peeled concurrently
+     *
+     * @param concurrency the number of concurrent requests
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public List<RepositoryTag> getTags(String prefix) throws IOException {
+        PagedRequest<Reference> request = new PagedRequest<Reference>(1, PAGE_SIZE);
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_GIT + SEGMENT_MATCHING_REFS + "/tags/" + prefix);
+        request.setType(new TypeToken<List<Reference>>() { }.getType());
+
+        List<RepositoryTag> tags = new ArrayList<RepositoryTag>();
+        //the annotated tags not in the cache, with the tag objects their refs point to
+        List<RepositoryTag> annotatedTags = new ArrayList<RepositoryTag>();
+        List<TypedResource> tagObjects = new ArrayList<TypedResource>();
+        PageIterator<Reference> pages = new PageIterator<Reference>(request, client);
+        try {
+            while (pages.hasNext()) {
+                for (Reference reference : pages.next()) {
+                    RepositoryTag tag = new RepositoryTag();
+                    tag.setName(reference.getRef().substring(TAGS_REF.length()));
+                    TypedResource object = reference.getObject();
+                    String sha = object.getSha();
+                    if (TypedResource.TYPE_TAG.equals(object.getType())) {
+                        sha = tagObjectCache != null ? tagObjectCache.getCommitSha(repository, object.getSha()) : null;
+                        if (sha == null) {
+                            annotatedTags.add(tag);
+                            tagObjects.add(object);
+                        }
+                    }
+                    tag.setCommit(new TypedResource().setSha(sha).setType(TypedResource.TYPE_COMMIT));
+                    tags.add(tag);
+                }
+            }
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+
+        List<String> commitShas = peel(tagObjects);
+        for (int i = 0; i < annotatedTags.size(); i++) {
+            annotatedTags.get(i).getCommit().setSha(commitShas.get(i));
+            if (tagObjectCache != null) {
+                tagObjectCache.put(repository, tagObjects.get(i).getSha(), commitShas.get(i));
+            }
+        }
+        return tags;
+    }
+
+    public String getBranchSha(String branchName) throws IOException {
+        GitHubRequest request = new GitHubRequest();
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_GIT + SEGMENT_REF + "/heads/" + branchName);
+        request.setType(Reference.class);
+        try {
+            return ((Reference) client.get(request).getBody()).getObject().getSha();
+        } catch (RequestException e) {
+            if (e.getStatus() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    public ChangeLogRelease getRelease(String baseSha, String headSha) throws IOException {
+        GitHubRequest request = new GitHubRequest();
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_COMPARE + '/' + baseSha + "..." + headSha);
+        request.setType(CompareSummary.class);
+        CompareSummary compare = (CompareSummary) client.get(request).getBody();
+
+        if (compare.commits.size() >= compare.totalCommits) {
+            //the compare has all the commits, oldest first and ending with the head
+            ChangeLogRelease release = new ChangeLogRelease();
+            for (CommitSummary commit : compare.commits) {
+                classify(commit, release.getEntries());
+            }
+            CommitSummary head = compare.commits.isEmpty() ? getCommit(headSha) : compare.commits.get(compare.commits.size() - 1);
+            release.setDate(head.commit.getCommitter().getDate());
+            return release;
+        }
+
+        String stopSha = compare.mergeBaseCommit != null ? compare.mergeBaseCommit.sha : baseSha;
+        return walkHistory(headSha, stopSha, compare.totalCommits);
+    }
+
+    /**
+     * Returns the commits the annotated tags point to, peeling a pool's worth of tags at a time
+     *
+     * @param tagObjects The tag objects the tag refs point to
+     * @return The commit shas, in the same order as the tag objects
+     * @throws IOException if any tag fails, naming the tag object
+     */
+    private List<String> peel(List<TypedResource> tagObjects) throws IOException {
+        List<String> commitShas = new ArrayList<String>(tagObjects.size());
+        if (tagObjects.isEmpty()) {
+            return commitShas;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(concurrency, tagObjects.size()));
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>(tagObjects.size());
+            for (final TypedResource tagObject : tagObjects) {
+                futures.add(executorService.submit(new Callable<String>() {
+                    public String call() throws IOException {
+                        return peel(tagObject);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    commitShas.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw (IOException) new IOException("Unable to read tag object " + tagObjects.get(i).getSha() + ": " +
+                            cause.getMessage()).initCause(cause);
+                } catch (InterruptedException e) {
+                    throw (IOException) new InterruptedIOException("Reading the tags interrupted").initCause(e);
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return commitShas;
+    }
+
+    /**
+     * Returns the commit an annotated tag points to, following tags of tags
+     *
+     * @param object The object the tag ref points to
+     * @return The commit sha
+     * @throws IOException
+     */
+    private String peel(TypedResource object) throws IOException {
+        while (TypedResource.TYPE_TAG.equals(object.getType())) {
+            GitHubRequest request = new GitHubRequest();
+            request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_GIT + SEGMENT_TAGS + '/' + object.getSha());
+            request.setType(Tag.class);
+            object = ((Tag) client.get(request).getBody()).getObject();
+        }
+        return object.getSha();
+    }
+
+    /**
+     * Walks the history back from the head, classifying each page of commits as it arrives, until all the commits of
+     * the release are found. The history is listed by date, so the commits of the release dated before the base are
+     * listed after it; they are told apart from the history of the base by following the parents of each.
+     *
+     * @param headSha The head commit
+     * @param baseSha The merge base, not part of the release
+     * @param totalCommits The number of commits of the release
+     * @return The release
+     * @throws IOException if the history ends before all the commits of the release are found
+     */
+    private ChangeLogRelease walkHistory(String headSha, String baseSha, int totalCommits) throws IOException {
+        PagedRequest<CommitSummary> request = new PagedRequest<CommitSummary>(1, PAGE_SIZE);
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_COMMITS);
+        request.setParams(Collections.singletonMap("sha", headSha));
+        request.setType(new TypeToken<List<CommitSummary>>() { }.getType());
+
+        ChangeLogRelease release = new ChangeLogRelease();
+        //the commits reachable from the head, and from the base, that are not listed yet
+        Set<String> releaseShas = new HashSet<String>(Collections.singleton(headSha));
+        Set<String> baseShas = new HashSet<String>(Collections.singleton(baseSha));
+        int found = 0;
+        PageIterator<CommitSummary> pages = new PageIterator<CommitSummary>(request, client);
+        try {
+            pages:
+            while (pages.hasNext()) {
+                for (CommitSummary commit : pages.next()) {
+                    boolean inRelease = releaseShas.remove(commit.sha);
+                    if (baseShas.remove(commit.sha)) {
+                        baseShas.addAll(commit.getParentShas());
+                    } else if (inRelease) {
+                        if (release.getDate() == null) {
+                            //the history starts with the head
+                            release.setDate(commit.commit.getCommitter().getDate());
+                        }
+                        classify(commit, release.getEntries());
+                        releaseShas.addAll(commit.getParentShas());
+                        found++;
+                    }
+                    if (found >= totalCommits || releaseShas.isEmpty()) {
+                        break pages;
+                    }
+                }
+            }
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+        if (found < totalCommits) {
+            throw new IOException("Unable to walk the history from " + headSha + " to " + baseSha + ": only " + found +
+                    " of the " + totalCommits + " commits found");
+        }
+        //the history is newest first, the releases list the pull requests oldest first
+        Collections.reverse(release.getEntries());
+        return release;
+    }
+
+    /**
+     * Returns a commit
+     *
+     * @param sha The commit sha
+     * @return The commit
+     * @throws IOException
+     */
+    private CommitSummary getCommit(String sha) throws IOException {
+        GitHubRequest request = new GitHubRequest();
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_COMMITS + '/' + sha);
+        request.setType(CommitSummary.class);
+        return (CommitSummary) client.get(request).getBody();
+    }
+
+    private void classify(CommitSummary commit, List<ChangeLogEntry> entries) {
+        //match PR commits only, by sha when indexed otherwise by merge message
+        ChangeLogEntry entry = classifier.classify(commit.sha, commit.commit.getMessage());
+        if (entry != null) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * A compare between two commits, only the fields a release needs
+     */
+    static class CompareSummary {
+
+        private int totalCommits;
+
+        private CommitSummary mergeBaseCommit;
+
+        private List<CommitSummary> commits = new ArrayList<CommitSummary>();
+    }
+
+    /**
+     * A commit, only the fields a release needs
+     */
+    static class CommitSummary {
+
+        private String sha;
+
+        private Commit commit;
+
+        private List<CommitSummary> parents;
+
+        private List<String> getParentShas() {
+            List<String> parentShas = new ArrayList<String>();
+            if (parents != null) {
+                for (CommitSummary parent : parents) {
+                    parentShas.add(parent.sha);
+                }
+            }
+            return parentShas;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.agubler.changelog;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The connections to a github host, shared by all builds that use the host. The requests in flight are bounded by the
+ * size of the pool, responses are requested gzip compressed and decompressed as they are read, and every response body
+ * is read to the end once it is closed so that its connection goes straight back to the keep-alive cache of the jvm
+ * for the next request, rather than a new connection (and TLS handshake) being opened.
+ * <p>
+ * The jvm keeps at most http.maxConnections (5 by default) idle connections to a host, so the pool defaults to that
+ * many requests in flight and no connection is closed after its request. A controller generating many change logs at
+ * once should raise http.maxConnections along with the pool size.
+ */
+public class GitHubTransport {
+
+    /**
+     * Default number of requests in flight to a host, the idle connections the jvm keeps to a host
+     */
+    public static final int DEFAULT_POOL_SIZE = Integer.getInteger("http.maxConnections", 5);
+
+    /**
+     * Default time to wait for a connection to the host in seconds
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10;
+
+    /**
+     * Default time to wait for a response to be read in seconds, a large compare is generated by github as it is sent
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 60;
+
+    /**
+     * The most bytes left unread that are read when a response is closed, the connection of a response with more left
+     * is closed instead
+     */
+    private static final long MAX_DRAIN = 64 * 1024;
+
+    /**
+     * The transports by github host, shared by all builds
+     */
+    private static final ConcurrentMap<String, GitHubTransport> TRANSPORTS = new ConcurrentHashMap<String, GitHubTransport>();
+
+    private int poolSize = DEFAULT_POOL_SIZE;
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    private boolean compressed = true;
+
+    /**
+     * The permits of the requests in flight, replaced when the pool is resized
+     */
+    private Semaphore connections = new Semaphore(DEFAULT_POOL_SIZE, true);
+
+    /**
+     * Returns the transport shared by all builds for the github host
+     *
+     * @param host The github host
+     * @return The transport
+     */
+    public static GitHubTransport forHost(String host) {
+        GitHubTransport transport = TRANSPORTS.get(host);
+        if (transport == null) {
+            TRANSPORTS.putIfAbsent(host, new GitHubTransport());
+            transport = TRANSPORTS.get(host);
+        }
+        return transport;
+    }
+
+    /**
+     * Sets the number of requests in flight to the host, the requests already in flight finish on the previous pool
+     *
+     * @param poolSize The number of requests, at least one
+     */
+    public synchronized void setPoolSize(int poolSize) {
+        poolSize = Math.max(1, poolSize);
+        if (poolSize != this.poolSize) {
+            this.poolSize = poolSize;
+            this.connections = new Semaphore(poolSize, true);
+        }
+    }
+
+    /**
+     * Sets the connect and read timeouts
+     *
+     * @param connectTimeout The time to wait for a connection in seconds, 0 to wait indefinitely
+     * @param readTimeout The time to wait for data from the connection in seconds, 0 to wait indefinitely
+     */
+    public synchronized void setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.readTimeout = Math.max(0, readTimeout);
+    }
+
+    /**
+     * Sets whether responses are requested gzip compressed
+     *
+     * @param compressed true to request compressed responses
+     */
+    public synchronized void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Waits for a connection of the pool
+     *
+     * @return The permit of the connection, released once the request is complete
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public Semaphore acquire() throws InterruptedIOException {
+        Semaphore permit;
+        synchronized (this) {
+            permit = connections;
+        }
+        try {
+            permit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to github");
+        }
+        return permit;
+    }
+
+    /**
+     * Applies the timeouts and requests a compressed response
+     *
+     * @param connection The connection of a request that has not been sent
+     */
+    public synchronized void configure(HttpURLConnection connection) {
+        connection.setConnectTimeout(connectTimeout * 1000);
+        connection.setReadTimeout(readTimeout * 1000);
+        if (compressed) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+    }
+
+    /**
+     * Returns the response body, decompressed if github compressed it, that reads what is left of the body when it is
+     * closed
+     *
+     * @param connection The connection of the response
+     * @param stream The response body as sent
+     * @return The response body
+     * @throws IOException
+     */
+    public InputStream open(HttpURLConnection connection, InputStream stream) throws IOException {
+        InputStream body = new DrainingInputStream(stream);
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding()) && connection.getContentLength() != 0) {
+            return new GZIPInputStream(body, 8192);
+        }
+        return body;
+    }
+
+    /**
+     * Reads the rest of the stream when it is closed, so the connection can be reused
+     */
+    private static class DrainingInputStream extends FilterInputStream {
+
+        private DrainingInputStream(InputStream stream) {
+            super(stream);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                byte[] buffer = new byte[4096];
+                long drained = 0;
+                int read;
+                while (drained <= MAX_DRAIN && (read = in.read(buffer)) != -1) {
+                    drained += read;
+                }
+            } catch (IOException ignored) {
+                //the connection is not reused
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
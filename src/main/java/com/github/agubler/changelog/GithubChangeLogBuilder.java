@@ -1,20 +1,31 @@
 package com.github.agubler.changelog;
 
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.Extension;
 import hudson.util.FormValidation;
+import hudson.util.Secret;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.AbstractProject;
+import hudson.model.Result;
+import hudson.model.Run;
 import hudson.tasks.Builder;
 import hudson.tasks.BuildStepDescriptor;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.servlet.ServletException;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static org.springframework.util.StringUtils.hasText;
 
@@ -28,26 +39,76 @@ public class GithubChangeLogBuilder extends Builder {
      */
     private static final String DEFAULT_GITHUB_HOST = "github.com";
 
+    /**
+     * The directory under the jenkins home for the plugin caches
+     */
+    private static final String CACHE_DIRECTORY = "github-changelog";
+
+    /**
+     * Default number of releases fetched concurrently
+     */
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Default number of repositories generated concurrently
+     */
+    private static final int DEFAULT_REPOSITORY_CONCURRENCY = 4;
+
+    /**
+     * The most previous builds searched for change log models to start from
+     */
+    private static final int MAX_WARM_START_BUILDS = 10;
+
     /**
      * The owner of the repository for the change log
      */
     private final String githubOwner;
 
     /**
-     * The repository to generate a change log for
+     * The repository to generate a change log for, or a comma separated list of repositories
      */
     private final String githubRepository;
 
+    /**
+     * The pattern matching the names of the repositories of the owner to generate change logs for, optional
+     */
+    private final String githubRepositoryPattern;
+
     /**
      * The branch on the repository to push the change log to
      */
     private final String githubChangeLogBranch;
 
+    /**
+     * The branch the upcoming release is generated up to, blank for the default
+     */
+    private final String headBranch;
+
+    /**
+     * The prefix of the release tag names, blank for all the tags
+     */
+    private final String tagPrefix;
+
+    /**
+     * The pattern the release tag names match, blank for all the tags with the prefix
+     */
+    private final String tagPattern;
+
     /**
      * The change log filename, this needs to include the path and is relative to the root of the repository
      */
     private final String changeLogFilename;
 
+    /**
+     * The number of newest releases kept in the change log, blank to keep every release
+     */
+    private final String releaseLimit;
+
+    /**
+     * The age in days of the oldest release kept in the change log, blank to keep every release
+     */
+    private final String releaseMaxAge;
+
     /**
      * Indicates if the change log should parse jira references
      */
@@ -58,24 +119,84 @@ public class GithubChangeLogBuilder extends Builder {
      */
     private final String jiraUrl;
 
+    /**
+     * Indicates if the summary, type and status of the referenced jira issues should be fetched from jira
+     */
+    private final boolean enrichJiraIssues;
+
+    /**
+     * Indicates if only the releases newer than the last published release should be generated
+     */
+    private final boolean incrementalChangeLog;
+
+    /**
+     * Indicates if the releases should be read from the clone of the repository in the workspace
+     */
+    private final boolean useWorkspaceRepository;
+
+    /**
+     * The path of the clone relative to the workspace, blank if it is the workspace itself
+     */
+    private final String workspaceRepositoryPath;
+
+    /**
+     * Indicates if the change log should be generated by the queue on the controller rather than on the executor
+     */
+    private final boolean generateInBackground;
+
+    /**
+     * The seconds the build waits for the background generation, blank to not wait
+     */
+    private final String backgroundTimeout;
+
     /**
      * The constructor for the builder
      *
      * @param githubOwner The owner of the repo
-     * @param githubRepository the name of the repo
+     * @param githubRepository the name of the repo, or a comma separated list of repos
+     * @param githubRepositoryPattern the pattern matching the names of further repos of the owner
      * @param githubChangeLogBranch the branch for the change log
+     * @param headBranch the branch for the upcoming release
+     * @param tagPrefix the prefix of the release tags
+     * @param tagPattern the pattern of the release tags
      * @param changeLogFilename the change log filename
+     * @param releaseLimit the number of releases kept in the change log
+     * @param releaseMaxAge the age in days of the releases kept in the change log
      * @param parseJiraReferences indicates if the jira references should be parsed
+     * @param jiraUrl the jira url
+     * @param enrichJiraIssues indicates if the details of the jira issues should be fetched
+     * @param incrementalChangeLog indicates if only new releases should be generated
+     * @param useWorkspaceRepository indicates if the releases should be read from the workspace clone
+     * @param workspaceRepositoryPath the path of the clone relative to the workspace
+     * @param generateInBackground indicates if the change log should be generated in the background
+     * @param backgroundTimeout the seconds to wait for the background generation
      */
     @DataBoundConstructor
-    public GithubChangeLogBuilder(String githubOwner, String githubRepository, String githubChangeLogBranch,
-                                  String changeLogFilename, boolean parseJiraReferences, String jiraUrl) {
+    public GithubChangeLogBuilder(String githubOwner, String githubRepository, String githubRepositoryPattern, String githubChangeLogBranch,
+                                  String headBranch, String tagPrefix, String tagPattern,
+                                  String changeLogFilename, String releaseLimit, String releaseMaxAge,
+                                  boolean parseJiraReferences, String jiraUrl, boolean enrichJiraIssues,
+                                  boolean incrementalChangeLog, boolean useWorkspaceRepository,
+                                  String workspaceRepositoryPath, boolean generateInBackground,
+                                  String backgroundTimeout) {
         this.githubOwner = githubOwner;
         this.githubRepository = githubRepository;
+        this.githubRepositoryPattern = githubRepositoryPattern;
         this.githubChangeLogBranch = githubChangeLogBranch;
+        this.headBranch = headBranch;
+        this.tagPrefix = tagPrefix;
+        this.tagPattern = tagPattern;
         this.changeLogFilename = changeLogFilename;
+        this.releaseLimit = releaseLimit;
+        this.releaseMaxAge = releaseMaxAge;
         this.parseJiraReferences = parseJiraReferences;
         this.jiraUrl = jiraUrl;
+        this.enrichJiraIssues = enrichJiraIssues;
+        this.incrementalChangeLog = incrementalChangeLog;
+        this.useWorkspaceRepository = useWorkspaceRepository;
+        this.workspaceRepositoryPath = workspaceRepositoryPath;
+        this.generateInBackground = generateInBackground;
+        this.backgroundTimeout = backgroundTimeout;
     }
 
     public String getGithubOwner() {
@@ -86,14 +207,38 @@ public class GithubChangeLogBuilder extends Builder {
         return githubRepository;
     }
 
+    public String getGithubRepositoryPattern() {
+        return githubRepositoryPattern;
+    }
+
     public String getGithubChangeLogBranch() {
         return githubChangeLogBranch;
     }
 
+    public String getHeadBranch() {
+        return headBranch;
+    }
+
+    public String getTagPrefix() {
+        return tagPrefix;
+    }
+
+    public String getTagPattern() {
+        return tagPattern;
+    }
+
     public String getChangeLogFilename() {
         return changeLogFilename;
     }
 
+    public String getReleaseLimit() {
+        return releaseLimit;
+    }
+
+    public String getReleaseMaxAge() {
+        return releaseMaxAge;
+    }
+
     public boolean getParseJiraReferences() {
         return parseJiraReferences;
     }
@@ -102,19 +247,105 @@ public class GithubChangeLogBuilder extends Builder {
         return jiraUrl;
     }
 
+    public boolean getEnrichJiraIssues() {
+        return enrichJiraIssues;
+    }
+
+    public boolean getIncrementalChangeLog() {
+        return incrementalChangeLog;
+    }
+
+    public boolean getUseWorkspaceRepository() {
+        return useWorkspaceRepository;
+    }
+
+    public String getWorkspaceRepositoryPath() {
+        return workspaceRepositoryPath;
+    }
+
+    public boolean getGenerateInBackground() {
+        return generateInBackground;
+    }
+
+    public String getBackgroundTimeout() {
+        return backgroundTimeout;
+    }
+
     @Override
-    public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener) throws IOException {
+    public boolean perform(AbstractBuild build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
         if (this.validate()) {
-            String gitHubHost = getDescriptor().getGithubHost();
+            String gitHubHost = getGitHubHost();
+
+            Pattern releaseTagPattern = null;
+            if (hasText(this.tagPattern)) {
+                try {
+                    releaseTagPattern = Pattern.compile(this.tagPattern);
+                } catch (PatternSyntaxException e) {
+                    listener.getLogger().println("[ERROR] Unable to generate github change log; invalid tag pattern: " + e.getDescription());
+                    return false;
+                }
+            }
 
-            if (!hasText(gitHubHost)) {
-                gitHubHost = DEFAULT_GITHUB_HOST;
+            ReleaseWindow releaseWindow;
+            int backgroundTimeoutSeconds;
+            try {
+                releaseWindow = new ReleaseWindow(parseCount(this.releaseLimit), parseCount(this.releaseMaxAge));
+                backgroundTimeoutSeconds = parseCount(this.backgroundTimeout);
+            } catch (NumberFormatException e) {
+                listener.getLogger().println("[ERROR] Unable to generate github change log; invalid release limit, maximum age or background timeout");
+                return false;
+            }
+
+            Pattern repositoryPattern = null;
+            if (hasText(this.githubRepositoryPattern)) {
+                try {
+                    repositoryPattern = Pattern.compile(this.githubRepositoryPattern);
+                } catch (PatternSyntaxException e) {
+                    listener.getLogger().println("[ERROR] Unable to generate github change logs; invalid repository pattern: " + e.getDescription());
+                    return false;
+                }
+            }
+
+            List<String> repositoryNames = getRepositoryNames();
+            FilePath workspaceRepository = null;
+            if (this.useWorkspaceRepository) {
+                if (repositoryNames.size() != 1 || repositoryPattern != null) {
+                    listener.getLogger().println("[WARNING] The workspace repository is ignored when generating the change logs of several repositories");
+                } else {
+                    FilePath workspace = build.getWorkspace();
+                    if (workspace == null) {
+                        listener.getLogger().println("[ERROR] Unable to generate github change log; the build has no workspace");
+                        return false;
+                    }
+                    workspaceRepository = hasText(this.workspaceRepositoryPath) ? workspace.child(this.workspaceRepositoryPath) : workspace;
+                }
+            }
+
+            if (this.generateInBackground) {
+                if (workspaceRepository == null) {
+                    return performInBackground(build, listener, gitHubHost, releaseTagPattern, releaseWindow,
+                            repositoryNames, repositoryPattern, backgroundTimeoutSeconds);
+                }
+                //the next build may change the workspace under a generation still reading it
+                listener.getLogger().println("[WARNING] The workspace repository is read during the build, generating the change log in the foreground");
             }
 
             listener.getLogger().println("[INFO] Starting change log generation");
-            ChangeLogService changeLogService = new ChangeLogService(listener);
-            changeLogService.createChangeLog(gitHubHost, getDescriptor().getGithubOAuthToken(), this.githubOwner, this.githubRepository,
-                    this.githubChangeLogBranch, this.changeLogFilename, this.parseJiraReferences, this.jiraUrl);
+            ChangeLogMetrics metrics = new ChangeLogMetrics();
+            try {
+                generate(build, listener, metrics, gitHubHost, releaseTagPattern, releaseWindow, repositoryNames,
+                        repositoryPattern, workspaceRepository);
+            } finally {
+                metrics.endPhase();
+                build.addAction(new ChangeLogMetricsAction(metrics));
+                ChangeLogMetricsRootAction metricsRootAction = ChangeLogMetricsRootAction.get();
+                if (metricsRootAction != null) {
+                    metricsRootAction.record(metrics);
+                }
+            }
+            if (!metrics.isSucceeded()) {
+                build.setResult(Result.UNSTABLE);
+            }
             return true;
         } else {
             listener.getLogger().println("[ERROR] Unable to generate github change log; missing configuration");
@@ -122,12 +353,273 @@ public class GithubChangeLogBuilder extends Builder {
         }
     }
 
+    /**
+     * Queues the change log generation on the controller, the build waits for it up to the timeout and is linked to
+     * it either way
+     * @return boolean that indicates whether the build should continue
+     */
+    private boolean performInBackground(final AbstractBuild build, BuildListener listener, final String gitHubHost,
+                                        final Pattern releaseTagPattern, final ReleaseWindow releaseWindow,
+                                        final List<String> repositoryNames, final Pattern repositoryPattern,
+                                        int timeoutSeconds) throws InterruptedException {
+        ChangeLogGeneration generation = ChangeLogQueue.get().submit(getGenerationKey(gitHubHost, repositoryNames),
+                new ChangeLogQueue.Job() {
+                    public void run(BuildListener generationListener, ChangeLogMetrics metrics) throws IOException {
+                        generate(build, generationListener, metrics, gitHubHost, releaseTagPattern, releaseWindow,
+                                repositoryNames, repositoryPattern, null);
+                    }
+                }, build);
+        build.addAction(new ChangeLogGenerationAction(generation));
+
+        int coalesced = generation.getRequests() - 1;
+        listener.getLogger().println("[INFO] Change log generation queued on the controller" +
+                (coalesced > 0 ? ", coalesced with " + coalesced + " earlier request(s)" : ""));
+
+        if (timeoutSeconds <= 0 || !generation.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            listener.getLogger().println("[INFO] Change log generation continues in the background, see " +
+                    build.getUrl() + "changelog-generation/");
+            return true;
+        }
+
+        listener.getLogger().print(generation.getLog());
+        if (ChangeLogGeneration.FAILED.equals(generation.getStatus())) {
+            return false;
+        }
+        if (ChangeLogGeneration.UNSTABLE.equals(generation.getStatus())) {
+            build.setResult(Result.UNSTABLE);
+        }
+        return true;
+    }
+
+    /**
+     * Generates the change log, or the change logs of several repositories, logging to the listener. A repository that
+     * fails among several does not stop the others and leaves the metrics unsucceeded. The model of each change log
+     * is archived with the build, and the models of the previous build are the warm start of the generation.
+     *
+     * @param build the build the change log models are archived with
+     * @param listener the listener the generation logs to
+     * @param metrics the metrics the generation is recorded in
+     * @param gitHubHost the github host
+     * @param releaseTagPattern the pattern of the release tags, optional
+     * @param releaseWindow the releases kept in the change log
+     * @param repositoryNames the repositories listed in the configuration
+     * @param repositoryPattern the pattern matching further repositories of the owner, optional
+     * @param workspaceRepository the clone to read the releases from, null to read them from github
+     * @throws IOException if the change log of a single repository fails
+     */
+    private void generate(Run<?, ?> build, BuildListener listener, ChangeLogMetrics metrics, String gitHubHost,
+                          Pattern releaseTagPattern, ReleaseWindow releaseWindow, List<String> repositoryNames,
+                          Pattern repositoryPattern, FilePath workspaceRepository) throws IOException {
+        ChangeLogService changeLogService = createService(listener, gitHubHost, releaseTagPattern, releaseWindow);
+        changeLogService.setMetrics(metrics);
+        changeLogService.setModelDirectory(new File(build.getArtifactsDir(), ChangeLogModel.ARTIFACT_DIRECTORY));
+        changeLogService.setWarmStartDirectory(getWarmStartDirectory(build));
+
+        if (repositoryNames.size() != 1 || repositoryPattern != null) {
+            changeLogService.setRepositoryConcurrency(getDescriptor().getRepositoryConcurrency());
+            List<ChangeLogService.RepositoryResult> results = changeLogService.createChangeLogs(gitHubHost,
+                    getDescriptor().getGithubOAuthToken(), this.githubOwner, repositoryNames, repositoryPattern,
+                    this.githubChangeLogBranch, this.changeLogFilename, this.parseJiraReferences, this.jiraUrl,
+                    this.incrementalChangeLog);
+            boolean failed = false;
+            for (ChangeLogService.RepositoryResult result : results) {
+                failed |= result.isFailed();
+            }
+            metrics.setSucceeded(!failed);
+        } else {
+            changeLogService.setWorkspaceRepository(workspaceRepository);
+            changeLogService.createChangeLog(gitHubHost, getDescriptor().getGithubOAuthToken(), this.githubOwner,
+                    repositoryNames.get(0), this.githubChangeLogBranch, this.changeLogFilename, this.parseJiraReferences,
+                    this.jiraUrl, this.incrementalChangeLog);
+            metrics.setSucceeded(true);
+        }
+    }
+
+    /**
+     * Returns the directory of the change log models archived by the newest previous build that has them, a failed
+     * build or one that was generating in the background when the next started may have none
+     *
+     * @param build the build
+     * @return the directory, null if no recent build has change log models
+     */
+    private static File getWarmStartDirectory(Run<?, ?> build) {
+        Run<?, ?> previous = build.getPreviousBuild();
+        for (int i = 0; previous != null && i < MAX_WARM_START_BUILDS; i++) {
+            File directory = new File(previous.getArtifactsDir(), ChangeLogModel.ARTIFACT_DIRECTORY);
+            if (directory.isDirectory()) {
+                return directory;
+            }
+            previous = previous.getPreviousBuild();
+        }
+        return null;
+    }
+
+    /**
+     * Generates the release a webhook event adds to the change log ahead of the next build, the build then finds it in
+     * the compare cache
+     *
+     * @param listener the listener the generation logs to
+     * @param event the webhook event, one the builder is triggered by
+     * @return true if a release was generated
+     * @throws IOException
+     */
+    public boolean precomputeRelease(BuildListener listener, ChangeLogWebhookEvent event) throws IOException {
+        if (!this.validate()) {
+            return false;
+        }
+        Pattern releaseTagPattern = null;
+        if (hasText(this.tagPattern)) {
+            try {
+                releaseTagPattern = Pattern.compile(this.tagPattern);
+            } catch (PatternSyntaxException e) {
+                listener.getLogger().println("[ERROR] Unable to generate github change log release; invalid tag pattern: " + e.getDescription());
+                return false;
+            }
+        }
+        String gitHubHost = getGitHubHost();
+        ChangeLogService changeLogService = createService(listener, gitHubHost, releaseTagPattern, null);
+        return changeLogService.precomputeRelease(gitHubHost, getDescriptor().getGithubOAuthToken(), event.getOwner(),
+                event.getRepositoryName(), event.getTagName(), event.getHeadSha(), this.parseJiraReferences, this.jiraUrl);
+    }
+
+    /**
+     * Indicates if the webhook event adds a release to a change log the builder generates, a tag of one of its
+     * repositories or a push to its head branch
+     *
+     * @param event the webhook event
+     * @return true if the builder is triggered by the event
+     */
+    public boolean isTriggeredBy(ChangeLogWebhookEvent event) {
+        if (this.githubOwner == null || !this.githubOwner.trim().equalsIgnoreCase(event.getOwner())) {
+            return false;
+        }
+        if (!event.isTag()) {
+            String headBranchName = hasText(this.headBranch) ? this.headBranch.trim() : ChangeLogService.DEFAULT_HEAD_BRANCH;
+            if (!headBranchName.equals(event.getBranchName())) {
+                return false;
+            }
+        }
+        if (getRepositoryNames().contains(event.getRepositoryName())) {
+            return true;
+        }
+        try {
+            return hasText(this.githubRepositoryPattern) &&
+                    Pattern.compile(this.githubRepositoryPattern).matcher(event.getRepositoryName()).matches();
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the service generating the change log with the caches and settings of the controller
+     *
+     * @param listener the listener the service logs to
+     * @param gitHubHost the github host
+     * @param releaseTagPattern the pattern of the release tags, optional
+     * @param releaseWindow the releases kept in the change log, optional
+     * @return the service
+     */
+    private ChangeLogService createService(BuildListener listener, String gitHubHost, Pattern releaseTagPattern,
+                                           ReleaseWindow releaseWindow) {
+        ChangeLogService changeLogService = new ChangeLogService(listener);
+        changeLogService.setHeadBranch(hasText(this.headBranch) ? this.headBranch.trim() : ChangeLogService.DEFAULT_HEAD_BRANCH);
+        changeLogService.setReleaseTags(this.tagPrefix, releaseTagPattern);
+        changeLogService.setReleaseWindow(releaseWindow);
+        boolean indexPullRequests = getDescriptor().isIndexPullRequests();
+        changeLogService.setCompareCache(new CompareCache(getDescriptor().getCacheDirectory(), CompareCache.DEFAULT_MAX_SIZE,
+                indexPullRequests));
+        changeLogService.setTagObjectCache(new TagObjectCache(getDescriptor().getCacheDirectory(), TagObjectCache.DEFAULT_MAX_SIZE));
+        changeLogService.setConditionalRequestCache(new ConditionalRequestCache(getDescriptor().getCacheDirectory(),
+                ConditionalRequestCache.DEFAULT_MAX_SIZE));
+        if (indexPullRequests) {
+            changeLogService.setPullRequestIndexDirectory(getDescriptor().getCacheDirectory());
+        }
+        if (this.enrichJiraIssues) {
+            changeLogService.setJiraIssueCache(new JiraIssueCache(getDescriptor().getCacheDirectory(),
+                    JiraIssueCache.DEFAULT_MAX_SIZE, getDescriptor().getJiraCacheTtl()));
+        }
+        changeLogService.setConcurrency(getDescriptor().getConcurrency());
+        SharedMetadataCache metadataCache = getDescriptor().getMetadataCache();
+        if (metadataCache != null) {
+            metadataCache.setMaxSizeMb(getDescriptor().getMetadataCacheSize());
+            changeLogService.setMetadataCache(metadataCache);
+        }
+        RateLimitScheduler rateLimitScheduler = RateLimitScheduler.forHost(gitHubHost);
+        rateLimitScheduler.setReserve(getDescriptor().getRateLimitReserve());
+        changeLogService.setRateLimitScheduler(rateLimitScheduler);
+        GitHubTransport transport = GitHubTransport.forHost(gitHubHost);
+        transport.setPoolSize(getDescriptor().getConnectionPoolSize());
+        transport.setTimeouts(getDescriptor().getConnectTimeout(), getDescriptor().getReadTimeout());
+        transport.setCompressed(getDescriptor().isCompressResponses());
+        changeLogService.setTransport(transport);
+        return changeLogService;
+    }
+
+    /**
+     * The configured github host
+     * @return the host, github.com if not configured
+     */
+    private String getGitHubHost() {
+        String gitHubHost = getDescriptor().getGithubHost();
+        return hasText(gitHubHost) ? gitHubHost : DEFAULT_GITHUB_HOST;
+    }
+
+    /**
+     * The key of the change log(s) for the generation queue, the builds of the same change log are coalesced
+     * @return the key
+     */
+    private String getGenerationKey(String gitHubHost, List<String> repositoryNames) {
+        StringBuilder key = new StringBuilder(gitHubHost).append('/').append(this.githubOwner).append('/');
+        for (int i = 0; i < repositoryNames.size(); i++) {
+            key.append(i > 0 ? "," : "").append(repositoryNames.get(i));
+        }
+        if (hasText(this.githubRepositoryPattern)) {
+            key.append('~').append(this.githubRepositoryPattern);
+        }
+        return key.append('@').append(this.githubChangeLogBranch).append(':').append(this.changeLogFilename).toString();
+    }
+
+    /**
+     * The repositories listed in the configuration
+     * @return the repository names
+     */
+    private List<String> getRepositoryNames() {
+        List<String> repositoryNames = new ArrayList<String>();
+        if (this.githubRepository != null) {
+            for (String repositoryName : this.githubRepository.split("[,\\s]+")) {
+                if (repositoryName.length() > 0) {
+                    repositoryNames.add(repositoryName);
+                }
+            }
+        }
+        return repositoryNames;
+    }
+
+    /**
+     * Parses an optional count, such as a bound of the release window
+     *
+     * @param value The configured value
+     * @return The count, 0 if the value is blank
+     * @throws NumberFormatException if the value is not a number of zero or more
+     */
+    private static int parseCount(String value) {
+        if (!hasText(value)) {
+            return 0;
+        }
+        int count = Integer.parseInt(value.trim());
+        if (count < 0) {
+            throw new NumberFormatException("negative count: " + count);
+        }
+        return count;
+    }
+
     /**
      * Validate the github change log config
      * @return boolean that indicates whether the configuration is correct
      */
     private boolean validate() {
-        return hasText(getDescriptor().getGithubOAuthToken()) && hasText(this.getGithubOwner()) && hasText(this.getGithubRepository()) &&
+        return hasText(getDescriptor().getGithubOAuthToken()) && hasText(this.getGithubOwner()) &&
+               (hasText(this.getGithubRepository()) || hasText(this.getGithubRepositoryPattern())) &&
                hasText(this.getGithubChangeLogBranch()) && hasText(this.getChangeLogFilename());
     }
 
@@ -153,6 +645,62 @@ public class GithubChangeLogBuilder extends Builder {
          */
         private String githubOAuthToken;
 
+        /**
+         * The number of releases fetched concurrently from github
+         */
+        private int concurrency = DEFAULT_CONCURRENCY;
+
+        /**
+         * The number of repositories generated concurrently by a build step with several repositories
+         */
+        private int repositoryConcurrency = DEFAULT_REPOSITORY_CONCURRENCY;
+
+        /**
+         * The number of requests left untouched for other users of the oauth token
+         */
+        private int rateLimitReserve = RateLimitScheduler.DEFAULT_RESERVE;
+
+        /**
+         * The memory in megabytes for the repository metadata shared by all change log builds
+         */
+        private int metadataCacheSize = SharedMetadataCache.DEFAULT_MAX_SIZE_MB;
+
+        /**
+         * The secret github signs the webhook deliveries with, deliveries are refused while it is blank
+         */
+        private Secret webhookSecret;
+
+        /**
+         * The number of requests in flight to the github host, shared by all builds
+         */
+        private int connectionPoolSize = GitHubTransport.DEFAULT_POOL_SIZE;
+
+        /**
+         * The time in seconds to wait for a connection to the github host
+         */
+        private int connectTimeout = GitHubTransport.DEFAULT_CONNECT_TIMEOUT;
+
+        /**
+         * The time in seconds to wait for data from the github host
+         */
+        private int readTimeout = GitHubTransport.DEFAULT_READ_TIMEOUT;
+
+        /**
+         * Indicates if the responses of the github host are requested gzip compressed
+         */
+        private boolean compressResponses = true;
+
+        /**
+         * Indicates if the merged pull requests of the repositories are indexed, so that squash and rebase merges are
+         * found too
+         */
+        private boolean indexPullRequests = true;
+
+        /**
+         * The time in minutes the details of a jira issue are cached for
+         */
+        private int jiraCacheTtl = JiraIssueCache.DEFAULT_TTL;
+
         /**
          * In order to load the persisted global configuration, you have to 
          * call load() in the constructor.
@@ -169,6 +717,99 @@ public class GithubChangeLogBuilder extends Builder {
             return FormValidation.ok();
         }
 
+        public FormValidation doCheckConcurrency(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 1) {
+                    return FormValidation.error("Please set at least one concurrent request");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of concurrent requests");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckRepositoryConcurrency(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 1) {
+                    return FormValidation.error("Please set at least one concurrent repository");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of concurrent repositories");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckRateLimitReserve(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    return FormValidation.error("Please set a reserve of zero or more requests");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of requests to reserve");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckConnectionPoolSize(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 1) {
+                    return FormValidation.error("Please set at least one connection");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of connections");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckConnectTimeout(@QueryParameter String value)
+                throws IOException, ServletException {
+            return checkTimeout(value);
+        }
+
+        public FormValidation doCheckReadTimeout(@QueryParameter String value)
+                throws IOException, ServletException {
+            return checkTimeout(value);
+        }
+
+        private static FormValidation checkTimeout(String value) {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    return FormValidation.error("Please set a timeout of zero (no timeout) or more seconds");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a timeout in seconds");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckJiraCacheTtl(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    return FormValidation.error("Please set zero (no caching) or more minutes");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of minutes");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMetadataCacheSize(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (Integer.parseInt(value) < 0) {
+                    return FormValidation.error("Please set a cache size of zero or more megabytes");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a cache size in megabytes");
+            }
+            return FormValidation.ok();
+        }
+
         public FormValidation doCheckGithubOwner(@QueryParameter String value)
                 throws IOException, ServletException {
             if (value.length() == 0) {
@@ -177,10 +818,20 @@ public class GithubChangeLogBuilder extends Builder {
             return FormValidation.ok();
         }
 
-        public FormValidation doCheckGithubRepository(@QueryParameter String value)
+        public FormValidation doCheckGithubRepository(@QueryParameter String value, @QueryParameter String githubRepositoryPattern)
                 throws IOException, ServletException {
-            if (value.length() == 0) {
-                return FormValidation.error("Please set the github repository");
+            if (value.length() == 0 && !hasText(githubRepositoryPattern)) {
+                return FormValidation.error("Please set the github repository or a repository pattern");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckGithubRepositoryPattern(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                Pattern.compile(value);
+            } catch (PatternSyntaxException e) {
+                return FormValidation.error("Please set a valid regular expression: " + e.getDescription());
             }
             return FormValidation.ok();
         }
@@ -193,6 +844,52 @@ public class GithubChangeLogBuilder extends Builder {
             return FormValidation.ok();
         }
 
+        public FormValidation doCheckTagPattern(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                Pattern.compile(value);
+            } catch (PatternSyntaxException e) {
+                return FormValidation.error("Please set a valid regular expression: " + e.getDescription());
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckReleaseLimit(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (hasText(value) && Integer.parseInt(value.trim()) < 0) {
+                    return FormValidation.error("Please set zero or more releases, or leave blank to keep every release");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of releases");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckReleaseMaxAge(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (hasText(value) && Integer.parseInt(value.trim()) < 0) {
+                    return FormValidation.error("Please set zero or more days, or leave blank to keep every release");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of days");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckBackgroundTimeout(@QueryParameter String value)
+                throws IOException, ServletException {
+            try {
+                if (hasText(value) && Integer.parseInt(value.trim()) < 0) {
+                    return FormValidation.error("Please set zero or more seconds, or leave blank to not wait");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Please set a number of seconds");
+            }
+            return FormValidation.ok();
+        }
+
         public FormValidation doCheckChangeLogFilename(@QueryParameter String value)
                 throws IOException, ServletException {
             if (value.length() == 0) {
@@ -219,6 +916,21 @@ public class GithubChangeLogBuilder extends Builder {
             // set that to properties and call save().
             githubHost = formData.getString("githubHost");
             githubOAuthToken = formData.getString("githubOAuthToken");
+            concurrency = formData.optInt("concurrency", DEFAULT_CONCURRENCY);
+            repositoryConcurrency = formData.optInt("repositoryConcurrency", DEFAULT_REPOSITORY_CONCURRENCY);
+            rateLimitReserve = formData.optInt("rateLimitReserve", RateLimitScheduler.DEFAULT_RESERVE);
+            metadataCacheSize = formData.optInt("metadataCacheSize", SharedMetadataCache.DEFAULT_MAX_SIZE_MB);
+            webhookSecret = Secret.fromString(formData.optString("webhookSecret"));
+            connectionPoolSize = formData.optInt("connectionPoolSize", GitHubTransport.DEFAULT_POOL_SIZE);
+            connectTimeout = formData.optInt("connectTimeout", GitHubTransport.DEFAULT_CONNECT_TIMEOUT);
+            readTimeout = formData.optInt("readTimeout", GitHubTransport.DEFAULT_READ_TIMEOUT);
+            compressResponses = formData.optBoolean("compressResponses", true);
+            indexPullRequests = formData.optBoolean("indexPullRequests", true);
+            jiraCacheTtl = formData.optInt("jiraCacheTtl", JiraIssueCache.DEFAULT_TTL);
+            SharedMetadataCache metadataCache = getMetadataCache();
+            if (metadataCache != null) {
+                metadataCache.setMaxSizeMb(metadataCacheSize);
+            }
             // ^Can also use req.bindJSON(this, formData);
             //  (easier when there are many fields; need set* methods for this, like setUseFrench)
             save();
@@ -232,6 +944,70 @@ public class GithubChangeLogBuilder extends Builder {
         public String getGithubOAuthToken() {
             return githubOAuthToken;
         }
+
+        public Secret getWebhookSecret() {
+            return webhookSecret;
+        }
+
+        public void setWebhookSecret(Secret webhookSecret) {
+            this.webhookSecret = webhookSecret;
+        }
+
+        public int getConcurrency() {
+            return concurrency > 0 ? concurrency : DEFAULT_CONCURRENCY;
+        }
+
+        public int getRepositoryConcurrency() {
+            return repositoryConcurrency > 0 ? repositoryConcurrency : DEFAULT_REPOSITORY_CONCURRENCY;
+        }
+
+        public int getRateLimitReserve() {
+            return rateLimitReserve;
+        }
+
+        public int getMetadataCacheSize() {
+            return metadataCacheSize;
+        }
+
+        public int getConnectionPoolSize() {
+            return connectionPoolSize > 0 ? connectionPoolSize : GitHubTransport.DEFAULT_POOL_SIZE;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public boolean isCompressResponses() {
+            return compressResponses;
+        }
+
+        public boolean isIndexPullRequests() {
+            return indexPullRequests;
+        }
+
+        public int getJiraCacheTtl() {
+            return jiraCacheTtl;
+        }
+
+        /**
+         * The cache of the repository metadata shared by all change log builds
+         * @return the cache, null if it is not registered
+         */
+        public SharedMetadataCache getMetadataCache() {
+            return SharedMetadataCache.get();
+        }
+
+        /**
+         * The directory for the caches shared by all change log builds
+         * @return the cache directory under the jenkins home
+         */
+        public File getCacheDirectory() {
+            return new File(Jenkins.getInstance().getRootDir(), CACHE_DIRECTORY);
+        }
     }
 }
 
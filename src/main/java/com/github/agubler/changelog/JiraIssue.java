@@ -0,0 +1,100 @@
+package com.github.agubler.changelog;
+
+import java.io.Serializable;
+
+/**
+ * The details of a jira issue referenced in the change log, an issue jira did not return (it does not exist or is not
+ * visible) has no summary
+ */
+public class JiraIssue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The jira url the issue was fetched from
+     */
+    private String jiraUrl;
+
+    /**
+     * The issue key
+     */
+    private String key;
+
+    /**
+     * The issue summary, null if jira did not return the issue
+     */
+    private String summary;
+
+    /**
+     * The name of the issue type
+     */
+    private String type;
+
+    /**
+     * The name of the issue status
+     */
+    private String status;
+
+    /**
+     * The time the issue was fetched in milliseconds
+     */
+    private long fetched;
+
+    /**
+     * Default constructor
+     */
+    public JiraIssue() {
+    }
+
+    /**
+     * Constructor; takes the issue details
+     *
+     * @param jiraUrl the jira url
+     * @param key the issue key
+     * @param summary the issue summary, null if jira did not return the issue
+     * @param type the issue type name
+     * @param status the issue status name
+     * @param fetched the time the issue was fetched in milliseconds
+     */
+    public JiraIssue(String jiraUrl, String key, String summary, String type, String status, long fetched) {
+        this.jiraUrl = jiraUrl;
+        this.key = key;
+        this.summary = summary;
+        this.type = type;
+        this.status = status;
+        this.fetched = fetched;
+    }
+
+    /**
+     * Indicates if jira returned the issue
+     *
+     * @return true if the issue has its details
+     */
+    public boolean isFound() {
+        return summary != null;
+    }
+
+    public String getJiraUrl() {
+        return jiraUrl;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+}
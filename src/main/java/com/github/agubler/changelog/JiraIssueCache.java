@@ -0,0 +1,73 @@
+package com.github.agubler.changelog;
+
+import java.io.File;
+
+/**
+ * Persistent cache of the jira issues referenced by the change logs, shared by all builds. An issue's status changes
+ * as it is worked on so the issues expire after a time to live, and the least recently used are evicted once the
+ * cache file grows beyond its maximum size.
+ */
+public class JiraIssueCache extends PersistentCache<JiraIssue> {
+
+    /**
+     * The default maximum size of the cache file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The default time to live of a cached issue in minutes
+     */
+    public static final int DEFAULT_TTL = 60;
+
+    /**
+     * The cache file name
+     */
+    private static final String CACHE_FILE = "jira-issue-cache.jsonl";
+
+    /**
+     * The time to live of a cached issue in milliseconds
+     */
+    private final long ttl;
+
+    /**
+     * Constructor; takes the directory to keep the cache file in
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum size of the cache file in bytes
+     * @param ttlMinutes the time to live of a cached issue in minutes
+     */
+    public JiraIssueCache(File directory, long maxSize, int ttlMinutes) {
+        super(new File(directory, CACHE_FILE), JiraIssue.class, maxSize);
+        this.ttl = Math.max(0, ttlMinutes) * 60L * 1000L;
+    }
+
+    /**
+     * Returns the cached issue
+     *
+     * @param jiraUrl The jira url
+     * @param key The issue key
+     * @return The issue, null if it is not cached or has expired
+     */
+    public JiraIssue getIssue(String jiraUrl, String key) {
+        return get(jiraUrl + "/browse/" + key);
+    }
+
+    /**
+     * Caches the issue
+     *
+     * @param issue The issue, including one jira did not return
+     */
+    public void putIssue(JiraIssue issue) {
+        put(issue);
+    }
+
+    @Override
+    protected String keyOf(JiraIssue issue) {
+        return issue.getJiraUrl() != null && issue.getKey() != null ? issue.getJiraUrl() + "/browse/" + issue.getKey() : null;
+    }
+
+    @Override
+    protected boolean isExpired(JiraIssue issue) {
+        return System.currentTimeMillis() - issue.getFetched() >= ttl;
+    }
+}
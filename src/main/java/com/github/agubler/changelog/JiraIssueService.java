@@ -0,0 +1,179 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches the details of jira issues with the jira search api, many issues to a request: the keys are looked up in
+ * batches with a "key in (...)" JQL query rather than one request per issue
+ */
+public class JiraIssueService {
+
+    /**
+     * The most issues looked up by a request, jira returns up to 50 issues a page by default
+     */
+    public static final int BATCH_SIZE = 50;
+
+    /**
+     * The time to wait for a connection to jira in milliseconds
+     */
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+
+    /**
+     * The time to wait for data from jira in milliseconds
+     */
+    private static final int READ_TIMEOUT = 30 * 1000;
+
+    /**
+     * Json deserializer for the search results
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * The jira url
+     */
+    private final String jiraUrl;
+
+    /**
+     * The number of search requests made
+     */
+    private int requests;
+
+    /**
+     * Constructor; takes the jira url
+     *
+     * @param jiraUrl the jira url
+     */
+    public JiraIssueService(String jiraUrl) {
+        this.jiraUrl = jiraUrl;
+    }
+
+    /**
+     * Fetches the issues a batch at a time, an issue jira does not return is added without its details. The issues
+     * of the batches fetched before a failure are kept.
+     *
+     * @param keys The issue keys
+     * @param issues The issues fetched by key, added to as each batch is fetched
+     * @throws IOException if jira cannot be reached or refuses a search
+     */
+    public void getIssues(Collection<String> keys, Map<String, JiraIssue> issues) throws IOException {
+        List<String> batch = new ArrayList<String>(BATCH_SIZE);
+        for (String key : keys) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                search(batch, issues);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            search(batch, issues);
+        }
+    }
+
+    /**
+     * Looks up a batch of issues
+     *
+     * @param keys The issue keys, no more than the batch size
+     * @param issues The issues fetched by key
+     * @throws IOException
+     */
+    private void search(List<String> keys, Map<String, JiraIssue> issues) throws IOException {
+        StringBuilder jql = new StringBuilder("key in (");
+        for (int i = 0; i < keys.size(); i++) {
+            jql.append(i > 0 ? ",\"" : "\"").append(keys.get(i)).append('"');
+        }
+        jql.append(')');
+        //without validateQuery=false a key that does not exist fails the whole search
+        String baseUrl = jiraUrl.endsWith("/") ? jiraUrl.substring(0, jiraUrl.length() - 1) : jiraUrl;
+        URL url = new URL(baseUrl + "/rest/api/2/search?jql=" + URLEncoder.encode(jql.toString(), "UTF-8") +
+                "&fields=summary,issuetype,status&maxResults=" + keys.size() + "&validateQuery=false");
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Accept", "application/json");
+        synchronized (this) {
+            requests++;
+        }
+
+        SearchResult result;
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Jira search failed with status " + status);
+            }
+            InputStream stream = connection.getInputStream();
+            Reader reader = new InputStreamReader(stream, "UTF-8");
+            try {
+                result = GSON.fromJson(reader, SearchResult.class);
+            } catch (JsonParseException e) {
+                throw (IOException) new IOException("Unable to read the jira search result").initCause(e);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        long now = System.currentTimeMillis();
+        if (result != null && result.issues != null) {
+            for (SearchIssue issue : result.issues) {
+                if (issue.key != null && issue.fields != null) {
+                    issues.put(issue.key, new JiraIssue(jiraUrl, issue.key, issue.fields.summary != null ? issue.fields.summary : "",
+                            issue.fields.issuetype != null ? issue.fields.issuetype.name : null,
+                            issue.fields.status != null ? issue.fields.status.name : null, now));
+                }
+            }
+        }
+        for (String key : keys) {
+            if (!issues.containsKey(key)) {
+                issues.put(key, new JiraIssue(jiraUrl, key, null, null, null, now));
+            }
+        }
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    /**
+     * The jira search response, only the fields requested
+     */
+    private static class SearchResult {
+
+        private List<SearchIssue> issues;
+    }
+
+    private static class SearchIssue {
+
+        private String key;
+
+        private SearchFields fields;
+    }
+
+    private static class SearchFields {
+
+        private String summary;
+
+        private Named issuetype;
+
+        private Named status;
+    }
+
+    private static class Named {
+
+        private String name;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.agubler.changelog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the change log releases as markdown, writing straight to a {@link Writer}
+ */
+public class MarkdownRenderer {
+
+    /**
+     * Markdown new line
+     */
+    private static final String MD_NEW_LINE = "\n";
+
+    /**
+     * The Change log title
+     */
+    private static final String MD_CHANGE_LOG_TITLE = "## Change Log" + MD_NEW_LINE;
+
+    /**
+     * The markdown format for the release title
+     */
+    private static final String MD_CHANGE_LOG_RELEASE_FORMAT = "###";
+
+    /**
+     * The pull request url template
+     */
+    private final String gitHubPullRequestUrl;
+
+    /**
+     * Links the jira references in the pull request titles
+     */
+    private final CommitMessageClassifier classifier;
+
+    /**
+     * The details of the jira issues referenced by the entries, by key
+     */
+    private Map<String, JiraIssue> jiraIssues = Collections.emptyMap();
+
+    /**
+     * Constructor; takes the link configuration
+     *
+     * @param gitHubPullRequestUrl the pull request url template
+     * @param classifier the classifier linking jira references
+     */
+    public MarkdownRenderer(String gitHubPullRequestUrl, CommitMessageClassifier classifier) {
+        this.gitHubPullRequestUrl = gitHubPullRequestUrl;
+        this.classifier = classifier;
+    }
+
+    /**
+     * Sets the details of the jira issues, each issue found is listed under the entries referencing it
+     *
+     * @param jiraIssues the issues by key
+     */
+    public void setJiraIssues(Map<String, JiraIssue> jiraIssues) {
+        this.jiraIssues = jiraIssues;
+    }
+
+    /**
+     * Returns the markdown title that starts the section of a release
+     *
+     * @param headTitle The release title
+     * @return The markdown release title, up to the release date
+     */
+    public static String releaseTitle(String headTitle) {
+        return MD_NEW_LINE + MD_CHANGE_LOG_RELEASE_FORMAT + headTitle + " (";
+    }
+
+    /**
+     * Returns the change log as content that is rendered each time it is written
+     *
+     * @param marker The marker for the last release, null if there are no releases
+     * @param releases The releases to render, newest first
+     * @param publishedReleasesText The markdown of the already published releases, appended after the releases
+     * @return The change log content
+     */
+    public StreamingContent changeLog(final ChangeLogMarker marker, final List<ChangeLogRelease> releases,
+                                      final String publishedReleasesText) {
+        return new StreamingContent() {
+            public void writeTo(Writer writer) throws IOException {
+                render(writer, marker, releases, publishedReleasesText);
+            }
+        };
+    }
+
+    /**
+     * Writes the change log
+     *
+     * @param writer The writer
+     * @param marker The marker for the last release, null if there are no releases
+     * @param releases The releases to render, newest first
+     * @param publishedReleasesText The markdown of the already published releases, appended after the releases
+     * @throws IOException
+     */
+    public void render(Writer writer, ChangeLogMarker marker, List<ChangeLogRelease> releases,
+                       String publishedReleasesText) throws IOException {
+        writer.write(MD_CHANGE_LOG_TITLE);
+        if (marker != null) {
+            writer.write(marker.toString());
+            writer.write(MD_NEW_LINE);
+        }
+        for (ChangeLogRelease release : releases) {
+            renderRelease(writer, release);
+        }
+        writer.write(publishedReleasesText);
+    }
+
+    /**
+     * Writes the markdown for a release
+     *
+     * @param writer The writer
+     * @param release The release
+     * @throws IOException
+     */
+    public void renderRelease(Writer writer, ChangeLogRelease release) throws IOException {
+        writer.write(releaseTitle(release.getTitle()));
+        writer.write(release.getDate().toString());
+        writer.write(")");
+        writer.write(MD_NEW_LINE);
+        for (ChangeLogEntry entry : release.getEntries()) {
+            writer.write("- [#");
+            writer.write(entry.getNumber());
+            writer.write("](");
+            writer.write(gitHubPullRequestUrl);
+            writer.write(entry.getNumber());
+            writer.write(") ");
+            classifier.linkJiraReferences(entry.getTitle(), writer);
+            writer.write(MD_NEW_LINE);
+            if (!jiraIssues.isEmpty()) {
+                renderJiraIssues(writer, entry);
+            }
+        }
+    }
+
+    /**
+     * Writes the details of the jira issues an entry references, a line each: the linked key, type, status and summary
+     *
+     * @param writer The writer
+     * @param entry The entry
+     * @throws IOException
+     */
+    private void renderJiraIssues(Writer writer, ChangeLogEntry entry) throws IOException {
+        for (String key : new LinkedHashSet<String>(entry.getJiraKeys())) {
+            JiraIssue issue = jiraIssues.get(key);
+            if (issue == null || !issue.isFound()) {
+                continue;
+            }
+            writer.write("  - ");
+            classifier.linkJiraKey(key, writer);
+            if (issue.getType() != null) {
+                writer.write(" ");
+                writer.write(issue.getType());
+            }
+            if (issue.getStatus() != null) {
+                writer.write(" (");
+                writer.write(issue.getStatus());
+                writer.write(")");
+            }
+            writer.write(": ");
+            //a summary is a single line
+            writer.write(issue.getSummary().replace('\n', ' ').replace('\r', ' '));
+            writer.write(MD_NEW_LINE);
+        }
+    }
+}
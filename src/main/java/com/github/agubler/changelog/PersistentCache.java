@@ -0,0 +1,235 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for the caches kept on disk between builds. The cache is stored as JSON lines, one value per line, and is
+ * shared by all builds on the controller; saving merges with anything other builds have saved since it was loaded
+ * and evicts the least recently used values once the file grows beyond its maximum size. A cache whose values go
+ * stale also drops the expired values.
+ *
+ * @param <V> the cached value, serialized with gson
+ */
+public abstract class PersistentCache<V> {
+
+    /**
+     * Guards the cache files, which are shared by all builds on the controller
+     */
+    private static final Object FILE_LOCK = new Object();
+
+    /**
+     * Json (de)serializer for the cache lines
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * The cache file
+     */
+    private final File file;
+
+    /**
+     * The type of the cached values
+     */
+    private final Class<V> type;
+
+    /**
+     * The maximum size of the cache file in bytes
+     */
+    private final long maxSize;
+
+    /**
+     * The cached values by key, in least recently used order
+     */
+    private final Map<String, V> values = new LinkedHashMap<String, V>(16, 0.75f, true);
+
+    /**
+     * The number of lookups found in the cache
+     */
+    private int hits;
+
+    /**
+     * The number of lookups not found in the cache
+     */
+    private int misses;
+
+    /**
+     * Constructor; takes the cache file
+     *
+     * @param file the cache file
+     * @param type the type of the cached values
+     * @param maxSize the maximum size of the cache file in bytes
+     */
+    protected PersistentCache(File file, Class<V> type, long maxSize) {
+        this.file = file;
+        this.type = type;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the key the value is cached under, the key must be serialized as part of the value
+     *
+     * @param value The cached value
+     * @return The key, null if the value is invalid
+     */
+    protected abstract String keyOf(V value);
+
+    /**
+     * Indicates if the value is too old to be used, it is then neither returned, loaded nor saved
+     *
+     * @param value The cached value
+     * @return true if the value has expired, never by default
+     */
+    protected boolean isExpired(V value) {
+        return false;
+    }
+
+    /**
+     * Loads the cache from disk, a missing file is an empty cache
+     *
+     * @throws IOException
+     */
+    public synchronized void load() throws IOException {
+        synchronized (FILE_LOCK) {
+            read(values);
+        }
+    }
+
+    /**
+     * Writes the cache to disk, merged with any values saved by other builds since it was loaded
+     *
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        synchronized (FILE_LOCK) {
+            Map<String, V> merged = new LinkedHashMap<String, V>();
+            read(merged);
+            //values used by this build are the most recently used
+            for (Map.Entry<String, V> value : values.entrySet()) {
+                merged.remove(value.getKey());
+                merged.put(value.getKey(), value.getValue());
+            }
+
+            List<byte[]> lines = new ArrayList<byte[]>(merged.size());
+            long size = 0;
+            for (V value : merged.values()) {
+                if (isExpired(value)) {
+                    continue;
+                }
+                byte[] line = (GSON.toJson(value) + "\n").getBytes("UTF-8");
+                lines.add(line);
+                size += line.length;
+            }
+            //evict the least recently used values until the file fits
+            Iterator<byte[]> eldest = lines.iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                size -= eldest.next().length;
+                eldest.remove();
+            }
+
+            File directory = file.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create cache directory " + directory);
+            }
+            File tmp = new File(directory, file.getName() + ".tmp");
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+            try {
+                for (byte[] line : lines) {
+                    out.write(line);
+                }
+            } finally {
+                out.close();
+            }
+            if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Unable to replace cache " + file);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached value, counting the hit or miss
+     *
+     * @param key The key
+     * @return The value, null if not cached
+     */
+    protected synchronized V get(String key) {
+        V value = values.get(key);
+        if (value != null && isExpired(value)) {
+            values.remove(key);
+            value = null;
+        }
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches the value under its key
+     *
+     * @param value The value
+     */
+    protected synchronized void put(V value) {
+        values.put(keyOf(value), value);
+    }
+
+    /**
+     * Returns the cached values, without counting them as used
+     *
+     * @return A copy of the values, least recently used first
+     */
+    protected synchronized List<V> values() {
+        return new ArrayList<V>(values.values());
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reads the cache file into the map, lines that cannot be parsed are dropped
+     *
+     * @param target The map to read into
+     * @throws IOException
+     */
+    private void read(Map<String, V> target) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    V value = GSON.fromJson(line, type);
+                    String key = value != null ? keyOf(value) : null;
+                    if (key != null && !isExpired(value)) {
+                        target.put(key, value);
+                    }
+                } catch (JsonParseException ignored) { }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.reflect.TypeToken;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
+import org.eclipse.egit.github.core.client.PageIterator;
+import org.eclipse.egit.github.core.client.PagedRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_PULLS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
+
+/**
+ * Persistent index of the merged pull requests of a repository by merge commit sha, so that the pull requests of a
+ * release are found whichever way they were merged (merge commit, squash or rebase) and come with their labels.
+ * The index is brought up to date with the closed pull requests listed most recently updated first, stopping at the
+ * first pull request not updated since the last update.
+ */
+public class PullRequestIndex extends PersistentCache<PullRequestIndex.IndexedPullRequest> {
+
+    /**
+     * The default maximum size of an index file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The directory of the index files, one file per repository
+     */
+    private static final String INDEX_DIRECTORY = "pull-request-index";
+
+    /**
+     * The number of pull requests listed per page, the most github allows
+     */
+    private static final int PAGE_SIZE = 100;
+
+    private final IRepositoryIdProvider repository;
+
+    /**
+     * The number of pull requests fetched by the last update
+     */
+    private int fetched;
+
+    /**
+     * Constructor; takes the directory to keep the index files in
+     *
+     * @param directory the cache directory
+     * @param repository the repository to index
+     * @param maxSize the maximum size of the index file in bytes
+     */
+    public PullRequestIndex(File directory, IRepositoryIdProvider repository, long maxSize) {
+        super(new File(new File(directory, INDEX_DIRECTORY), repository.generateId() + ".jsonl"), IndexedPullRequest.class, maxSize);
+        this.repository = repository;
+    }
+
+    /**
+     * Fetches the pull requests closed or updated since the last update, all of them the first time
+     *
+     * @param client The github client
+     * @throws IOException
+     */
+    public void update(GitHubClient client) throws IOException {
+        long lastUpdated = 0;
+        for (IndexedPullRequest pullRequest : values()) {
+            lastUpdated = Math.max(lastUpdated, pullRequest.updatedAt);
+        }
+
+        PagedRequest<PullRequestSummary> request = new PagedRequest<PullRequestSummary>(1, PAGE_SIZE);
+        request.setUri(SEGMENT_REPOS + '/' + repository.generateId() + SEGMENT_PULLS);
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("state", "closed");
+        params.put("sort", "updated");
+        params.put("direction", "desc");
+        request.setParams(params);
+        request.setType(new TypeToken<List<PullRequestSummary>>() { }.getType());
+
+        //the pull requests are only indexed once all the pages are fetched, a partial update would move the last
+        //updated time past the pull requests on the pages never fetched
+        List<IndexedPullRequest> updated = new ArrayList<IndexedPullRequest>();
+        PageIterator<PullRequestSummary> pages = new PageIterator<PullRequestSummary>(request, client);
+        try {
+            pages:
+            while (pages.hasNext()) {
+                for (PullRequestSummary pullRequest : pages.next()) {
+                    long updatedAt = pullRequest.updatedAt != null ? pullRequest.updatedAt.getTime() : 0;
+                    if (updatedAt < lastUpdated) {
+                        break pages;
+                    }
+                    updated.add(new IndexedPullRequest(pullRequest, updatedAt));
+                }
+            }
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+        synchronized (this) {
+            fetched = updated.size();
+            for (IndexedPullRequest pullRequest : updated) {
+                //pull requests closed without being merged are counted as fetched but not indexed
+                if (pullRequest.mergeCommitSha != null) {
+                    put(pullRequest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the change log entries of the indexed pull requests
+     *
+     * @param classifier The classifier to pick out the jira keys in the titles
+     * @return The entries by merge commit sha
+     */
+    public Map<String, ChangeLogEntry> getEntries(CommitMessageClassifier classifier) {
+        List<IndexedPullRequest> pullRequests = values();
+        Map<String, ChangeLogEntry> entries = new HashMap<String, ChangeLogEntry>(pullRequests.size() * 2);
+        for (IndexedPullRequest pullRequest : pullRequests) {
+            ChangeLogEntry entry = classifier.createEntry(pullRequest.number, pullRequest.title);
+            entry.getLabels().addAll(pullRequest.labels);
+            entries.put(pullRequest.mergeCommitSha, entry);
+        }
+        return entries;
+    }
+
+    public synchronized int getFetched() {
+        return fetched;
+    }
+
+    @Override
+    protected String keyOf(IndexedPullRequest pullRequest) {
+        return pullRequest.number != null && pullRequest.title != null && pullRequest.labels != null ? pullRequest.mergeCommitSha : null;
+    }
+
+    /**
+     * A pull request as listed by github, only the fields the index needs
+     */
+    static class PullRequestSummary {
+
+        private int number;
+
+        private String title;
+
+        private String mergeCommitSha;
+
+        private Date mergedAt;
+
+        private Date updatedAt;
+
+        private List<Label> labels;
+    }
+
+    /**
+     * An index line
+     */
+    static class IndexedPullRequest {
+
+        private String mergeCommitSha;
+
+        private String number;
+
+        private String title;
+
+        private List<String> labels;
+
+        private long updatedAt;
+
+        /**
+         * Default constructor
+         */
+        IndexedPullRequest() {
+        }
+
+        private IndexedPullRequest(PullRequestSummary pullRequest, long updatedAt) {
+            this.mergeCommitSha = pullRequest.mergedAt != null ? pullRequest.mergeCommitSha : null;
+            this.number = Integer.toString(pullRequest.number);
+            this.title = pullRequest.title;
+            this.labels = new ArrayList<String>();
+            if (pullRequest.labels != null) {
+                for (Label label : pullRequest.labels) {
+                    labels.add(label.getName());
+                }
+            }
+            this.updatedAt = updatedAt;
+        }
+    }
+}
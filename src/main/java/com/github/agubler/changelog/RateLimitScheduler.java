@@ -0,0 +1,267 @@
+package com.github.agubler.changelog;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Schedules the requests made to a github host so that all the change log builds sharing its token stay within the
+ * rate limit. The limit is tracked from the X-RateLimit-* headers of the response to the newest request, less the
+ * requests made since, so that 304 Not Modified responses, which do not use up the limit, are not counted against it.
+ * Requests run freely while plenty of the limit remains, are spread evenly over the time left until the limit resets
+ * once it runs low, and wait for the reset when only the reserve is left. Rate limited responses (including secondary
+ * limits with Retry-After) are retried with a jittered backoff instead of failing the build.
+ */
+public class RateLimitScheduler {
+
+    /**
+     * Default number of requests left untouched for other users of the token
+     */
+    public static final int DEFAULT_RESERVE = 100;
+
+    /**
+     * Maximum number of times a rate limited request is retried
+     */
+    public static final int MAX_RETRIES = 5;
+
+    /**
+     * The backoff for the first retry of a rate limited request without a known reset time
+     */
+    private static final long INITIAL_BACKOFF = 1000L;
+
+    /**
+     * The maximum random delay added to a backoff
+     */
+    private static final long MAX_JITTER = 1000L;
+
+    /**
+     * Requests are spread out once less than this fraction of the limit remains
+     */
+    private static final int PACING_FRACTION = 4;
+
+    /**
+     * The schedulers by github host, shared by all builds
+     */
+    private static final ConcurrentMap<String, RateLimitScheduler> SCHEDULERS = new ConcurrentHashMap<String, RateLimitScheduler>();
+
+    private final Random random = new Random();
+
+    /**
+     * The number of requests left untouched for other users of the token
+     */
+    private int reserve = DEFAULT_RESERVE;
+
+    /**
+     * The rate limit, -1 until known
+     */
+    private int limit = -1;
+
+    /**
+     * The requests remaining until the reset, -1 until known
+     */
+    private int remaining = -1;
+
+    /**
+     * The time the rate limit resets, in milliseconds
+     */
+    private long resetTime;
+
+    /**
+     * The time until which github asked for no further requests (Retry-After), in milliseconds
+     */
+    private long retryAfterTime;
+
+    /**
+     * The earliest time the next request may be made when requests are being spread out, in milliseconds
+     */
+    private long nextRequestTime;
+
+    /**
+     * The number of rate limited requests retried
+     */
+    private int retries;
+
+    /**
+     * The sequence number of the last request slot reserved
+     */
+    private long issued;
+
+    /**
+     * The sequence number of the request whose response the remaining requests were last taken from
+     */
+    private long accepted;
+
+    /**
+     * The sequence number of the request slot reserved by the thread, matched to the response it receives
+     */
+    private final ThreadLocal<Long> sequence = new ThreadLocal<Long>();
+
+    /**
+     * Returns the scheduler shared by all builds for the github host
+     *
+     * @param host The github host
+     * @return The scheduler
+     */
+    public static RateLimitScheduler forHost(String host) {
+        RateLimitScheduler scheduler = SCHEDULERS.get(host);
+        if (scheduler == null) {
+            SCHEDULERS.putIfAbsent(host, new RateLimitScheduler());
+            scheduler = SCHEDULERS.get(host);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Waits until the next request may be made
+     *
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+        sleep(reserveSlot(System.currentTimeMillis()));
+    }
+
+    /**
+     * Records the rate limit headers of a response
+     *
+     * @param response The response
+     * @return The time to wait in milliseconds before retrying if the response was rate limited, otherwise 0
+     */
+    public long update(HttpURLConnection response) {
+        int status;
+        try {
+            status = response.getResponseCode();
+        } catch (IOException e) {
+            status = -1;
+        }
+        return update(status, response.getHeaderField("X-RateLimit-Limit"), response.getHeaderField("X-RateLimit-Remaining"),
+                response.getHeaderField("X-RateLimit-Reset"), response.getHeaderField("Retry-After"), System.currentTimeMillis());
+    }
+
+    /**
+     * Waits before retrying a rate limited request
+     *
+     * @param delay The delay github asked for, 0 if unknown
+     * @param attempt The number of attempts already made
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public void backoff(long delay, int attempt) throws InterruptedIOException {
+        synchronized (this) {
+            retries++;
+        }
+        long wait = delay > 0 ? delay : INITIAL_BACKOFF << Math.min(attempt, 10);
+        sleep(wait + (long) (random.nextDouble() * MAX_JITTER));
+    }
+
+    public synchronized void setReserve(int reserve) {
+        this.reserve = Math.max(0, reserve);
+    }
+
+    public synchronized int getRemaining() {
+        return remaining;
+    }
+
+    public synchronized int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Reserves the next request slot
+     *
+     * @param now The current time in milliseconds
+     * @return The time to wait for the slot in milliseconds
+     */
+    synchronized long reserveSlot(long now) {
+        sequence.set(++issued);
+        long wait = Math.max(0, retryAfterTime - now);
+        if (remaining < 0 || resetTime <= now) {
+            return wait;
+        }
+
+        int budget = remaining - reserve;
+        if (budget <= 0) {
+            //only the reserve is left, wait for the reset
+            return Math.max(wait, resetTime - now);
+        }
+        if (limit > 0 && budget < limit / PACING_FRACTION) {
+            //spread the remaining budget over the time until the reset
+            long start = Math.max(now + wait, nextRequestTime);
+            nextRequestTime = start + (resetTime - now) / budget;
+            wait = start - now;
+        }
+        //count the request until its response reports the actual remaining requests
+        remaining--;
+        return wait;
+    }
+
+    /**
+     * Records the rate limit headers of the response to the request slot last reserved by the thread
+     *
+     * @return The time to wait in milliseconds before retrying if the response was rate limited, otherwise 0
+     */
+    synchronized long update(int status, String limitHeader, String remainingHeader, String resetHeader,
+                             String retryAfterHeader, long now) {
+        Long requestSequence = sequence.get();
+        sequence.remove();
+        long reset = parse(resetHeader) * 1000L;
+        int responseRemaining = (int) parse(remainingHeader);
+        if (responseRemaining >= 0 && reset > 0) {
+            if (reset > resetTime || remaining < 0) {
+                //a new window
+                remaining = requestSequence != null
+                        ? responseRemaining - (int) (issued - requestSequence) : responseRemaining;
+                accepted = requestSequence != null ? requestSequence : issued;
+            } else if (requestSequence == null) {
+                //a response without a reserved slot cannot be ordered, only a lower count is taken
+                remaining = Math.min(remaining, responseRemaining);
+            } else if (requestSequence > accepted) {
+                //responses arrive out of order, the newest one is accurate but for the requests made since
+                remaining = responseRemaining - (int) (issued - requestSequence);
+                accepted = requestSequence;
+            } else if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                //an older response, its slot is given back as a 304 does not use up the limit
+                remaining++;
+            }
+            resetTime = Math.max(resetTime, reset);
+            limit = (int) parse(limitHeader);
+        }
+
+        if (status != 403 && status != 429) {
+            return 0;
+        }
+        long retryAfter = parse(retryAfterHeader);
+        if (retryAfter >= 0) {
+            retryAfterTime = Math.max(retryAfterTime, now + retryAfter * 1000L);
+            return Math.max(retryAfter * 1000L, 1);
+        }
+        if (responseRemaining == 0) {
+            return Math.max(reset - now, 1);
+        }
+        return 0;
+    }
+
+    private static long parse(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException("Interrupted waiting for the github rate limit").initCause(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The release tags of a repository in release order, newest first, indexed by name. Each release is made up of the
+ * commits between its tag and the next (older) tag in the index.
+ */
+public class ReleaseRefIndex {
+
+    /**
+     * The tags, newest first
+     */
+    private final List<RepositoryTag> tags;
+
+    /**
+     * The position of each tag by name
+     */
+    private final Map<String, Integer> positions;
+
+    /**
+     * Constructor; takes the tags of the releases
+     *
+     * @param tags the tags, in any order
+     * @param pattern the pattern the names of the release tags match, null for all the tags
+     */
+    public ReleaseRefIndex(List<RepositoryTag> tags, Pattern pattern) {
+        List<RepositoryTag> releaseTags = new ArrayList<RepositoryTag>(tags.size());
+        for (RepositoryTag tag : tags) {
+            if (pattern == null || pattern.matcher(tag.getName()).matches()) {
+                releaseTags.add(tag);
+            }
+        }
+        VersionKey.sortNewestFirst(releaseTags);
+
+        this.tags = Collections.unmodifiableList(releaseTags);
+        this.positions = new HashMap<String, Integer>(releaseTags.size() * 2);
+        for (int i = releaseTags.size() - 1; i >= 0; i--) {
+            //a duplicate name keeps its newest position
+            positions.put(releaseTags.get(i).getName(), i);
+        }
+    }
+
+    /**
+     * Returns the position of the tag, newest first
+     *
+     * @param tagName The tag name
+     * @return The position, -1 if the tag is not a release
+     */
+    public int indexOf(String tagName) {
+        Integer position = positions.get(tagName);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Returns the tag at the position, newest first
+     *
+     * @param index The position
+     * @return The tag
+     */
+    public RepositoryTag get(int index) {
+        return tags.get(index);
+    }
+
+    /**
+     * Returns the commit the release at the position starts after, that of the previous release
+     *
+     * @param index The position
+     * @return The sha, null for the oldest release
+     */
+    public String getBaseSha(int index) {
+        return index + 1 < tags.size() ? tags.get(index + 1).getCommit().getSha() : null;
+    }
+
+    /**
+     * Returns the newest release
+     *
+     * @return The tag, null if there are no releases
+     */
+    public RepositoryTag getLatest() {
+        return tags.isEmpty() ? null : tags.get(0);
+    }
+
+    public int size() {
+        return tags.size();
+    }
+
+    public boolean isEmpty() {
+        return tags.isEmpty();
+    }
+
+    public List<RepositoryTag> getTags() {
+        return tags;
+    }
+}
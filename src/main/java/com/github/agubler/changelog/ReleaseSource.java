@@ -0,0 +1,40 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where the tags and the pull requests of the releases are read from
+ */
+public interface ReleaseSource {
+
+    /**
+     * Returns the tags of the repository starting with the prefix, with the sha of the commit each tag points to
+     *
+     * @param prefix The prefix of the tag names, empty for all the tags
+     * @return The tags, in no particular order
+     * @throws IOException
+     */
+    List<RepositoryTag> getTags(String prefix) throws IOException;
+
+    /**
+     * Returns the sha of the head commit of a branch
+     *
+     * @param branchName The branch name
+     * @return The sha, null if there is no such branch
+     * @throws IOException
+     */
+    String getBranchSha(String branchName) throws IOException;
+
+    /**
+     * Returns the release made up of the pull requests merged after the base commit up to the head commit
+     *
+     * @param baseSha The base commit
+     * @param headSha The head commit
+     * @return The release dated with the head commit, without a title
+     * @throws IOException
+     */
+    ChangeLogRelease getRelease(String baseSha, String headSha) throws IOException;
+}
@@ -0,0 +1,168 @@
+package com.github.agubler.changelog;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The releases kept in the main change log, the newest releases up to a maximum number and/or no older than a maximum
+ * age. The sections of older releases are moved out into an archive file per major version.
+ */
+public class ReleaseWindow {
+
+    /**
+     * The start of a release section in the change log text
+     */
+    private static final String SECTION_START = "\n###";
+
+    /**
+     * The date in the title of a release section, as rendered by {@link Date#toString()}
+     */
+    private static final Pattern SECTION_DATE = Pattern.compile("\\A\n###.* \\((.+)\\)\n");
+
+    /**
+     * The release title of a release section, the tag name or "upcoming"
+     */
+    private static final Pattern SECTION_TITLE = Pattern.compile("\\A\n###(\\S+) \\(");
+
+    /**
+     * The maximum number of releases, 0 for no maximum
+     */
+    private final int maxReleases;
+
+    /**
+     * The maximum age of a release in days, 0 for no maximum
+     */
+    private final int maxAgeDays;
+
+    /**
+     * Constructor; takes the bounds of the window
+     *
+     * @param maxReleases the maximum number of releases, 0 for no maximum
+     * @param maxAgeDays the maximum age of a release in days, 0 for no maximum
+     */
+    public ReleaseWindow(int maxReleases, int maxAgeDays) {
+        this.maxReleases = Math.max(0, maxReleases);
+        this.maxAgeDays = Math.max(0, maxAgeDays);
+    }
+
+    /**
+     * Returns the name of the archive file for the releases of a major version, next to the change log
+     *
+     * @param changeLogName The change log filename (includes path)
+     * @param major The major version
+     * @return The archive filename, e.g. CHANGELOG-1.x.md
+     */
+    public static String archiveName(String changeLogName, long major) {
+        int extension = changeLogName.lastIndexOf('.');
+        if (extension <= changeLogName.lastIndexOf('/') + 1) {
+            return changeLogName + "-" + major + ".x";
+        }
+        return changeLogName.substring(0, extension) + "-" + major + ".x" + changeLogName.substring(extension);
+    }
+
+    /**
+     * Splits the markdown of published releases into the section of each release
+     *
+     * @param releasesText The markdown, starting with the first release section
+     * @return The sections, newest first
+     */
+    public static List<String> sections(String releasesText) {
+        List<String> sections = new ArrayList<String>();
+        int start = releasesText.indexOf(SECTION_START);
+        while (start >= 0) {
+            int end = releasesText.indexOf(SECTION_START, start + 1);
+            sections.add(releasesText.substring(start, end >= 0 ? end : releasesText.length()));
+            start = end;
+        }
+        return sections;
+    }
+
+    /**
+     * Keeps the newest sections of the published releases that are still in the window
+     *
+     * @param releasesText The markdown of the published releases, newest first
+     * @param maxSections The number of sections that may be kept
+     * @param cutoff The date the releases must not be older than, null for no maximum age
+     * @return The markdown of the sections kept
+     */
+    public static String truncate(String releasesText, int maxSections, Date cutoff) {
+        StringBuilder kept = new StringBuilder();
+        int count = 0;
+        for (String section : sections(releasesText)) {
+            if (count >= maxSections) {
+                break;
+            }
+            //a section with an unreadable date is kept rather than lost
+            Date date = cutoff != null ? sectionDate(section) : null;
+            if (date != null && date.before(cutoff)) {
+                break;
+            }
+            kept.append(section);
+            count++;
+        }
+        return kept.toString();
+    }
+
+    /**
+     * Returns the release date in the title of a section
+     *
+     * @param section The release section
+     * @return The date, null if it cannot be read
+     */
+    public static Date sectionDate(String section) {
+        Matcher matcher = SECTION_DATE.matcher(section);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).parse(matcher.group(1));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the release title of a section
+     *
+     * @param section The release section
+     * @return The title, null if it cannot be read
+     */
+    public static String sectionTitle(String section) {
+        Matcher matcher = SECTION_TITLE.matcher(section);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    /**
+     * Returns the maximum number of releases
+     *
+     * @return The maximum, {@link Integer#MAX_VALUE} if there is no maximum
+     */
+    public int getMaxReleases() {
+        return maxReleases > 0 ? maxReleases : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the date releases must not be older than
+     *
+     * @param now The current time in milliseconds
+     * @return The cutoff, null if there is no maximum age
+     */
+    public Date getCutoff(long now) {
+        return maxAgeDays > 0 ? new Date(now - maxAgeDays * 24L * 60L * 60L * 1000L) : null;
+    }
+
+    /**
+     * Indicates if the window excludes any releases
+     *
+     * @return true if there is a maximum number or age
+     */
+    public boolean isBounded() {
+        return maxReleases > 0 || maxAgeDays > 0;
+    }
+}
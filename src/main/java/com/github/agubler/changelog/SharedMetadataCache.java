@@ -0,0 +1,303 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.Gson;
+import hudson.Extension;
+import hudson.ExtensionList;
+import jenkins.model.Jenkins;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * In memory cache of the repository metadata (tags, branches and releases) shared by all the change log builds on the
+ * controller. Builds asking for a value another build is already fetching wait for that fetch rather than repeating
+ * it, and the least recently used values are evicted once their estimated size exceeds the memory budget. Values that
+ * move, such as tags and branches, are only shared while they are being fetched and are never kept.
+ */
+@Extension
+public class SharedMetadataCache {
+
+    /**
+     * The default memory budget in megabytes
+     */
+    public static final int DEFAULT_MAX_SIZE_MB = 64;
+
+    /**
+     * Serializes the values to estimate their size
+     */
+    private static final Gson GSON = new Gson();
+
+    /**
+     * The fixed size estimated for an entry, on top of its value
+     */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    /**
+     * The entries by key, in least recently used order
+     */
+    private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+    /**
+     * The fetches in progress of the values that are not kept, by key
+     */
+    private final Map<String, Future<?>> fetches = new HashMap<String, Future<?>>();
+
+    /**
+     * The memory budget in bytes
+     */
+    private long maxSize = DEFAULT_MAX_SIZE_MB * 1024L * 1024L;
+
+    /**
+     * The estimated size of the fetched values in bytes
+     */
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Returns the cache of the controller
+     *
+     * @return The cache, null if jenkins is not running
+     */
+    public static SharedMetadataCache get() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        ExtensionList<SharedMetadataCache> caches = jenkins.getExtensionList(SharedMetadataCache.class);
+        return caches.isEmpty() ? null : caches.get(0);
+    }
+
+    /**
+     * Returns the cached value, fetching it if it is not cached or has expired. A value being fetched by another
+     * build is waited for.
+     *
+     * @param key The key
+     * @param maxAge The time in milliseconds the value may be used for, 0 if it never changes
+     * @param loader Fetches the value, only called on a miss
+     * @return The value
+     * @throws IOException if the fetch fails, the failure is not cached
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String key, long maxAge, Callable<V> loader) throws IOException {
+        CacheEntry entry;
+        FutureTask<V> task = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            entry = entries.get(key);
+            if (entry != null && entry.expires > now) {
+                hits++;
+            } else {
+                if (entry != null) {
+                    remove(key);
+                }
+                misses++;
+                task = new FutureTask<V>(loader);
+                entry = new CacheEntry(task, maxAge > 0 ? now + maxAge : Long.MAX_VALUE);
+                entries.put(key, entry);
+            }
+        }
+
+        if (task != null) {
+            task.run();
+        }
+        try {
+            V value = (V) entry.value.get();
+            if (task != null) {
+                fetched(key, entry, value);
+            }
+            return value;
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    remove(key);
+                }
+            }
+            throw failure(key, e);
+        } catch (InterruptedException e) {
+            throw (IOException) new InterruptedIOException("Interrupted waiting for " + key).initCause(e);
+        }
+    }
+
+    /**
+     * Fetches a value that moves, waiting for the fetch of another build already in progress rather than repeating
+     * it. The value is not kept once fetched, so it is never stale.
+     *
+     * @param key The key
+     * @param loader Fetches the value, only called if no fetch is in progress
+     * @return The value
+     * @throws IOException if the fetch fails
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V share(String key, Callable<V> loader) throws IOException {
+        Future<?> fetch;
+        FutureTask<V> task = null;
+        synchronized (this) {
+            fetch = fetches.get(key);
+            if (fetch != null) {
+                hits++;
+            } else {
+                misses++;
+                task = new FutureTask<V>(loader);
+                fetch = task;
+                fetches.put(key, task);
+            }
+        }
+
+        if (task != null) {
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    fetches.remove(key);
+                }
+            }
+        }
+        try {
+            return (V) fetch.get();
+        } catch (ExecutionException e) {
+            throw failure(key, e);
+        } catch (InterruptedException e) {
+            throw (IOException) new InterruptedIOException("Interrupted waiting for " + key).initCause(e);
+        }
+    }
+
+    /**
+     * Sets the memory budget, evicting values if it has shrunk
+     *
+     * @param maxSizeMb the budget in megabytes
+     */
+    public synchronized void setMaxSizeMb(int maxSizeMb) {
+        this.maxSize = Math.max(0, maxSizeMb) * 1024L * 1024L;
+        evict();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getSizeKb() {
+        return size / 1024;
+    }
+
+    public synchronized long getMaxSizeKb() {
+        return maxSize / 1024;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the percentage of lookups found in the cache
+     *
+     * @return The hit rate, 0 before the first lookup
+     */
+    public synchronized int getHitRate() {
+        long lookups = hits + misses;
+        return lookups > 0 ? (int) (hits * 100 / lookups) : 0;
+    }
+
+    /**
+     * Discards all the values
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Records the size of a fetched value and evicts values until the cache fits its budget
+     */
+    private synchronized void fetched(String key, CacheEntry entry, Object value) {
+        //the entry may have been replaced or evicted while the value was fetched
+        if (entries.get(key) != entry) {
+            return;
+        }
+        entry.size = ENTRY_OVERHEAD + GSON.toJson(value).length() * 2L;
+        size += entry.size;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<CacheEntry> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            CacheEntry entry = eldest.next();
+            //values still being fetched have no size yet and are waited on
+            if (entry.value.isDone()) {
+                size -= entry.size;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Returns the failure of a fetch to rethrow
+     */
+    private static IOException failure(String key, ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return (IOException) new IOException("Unable to fetch " + key + ": " + cause.getMessage()).initCause(cause);
+    }
+
+    private void remove(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * A cached value, or a value being fetched
+     */
+    private static class CacheEntry {
+
+        private final Future<?> value;
+
+        private final long expires;
+
+        /**
+         * The estimated size in bytes, 0 until fetched
+         */
+        private long size;
+
+        private CacheEntry(Future<?> value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
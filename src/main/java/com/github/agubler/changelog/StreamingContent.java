@@ -0,0 +1,18 @@
+package com.github.agubler.changelog;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * File content that is written out as it is generated rather than held in memory, it may be written more than once
+ */
+public interface StreamingContent {
+
+    /**
+     * Writes the content
+     *
+     * @param writer The writer to write the content to
+     * @throws IOException
+     */
+    void writeTo(Writer writer) throws IOException;
+}
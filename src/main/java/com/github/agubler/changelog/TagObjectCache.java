@@ -0,0 +1,81 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+
+import java.io.File;
+
+/**
+ * Persistent cache of the commits annotated tags point to. A tag object never changes so entries are keyed by the
+ * repository and the tag object sha and never invalidated, only evicted (least recently used first) when the cache
+ * file grows beyond its maximum size.
+ */
+public class TagObjectCache extends PersistentCache<TagObjectCache.TagObject> {
+
+    /**
+     * The default maximum size of the cache file in bytes
+     */
+    public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    /**
+     * The cache file name
+     */
+    private static final String CACHE_FILE = "tag-object-cache.jsonl";
+
+    /**
+     * Constructor; takes the directory to keep the cache file in
+     *
+     * @param directory the cache directory
+     * @param maxSize the maximum size of the cache file in bytes
+     */
+    public TagObjectCache(File directory, long maxSize) {
+        super(new File(directory, CACHE_FILE), TagObject.class, maxSize);
+    }
+
+    /**
+     * Returns the commit the tag object points to
+     *
+     * @param repository The repository
+     * @param tagSha The tag object sha
+     * @return The commit sha, null if the tag object is not cached
+     */
+    public String getCommitSha(IRepositoryIdProvider repository, String tagSha) {
+        TagObject tagObject = get(key(repository, tagSha));
+        return tagObject != null ? tagObject.commitSha : null;
+    }
+
+    /**
+     * Caches the commit the tag object points to
+     *
+     * @param repository The repository
+     * @param tagSha The tag object sha
+     * @param commitSha The commit sha, the tag peeled
+     */
+    public void put(IRepositoryIdProvider repository, String tagSha, String commitSha) {
+        TagObject tagObject = new TagObject();
+        tagObject.key = key(repository, tagSha);
+        tagObject.commitSha = commitSha;
+        put(tagObject);
+    }
+
+    @Override
+    protected String keyOf(TagObject tagObject) {
+        return tagObject.commitSha != null ? tagObject.key : null;
+    }
+
+    /**
+     * Returns the cache key of the tag object
+     */
+    private static String key(IRepositoryIdProvider repository, String tagSha) {
+        return repository.generateId() + ":" + tagSha;
+    }
+
+    /**
+     * A cache line
+     */
+    static class TagObject {
+
+        private String key;
+
+        private String commitSha;
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The version number of a tag name, parsed once into its numeric segments so that comparing two versions neither
+ * parses nor allocates. Anything that is not a digit separates the segments and is otherwise ignored, so
+ * "asset-version-1.0.2" and "1.0.2" are the same version. Segments too large for a long compare as the largest long.
+ */
+public final class VersionKey implements Comparable<VersionKey> {
+
+    private static final long[] NO_SEGMENTS = new long[0];
+
+    /**
+     * The numeric segments, most significant first
+     */
+    private final long[] segments;
+
+    private VersionKey(long[] segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Parses the version number of a tag name
+     *
+     * @param name The tag name
+     * @return The version key
+     */
+    public static VersionKey parse(String name) {
+        int count = 0;
+        boolean inDigits = false;
+        for (int i = 0; i < name.length(); i++) {
+            boolean digit = isDigit(name.charAt(i));
+            if (digit && !inDigits) {
+                count++;
+            }
+            inDigits = digit;
+        }
+        if (count == 0) {
+            return new VersionKey(NO_SEGMENTS);
+        }
+
+        long[] segments = new long[count];
+        int segment = -1;
+        inDigits = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (isDigit(c)) {
+                if (!inDigits) {
+                    segment++;
+                }
+                long value = segments[segment];
+                segments[segment] = value > (Long.MAX_VALUE - 9) / 10 ? Long.MAX_VALUE : value * 10 + (c - '0');
+                inDigits = true;
+            } else {
+                inDigits = false;
+            }
+        }
+        return new VersionKey(segments);
+    }
+
+    /**
+     * Sorts the tags by version, newest first, parsing each tag name once
+     *
+     * @param tags The tags to sort
+     */
+    public static void sortNewestFirst(List<RepositoryTag> tags) {
+        KeyedTag[] keyed = new KeyedTag[tags.size()];
+        for (int i = 0; i < keyed.length; i++) {
+            keyed[i] = new KeyedTag(parse(tags.get(i).getName()), tags.get(i));
+        }
+        //the sort is stable, so tags with the same version keep their order as in a reversed comparator sort
+        Arrays.sort(keyed);
+        for (int i = 0; i < keyed.length; i++) {
+            tags.set(i, keyed[i].tag);
+        }
+    }
+
+    /**
+     * Returns the most significant segment of the version
+     *
+     * @return The major version, 0 if the name has no version number
+     */
+    public long getMajor() {
+        return segments.length > 0 ? segments[0] : 0;
+    }
+
+    public int compareTo(VersionKey other) {
+        int length = Math.min(segments.length, other.segments.length);
+        for (int i = 0; i < length; i++) {
+            if (segments[i] != other.segments[i]) {
+                return segments[i] < other.segments[i] ? -1 : 1;
+            }
+        }
+        // the versions are equal or one is a prefix of the other
+        // e.g. "1.2.3" = "1.2.3" or "1.2.3" < "1.2.3.4"
+        return Integer.signum(segments.length - other.segments.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VersionKey && Arrays.equals(segments, ((VersionKey) o).segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(segments);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder version = new StringBuilder();
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                version.append('.');
+            }
+            version.append(segments[i]);
+        }
+        return version.toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * A tag with its parsed version, ordered newest first
+     */
+    private static class KeyedTag implements Comparable<KeyedTag> {
+
+        private final VersionKey key;
+
+        private final RepositoryTag tag;
+
+        private KeyedTag(VersionKey key, RepositoryTag tag) {
+            this.key = key;
+            this.tag = tag;
+        }
+
+        public int compareTo(KeyedTag other) {
+            return other.key.compareTo(key);
+        }
+    }
+}
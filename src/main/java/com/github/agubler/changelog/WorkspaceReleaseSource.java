@@ -0,0 +1,321 @@
+package com.github.agubler.changelog;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TypedResource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the releases from the clone of the repository in the build workspace by running git on the node the
+ * workspace is on, so no github api requests are made
+ */
+public class WorkspaceReleaseSource implements ReleaseSource {
+
+    /**
+     * The prefix of the tag refs
+     */
+    private static final String TAGS_REF = "refs/tags/";
+
+    /**
+     * Separates the commits in the log output
+     */
+    private static final char RECORD_SEPARATOR = '\u001e';
+
+    /**
+     * The refs a branch is looked for in, remote tracking branches of the clone first
+     */
+    private static final String[] BRANCH_REFS = {"refs/remotes/origin/", "refs/heads/"};
+
+    private final FilePath repository;
+
+    private final CommitMessageClassifier classifier;
+
+    /**
+     * Constructor; takes the repository in the workspace
+     *
+     * @param repository the root of the working tree of the repository
+     * @param classifier the classifier for the commit messages
+     */
+    public WorkspaceReleaseSource(FilePath repository, CommitMessageClassifier classifier) {
+        this.repository = repository;
+        this.classifier = classifier;
+    }
+
+    public List<RepositoryTag> getTags(String prefix) throws IOException {
+        return act(new TagsCallable(prefix));
+    }
+
+    public String getBranchSha(String branchName) throws IOException {
+        for (String branchRef : BRANCH_REFS) {
+            String sha = act(new RevParseCallable(branchRef + branchName));
+            if (sha != null) {
+                return sha;
+            }
+        }
+        return null;
+    }
+
+    public ChangeLogRelease getRelease(String baseSha, String headSha) throws IOException {
+        ReleaseCommits commits = act(new ReleaseCallable(baseSha, headSha));
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setDate(commits.date);
+        for (int i = 0; i < commits.shas.size(); i++) {
+            ChangeLogEntry entry = classifier.classify(commits.shas.get(i), commits.messages.get(i));
+            if (entry != null) {
+                release.getEntries().add(entry);
+            }
+        }
+        return release;
+    }
+
+    private <T> T act(FilePath.FileCallable<T> callable) throws IOException {
+        try {
+            return repository.act(callable);
+        } catch (InterruptedException e) {
+            throw (IOException) new InterruptedIOException("Interrupted reading the workspace repository").initCause(e);
+        }
+    }
+
+    /**
+     * Starts git in the repository
+     *
+     * @param directory The repository
+     * @param args The git arguments
+     * @return The git process, its error output is discarded
+     * @throws IOException
+     */
+    private static Process git(File directory, String... args) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add("git");
+        command.add("-c");
+        command.add("i18n.logOutputEncoding=UTF-8");
+        command.addAll(Arrays.asList(args));
+        final Process process = new ProcessBuilder(command).directory(directory).start();
+        process.getOutputStream().close();
+        //drain the error output so git never blocks on it
+        Thread errorDrain = new Thread("git stderr") {
+            @Override
+            public void run() {
+                InputStream errors = process.getErrorStream();
+                try {
+                    byte[] buffer = new byte[1024];
+                    while (errors.read(buffer) != -1) {
+                        //discarded, the exit code reports the failure
+                    }
+                } catch (IOException ignored) {
+                } finally {
+                    try {
+                        errors.close();
+                    } catch (IOException ignored) { }
+                }
+            }
+        };
+        errorDrain.setDaemon(true);
+        errorDrain.start();
+        return process;
+    }
+
+    /**
+     * Waits for git to exit
+     *
+     * @param process The git process, its output already read
+     * @param command The command, for the error message
+     * @return The exit code
+     * @throws IOException if interrupted
+     */
+    private static int waitFor(Process process, String command) throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            process.destroy();
+            throw (IOException) new InterruptedIOException("Interrupted running git " + command).initCause(e);
+        }
+    }
+
+    private static void checkExit(Process process, String command) throws IOException {
+        int exitCode = waitFor(process, command);
+        if (exitCode != 0) {
+            throw new IOException("git " + command + " failed with exit code " + exitCode);
+        }
+    }
+
+    private static BufferedReader output(Process process) throws IOException {
+        return new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+    }
+
+    /**
+     * Lists the tags with the commits they point to, annotated tags peeled to their commit
+     */
+    private static class TagsCallable implements FilePath.FileCallable<List<RepositoryTag>> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The prefix of the tag names, matched here as for-each-ref only matches whole path components
+         */
+        private final String prefix;
+
+        private TagsCallable(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public List<RepositoryTag> invoke(File directory, VirtualChannel channel) throws IOException {
+            Process process = git(directory, "for-each-ref", "--format=%(refname)%09%(objectname)%09%(*objectname)", TAGS_REF);
+            List<RepositoryTag> tags = new ArrayList<RepositoryTag>();
+            BufferedReader output = output(process);
+            try {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    String name = fields[0].substring(TAGS_REF.length());
+                    if (!name.startsWith(prefix)) {
+                        continue;
+                    }
+                    TypedResource commit = new TypedResource();
+                    commit.setSha(fields[2].length() > 0 ? fields[2] : fields[1]);
+                    RepositoryTag tag = new RepositoryTag();
+                    tag.setName(name);
+                    tag.setCommit(commit);
+                    tags.add(tag);
+                }
+            } finally {
+                output.close();
+            }
+            checkExit(process, "for-each-ref");
+            return tags;
+        }
+    }
+
+    /**
+     * Resolves a ref to its commit, null if there is no such ref
+     */
+    private static class RevParseCallable implements FilePath.FileCallable<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String ref;
+
+        private RevParseCallable(String ref) {
+            this.ref = ref;
+        }
+
+        public String invoke(File directory, VirtualChannel channel) throws IOException {
+            Process process = git(directory, "rev-parse", "--verify", "--quiet", ref + "^{commit}");
+            BufferedReader output = output(process);
+            String sha;
+            try {
+                sha = output.readLine();
+            } finally {
+                output.close();
+            }
+            return waitFor(process, "rev-parse") == 0 ? sha : null;
+        }
+    }
+
+    /**
+     * The commits of a release read on the node of the workspace, oldest first
+     */
+    private static class ReleaseCommits implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private Date date;
+
+        private final List<String> shas = new ArrayList<String>();
+
+        /**
+         * The message of each commit, null unless it is a pull request merge message, as only the sha of any other
+         * commit is looked up in the pull request index
+         */
+        private final List<String> messages = new ArrayList<String>();
+    }
+
+    /**
+     * Walks the commits of a release oldest first. The commits are classified on the controller, so only the shas
+     * and the merge messages are sent back rather than the classifier and its pull request index sent to the node
+     */
+    private static class ReleaseCallable implements FilePath.FileCallable<ReleaseCommits> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String baseSha;
+
+        private final String headSha;
+
+        private ReleaseCallable(String baseSha, String headSha) {
+            this.baseSha = baseSha;
+            this.headSha = headSha;
+        }
+
+        public ReleaseCommits invoke(File directory, VirtualChannel channel) throws IOException {
+            ReleaseCommits commits = new ReleaseCommits();
+
+            Process process = git(directory, "log", "-1", "--format=%ct", headSha);
+            BufferedReader dateOutput = output(process);
+            try {
+                String committed = dateOutput.readLine();
+                commits.date = new Date(Long.parseLong(committed.trim()) * 1000L);
+            } finally {
+                dateOutput.close();
+            }
+            checkExit(process, "log " + headSha);
+
+            process = git(directory, "log", "--reverse", "--format=%H%x00%B%x1e", baseSha + ".." + headSha);
+            Reader output = output(process);
+            try {
+                StringBuilder message = new StringBuilder();
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = output.read(buffer)) != -1) {
+                    int start = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != RECORD_SEPARATOR) {
+                            continue;
+                        }
+                        message.append(buffer, start, i - start);
+                        String commit = trim(message);
+                        int shaEnd = commit.indexOf('\0');
+                        String commitMessage = commit.substring(shaEnd + 1);
+                        commits.shas.add(commit.substring(0, shaEnd));
+                        commits.messages.add(CommitMessageClassifier.isMergeMessage(commitMessage) ? commitMessage : null);
+                        message.setLength(0);
+                        start = i + 1;
+                    }
+                    message.append(buffer, start, read - start);
+                }
+            } finally {
+                output.close();
+            }
+            checkExit(process, "log " + baseSha + ".." + headSha);
+            return commits;
+        }
+
+        /**
+         * Returns the commit without the new lines git adds around it
+         */
+        private static String trim(StringBuilder message) {
+            int start = 0;
+            int end = message.length();
+            while (start < end && message.charAt(start) == '\n') {
+                start++;
+            }
+            while (end > start && message.charAt(end - 1) == '\n') {
+                end--;
+            }
+            return message.substring(start, end);
+        }
+    }
+}
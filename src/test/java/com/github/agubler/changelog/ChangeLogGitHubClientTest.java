@@ -0,0 +1,105 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ChangeLogGitHubClientTest {
+
+    private static final String TAGS = "[{\"name\":\"1.0.1\",\"commit\":{\"sha\":\"b2\"}},{\"name\":\"1.0.0\",\"commit\":{\"sha\":\"a1\"}}]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GitHubStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog/tags", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    GitHubStubServer.respond(exchange, 304, null);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                    GitHubStubServer.respond(exchange, 200, TAGS);
+                }
+            }
+        });
+        server.handle("/repos/agubler/changelog/compare/a1...b2", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("ETag", "\"c1\"");
+                GitHubStubServer.respond(exchange, 200, "{\"commits\":[]}");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testNotModifiedResponseReplayed() throws Exception {
+        ConditionalRequestCache cache = new ConditionalRequestCache(folder.getRoot(), ConditionalRequestCache.DEFAULT_MAX_SIZE);
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setConditionalRequestCache(cache));
+        repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+        cache.save();
+
+        ConditionalRequestCache reloaded = new ConditionalRequestCache(folder.getRoot(), ConditionalRequestCache.DEFAULT_MAX_SIZE);
+        reloaded.load();
+        repositoryService = new RepositoryService(server.createClient().setConditionalRequestCache(reloaded));
+        List<RepositoryTag> tags = repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+
+        assertThat(tags.size(), is(equalTo(2)));
+        assertThat(tags.get(0).getName(), is(equalTo("1.0.1")));
+        assertThat(tags.get(1).getCommit().getSha(), is(equalTo("a1")));
+        assertThat(reloaded.getNotModified(), is(equalTo(1)));
+        assertThat(server.getRequests().get(1).getRequestHeaders().getFirst("If-None-Match"), is(equalTo("\"v1\"")));
+    }
+
+    @Test
+    public void testUnconditionalWithoutCache() throws Exception {
+        RepositoryService repositoryService = new RepositoryService(server.createClient());
+        repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+        repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+        assertThat(server.getRequests().get(1).getRequestHeaders().getFirst("If-None-Match"), is(nullValue()));
+    }
+
+    @Test
+    public void testImmutableResponsesNotCached() throws Exception {
+        ConditionalRequestCache cache = new ConditionalRequestCache(folder.getRoot(), ConditionalRequestCache.DEFAULT_MAX_SIZE);
+        CommitService commitService = new CommitService(server.createClient().setConditionalRequestCache(cache));
+        commitService.compare(new RepositoryId("agubler", "changelog"), "a1", "b2");
+        commitService.compare(new RepositoryId("agubler", "changelog"), "a1", "b2");
+
+        assertThat(server.getRequests().get(1).getRequestHeaders().getFirst("If-None-Match"), is(nullValue()));
+        assertThat(cache.getMisses() + cache.getHits(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testConditionalEndpoints() {
+        assertThat(ChangeLogGitHubClient.isConditional("/repos/agubler/changelog/tags?per_page=100"), is(equalTo(true)));
+        assertThat(ChangeLogGitHubClient.isConditional("/repos/agubler/changelog/git/matching-refs/tags/"), is(equalTo(true)));
+        assertThat(ChangeLogGitHubClient.isConditional("/repos/agubler/changelog/compare/a1...b2"), is(equalTo(false)));
+        assertThat(ChangeLogGitHubClient.isConditional("/repos/agubler/changelog/git/tags/c3"), is(equalTo(false)));
+        assertThat(ChangeLogGitHubClient.isConditional("/repos/agubler/changelog/commits?sha=b2"), is(equalTo(false)));
+    }
+}
@@ -0,0 +1,320 @@
+package com.github.agubler.changelog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Runs whole change log generations against a synthetic repository served by the stub server, and reports the time,
+ * the requests and the allocations of each. The repository is small by default so the suite runs with the unit tests,
+ * it is sized up with system properties:
+ *
+ * <pre>
+ * mvn test -Dtest=ChangeLogLoadTest -Dchangelog.load.tags=1000 -Dchangelog.load.commits=50 -Dchangelog.load.latency=20
+ * </pre>
+ */
+public class ChangeLogLoadTest {
+
+    private static final int TAGS = Integer.getInteger("changelog.load.tags", 40);
+
+    private static final int COMMITS_PER_RELEASE = Integer.getInteger("changelog.load.commits", 12);
+
+    private static final int LATENCY = Integer.getInteger("changelog.load.latency", 0);
+
+    private static final int CONCURRENCY = Integer.getInteger("changelog.load.concurrency", 4);
+
+    private static final String CHANGE_LOG = "docs/CHANGELOG.md";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GitHubStubServer server;
+
+    private SyntheticRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.setLatency(LATENCY);
+        repository = new SyntheticRepository("agubler", "synthetic")
+                .setTags(TAGS)
+                .setCommitsPerRelease(COMMITS_PER_RELEASE)
+                .setAnnotatedTags(true);
+        repository.register(server);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private ChangeLogService createService() {
+        ChangeLogService service = new ChangeLogService(null) {
+            @Override
+            protected ChangeLogGitHubClient createClient(String gitHubHost) {
+                return server.createClient();
+            }
+        };
+        service.setConcurrency(CONCURRENCY);
+        service.setTransport(new GitHubTransport());
+        return service;
+    }
+
+    /**
+     * Runs a generation and reports it
+     */
+    private ChangeLogMetrics generate(String run, ChangeLogService service, boolean incremental) throws Exception {
+        return generate(run, service, incremental, null);
+    }
+
+    /**
+     * Runs a generation linking the jira references to the jira url, and reports it
+     */
+    private ChangeLogMetrics generate(String run, ChangeLogService service, boolean incremental, String jiraUrl) throws Exception {
+        int requests = server.getRequests().size();
+        long serverAllocated = server.getAllocatedBytes();
+        long totalAllocated = totalAllocatedBytes();
+        Map<Long, Long> threadsAllocated = threadAllocatedBytes();
+        long start = System.nanoTime();
+
+        service.createChangeLog("localhost", "token", "agubler", "synthetic", "master", CHANGE_LOG, jiraUrl != null,
+                jiraUrl, incremental);
+
+        long time = (System.nanoTime() - start) / 1000000L;
+        String allocated;
+        if (totalAllocated >= 0) {
+            //the stub server allocates in the same jvm, what it allocated is left out
+            allocated = (totalAllocatedBytes() - totalAllocated - (server.getAllocatedBytes() - serverAllocated)) / 1024 + "KB allocated";
+        } else {
+            //the worker threads that have ended are missed
+            long threadAllocated = 0;
+            for (Map.Entry<Long, Long> thread : threadAllocatedBytes().entrySet()) {
+                Long before = threadsAllocated.get(thread.getKey());
+                threadAllocated += thread.getValue() - (before != null ? before : 0);
+            }
+            allocated = threadAllocated / 1024 + "KB allocated by the live threads";
+        }
+        System.out.println(String.format("[INFO] %-28s %4d tags x %3d commits, %3dms latency: %6dms, %5d requests, %s",
+                run, TAGS, COMMITS_PER_RELEASE, LATENCY, time, server.getRequests().size() - requests, allocated));
+        return service.getMetrics();
+    }
+
+    /**
+     * Returns the bytes allocated by all threads, including threads that have ended, -1 if the jvm does not count them
+     * (before java 21)
+     */
+    private static long totalAllocatedBytes() {
+        try {
+            Method method = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+            return (Long) method.invoke(ManagementFactory.getThreadMXBean());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the bytes allocated by each live thread other than the stub server threads
+     */
+    private static Map<Long, Long> threadAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> threadAllocated = new HashMap<Long, Long>();
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null && allocated[i] >= 0 && !infos[i].getThreadName().startsWith(GitHubStubServer.THREAD_NAME)) {
+                threadAllocated.put(ids[i], allocated[i]);
+            }
+        }
+        return threadAllocated;
+    }
+
+    private static long endpointRequests(ChangeLogMetrics metrics, String endpoint) {
+        for (ChangeLogMetrics.Endpoint metricsEndpoint : metrics.getEndpoints()) {
+            if (metricsEndpoint.getName().equals(endpoint)) {
+                return metricsEndpoint.getRequests();
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testFullGeneration() throws Exception {
+        ChangeLogMetrics metrics = generate("full generation", createService(), false);
+
+        String changeLog = repository.getFile(CHANGE_LOG);
+        assertThat(changeLog, containsString(MarkdownRenderer.releaseTitle(SyntheticRepository.tagName(TAGS - 1))));
+        assertThat(changeLog, containsString(MarkdownRenderer.releaseTitle(SyntheticRepository.tagName(1))));
+        //the merge commits are in the change log, the squash and plain commits are not
+        int lastMerge = (TAGS * COMMITS_PER_RELEASE - 1) / 3 * 3;
+        assertThat(changeLog, containsString("Change " + (lastMerge + 1) + " of synthetic"));
+        assertThat(changeLog, not(containsString("Change " + (lastMerge + 2) + " of synthetic")));
+        //one compare for each release and the upcoming release, and a page of tags for each 100 tags
+        assertThat(endpointRequests(metrics, "compare"), is(equalTo((long) TAGS)));
+        assertThat(endpointRequests(metrics, "git/matching-refs"), is(equalTo((long) (TAGS + 99) / 100)));
+    }
+
+    @Test
+    public void testGenerationWithPullRequestIndex() throws Exception {
+        ChangeLogService service = createService();
+        service.setPullRequestIndexDirectory(folder.getRoot());
+        ChangeLogMetrics metrics = generate("pull request index", service, false);
+
+        //the squash commits are found through their pull requests
+        int lastMerge = (TAGS * COMMITS_PER_RELEASE - 1) / 3 * 3;
+        assertThat(repository.getFile(CHANGE_LOG), containsString("Change " + (lastMerge + 2) + " of synthetic"));
+        assertThat(endpointRequests(metrics, "pulls"), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void testRegenerationWithCompareCache() throws Exception {
+        ChangeLogService cold = createService();
+        cold.setCompareCache(new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE));
+        generate("cold compare cache", cold, false);
+        String changeLog = repository.getFile(CHANGE_LOG);
+
+        ChangeLogService warm = createService();
+        warm.setCompareCache(new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE));
+        ChangeLogMetrics metrics = generate("warm compare cache", warm, false);
+
+        //only the upcoming release is compared again, and the unchanged change log is not published
+        assertThat(endpointRequests(metrics, "compare"), is(equalTo(1L)));
+        assertThat(endpointRequests(metrics, "contents"), is(equalTo(1L)));
+        assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+
+        metrics = generate("incremental", createService(), true);
+
+        assertThat(endpointRequests(metrics, "compare"), is(equalTo(1L)));
+        assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+    }
+
+    @Test
+    public void testRegenerationWithWarmStart() throws Exception {
+        File previousBuild = folder.newFolder("previous");
+        ChangeLogService cold = createService();
+        cold.setModelDirectory(previousBuild);
+        generate("cold model", cold, false);
+        String changeLog = repository.getFile(CHANGE_LOG);
+
+        File build = folder.newFolder("build");
+        ChangeLogService warm = createService();
+        warm.setModelDirectory(build);
+        warm.setWarmStartDirectory(previousBuild);
+        ChangeLogMetrics metrics = generate("warm start", warm, false);
+
+        //the head branch has not moved so no release is compared, the upcoming release included
+        assertThat(endpointRequests(metrics, "compare"), is(equalTo(0L)));
+        assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+
+        ChangeLogModel model = ChangeLogModel.read(ChangeLogModel.file(build, "synthetic"));
+        assertThat(model.getRepository(), is(equalTo("agubler/synthetic")));
+        assertThat(model.getLastTag(), is(equalTo(SyntheticRepository.tagName(TAGS - 1))));
+        assertThat(model.getReleases().size(), is(equalTo(TAGS)));
+        assertThat(model.getReleases().get(0).getTitle(), is(equalTo("upcoming")));
+
+        //the published releases of an incremental generation are taken from the model
+        File incrementalBuild = folder.newFolder("incremental");
+        ChangeLogService incremental = createService();
+        incremental.setModelDirectory(incrementalBuild);
+        incremental.setWarmStartDirectory(build);
+        generate("incremental warm start", incremental, true);
+
+        model = ChangeLogModel.read(ChangeLogModel.file(incrementalBuild, "synthetic"));
+        assertThat(model.isComplete(), is(true));
+        assertThat(model.getReleases().size(), is(equalTo(TAGS)));
+    }
+
+    @Test
+    public void testGenerationWithJiraIssues() throws Exception {
+        repository.setJiraProject("SYN");
+        JiraStubServer jira = new JiraStubServer();
+        int commits = (TAGS + 1) * COMMITS_PER_RELEASE;
+        for (int i = 1; i <= commits; i++) {
+            jira.addIssue("SYN-" + i, "Issue " + i, i % 2 == 0 ? "Bug" : "Story", "Done");
+        }
+        jira.start();
+        try {
+            ChangeLogService service = createService();
+            service.setJiraIssueCache(new JiraIssueCache(folder.getRoot(), JiraIssueCache.DEFAULT_MAX_SIZE, JiraIssueCache.DEFAULT_TTL));
+            generate("jira issues", service, false, jira.getUrl());
+
+            //the merge commits, a third of the commits (those older than the oldest tag aside), are looked up in batches
+            String changeLog = repository.getFile(CHANGE_LOG);
+            int lastMerge = (TAGS * COMMITS_PER_RELEASE - 1) / 3 * 3 + 1;
+            assertThat(changeLog, containsString("  - [SYN-" + lastMerge + "](" + jira.getUrl() + "/browse/SYN-" + lastMerge +
+                    ") " + (lastMerge % 2 == 0 ? "Bug" : "Story") + " (Done): Issue " + lastMerge + "\n"));
+            int keys = (TAGS * COMMITS_PER_RELEASE - COMMITS_PER_RELEASE + 2) / 3;
+            assertThat(jira.getSearches().size(), is(equalTo((keys + JiraIssueService.BATCH_SIZE - 1) / JiraIssueService.BATCH_SIZE)));
+
+            //the next build finds the issues in the cache
+            jira.getSearches().clear();
+            service = createService();
+            service.setJiraIssueCache(new JiraIssueCache(folder.getRoot(), JiraIssueCache.DEFAULT_MAX_SIZE, JiraIssueCache.DEFAULT_TTL));
+            generate("cached jira issues", service, false, jira.getUrl());
+            assertThat(jira.getSearches().size(), is(equalTo(0)));
+            assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+
+            //without the cache and with jira down the issues are only linked
+            jira.setStatus(503);
+            service = createService();
+            service.setJiraIssueCache(new JiraIssueCache(folder.newFolder(), JiraIssueCache.DEFAULT_MAX_SIZE, JiraIssueCache.DEFAULT_TTL));
+            generate("jira unreachable", service, false, jira.getUrl());
+            changeLog = repository.getFile(CHANGE_LOG);
+            assertThat(changeLog, containsString("[SYN-" + lastMerge + "](" + jira.getUrl() + "/browse/SYN-" + lastMerge + ")"));
+            assertThat(changeLog, not(containsString("(Done)")));
+            assertThat(jira.getSearches().size(), is(equalTo(1)));
+        } finally {
+            jira.stop();
+        }
+    }
+
+    @Test
+    public void testPaginatedAndTruncatedResponses() throws Exception {
+        generate("full pages", createService(), false);
+        String changeLog = repository.getFile(CHANGE_LOG);
+
+        //small pages and compares that never list every commit, so the releases come from walking the history
+        repository.putFile(CHANGE_LOG, "");
+        repository.setMaxPageSize(7).setMaxCompareCommits(COMMITS_PER_RELEASE / 2);
+        ChangeLogMetrics metrics = generate("small pages, history walks", createService(), false);
+
+        assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+        assertThat(endpointRequests(metrics, "commits"), is(greaterThan((long) TAGS)));
+        assertThat(endpointRequests(metrics, "git/matching-refs"), is(equalTo((long) (TAGS + 6) / 7)));
+    }
+
+    @Test
+    public void testRateLimitedGeneration() throws Exception {
+        generate("no rate limit", createService(), false);
+        String changeLog = repository.getFile(CHANGE_LOG);
+        int requests = server.getRequests().size();
+
+        //the generation has to wait for the rate limit to reset once
+        repository.putFile(CHANGE_LOG, "");
+        server.setRateLimit(requests * 2 / 3, 1);
+        RateLimitScheduler rateLimitScheduler = new RateLimitScheduler();
+        rateLimitScheduler.setReserve(0);
+        ChangeLogService service = createService();
+        service.setRateLimitScheduler(rateLimitScheduler);
+        generate("rate limited", service, false);
+
+        assertThat(repository.getFile(CHANGE_LOG), is(equalTo(changeLog)));
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TypedResource;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ChangeLogMarkerTest {
+
+    private ReleaseRefIndex releaseRefs = new ReleaseRefIndex(Arrays.asList(tag("1.0.0", "a1"), tag("1.0.2", "c3"), tag("1.0.1", "b2")), null);
+
+    @Test
+    public void testParseMarker() {
+        String changeLogText = "## Change Log\n" + new ChangeLogMarker("1.0.1", "b2") + "\n\n###1.0.1 (date)\n";
+        ChangeLogMarker marker = ChangeLogMarker.parse(changeLogText);
+        assertThat(marker.getTagName(), is(equalTo("1.0.1")));
+        assertThat(marker.getSha(), is(equalTo("b2")));
+    }
+
+    @Test
+    public void testParseWithoutMarker() {
+        assertThat(ChangeLogMarker.parse("## Change Log\n\n###1.0.1 (date)\n"), is(nullValue()));
+    }
+
+    @Test
+    public void testIndexOf() {
+        assertThat(new ChangeLogMarker("1.0.1", "b2").indexOf(releaseRefs), is(equalTo(1)));
+    }
+
+    @Test
+    public void testIndexOfMovedTag() {
+        assertThat(new ChangeLogMarker("1.0.1", "d4").indexOf(releaseRefs), is(equalTo(-1)));
+    }
+
+    @Test
+    public void testIndexOfDeletedTag() {
+        assertThat(new ChangeLogMarker("0.9.0", "b2").indexOf(releaseRefs), is(equalTo(-1)));
+    }
+
+    private static RepositoryTag tag(String name, String sha) {
+        RepositoryTag repositoryTag = new RepositoryTag();
+        repositoryTag.setName(name);
+        repositoryTag.setCommit(new TypedResource().setSha(sha));
+        return repositoryTag;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ChangeLogMetricsTest {
+
+    private static final String TAGS = "[{\"name\":\"1.0.1\",\"commit\":{\"sha\":\"b2\"}},{\"name\":\"1.0.0\",\"commit\":{\"sha\":\"a1\"}}]";
+
+    private GitHubStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog/tags", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, TAGS);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testEndpoints() {
+        assertThat(ChangeLogMetrics.endpoint("/api/v3/repos/agubler/changelog/compare/a1...b2"), is(equalTo("compare")));
+        assertThat(ChangeLogMetrics.endpoint("/repos/agubler/changelog/contents/docs/CHANGELOG.md"), is(equalTo("contents")));
+        assertThat(ChangeLogMetrics.endpoint("/repos/agubler/changelog/git/refs/heads/master"), is(equalTo("git/refs")));
+        assertThat(ChangeLogMetrics.endpoint("/repos/agubler/changelog"), is(equalTo("repository")));
+        assertThat(ChangeLogMetrics.endpoint("/api/v3/rate_limit"), is(equalTo("rate_limit")));
+    }
+
+    @Test
+    public void testRequestsAndBytesRecorded() throws Exception {
+        ChangeLogMetrics metrics = new ChangeLogMetrics();
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setMetrics(metrics));
+        repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+        repositoryService.getTags(new RepositoryId("agubler", "changelog"));
+
+        List<ChangeLogMetrics.Endpoint> endpoints = metrics.getEndpoints();
+        assertThat(endpoints.size(), is(equalTo(1)));
+        assertThat(endpoints.get(0).getName(), is(equalTo("tags")));
+        assertThat(endpoints.get(0).getRequests(), is(equalTo(2L)));
+        assertThat(endpoints.get(0).getBytesReceived(), is(equalTo(2L * TAGS.length())));
+    }
+
+    @Test
+    public void testPrometheusTotals() throws Exception {
+        ChangeLogMetrics metrics = new ChangeLogMetrics();
+        metrics.request("compare");
+        metrics.received("compare", 100);
+        metrics.cache("compare", 3, 1);
+        metrics.setRateLimitRemaining(4000);
+        metrics.setSucceeded(true);
+
+        ChangeLogMetricsRootAction totals = new ChangeLogMetricsRootAction();
+        totals.record(metrics);
+        totals.record(metrics);
+        StringWriter text = new StringWriter();
+        totals.writeTo(text);
+
+        assertThat(text.toString(), containsString("# TYPE github_changelog_requests_total counter\n"));
+        assertThat(text.toString(), containsString("github_changelog_builds_total{result=\"success\"} 2\n"));
+        assertThat(text.toString(), containsString("github_changelog_requests_total{endpoint=\"compare\"} 2\n"));
+        assertThat(text.toString(), containsString("github_changelog_received_bytes_total{endpoint=\"compare\"} 200\n"));
+        assertThat(text.toString(), containsString("github_changelog_cache_hits_total{cache=\"compare\"} 6\n"));
+        assertThat(text.toString(), containsString("github_changelog_rate_limit_remaining 4000\n"));
+    }
+}
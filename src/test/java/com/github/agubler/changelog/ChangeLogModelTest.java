@@ -0,0 +1,73 @@
+package com.github.agubler.changelog;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ChangeLogModelTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ChangeLogRelease release(String title, String baseSha, String headSha) {
+        ChangeLogEntry entry = new ChangeLogEntry("12", "ABC-1 Fix the thing");
+        entry.setJiraKeys(Arrays.asList("ABC-1"));
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setTitle(title);
+        release.setDate(new Date(1400000000000L));
+        release.setBaseSha(baseSha);
+        release.setHeadSha(headSha);
+        release.getEntries().add(entry);
+        return release;
+    }
+
+    @Test
+    public void testModelSurvivesWrite() throws Exception {
+        List<ChangeLogRelease> releases = new ArrayList<ChangeLogRelease>();
+        releases.add(release("1.0.1", "a1", "b2"));
+        ChangeLogModel model = new ChangeLogModel("agubler/changelog", new ChangeLogMarker("1.0.1", "b2"), releases);
+        File file = ChangeLogModel.file(new File(folder.getRoot(), ChangeLogModel.ARTIFACT_DIRECTORY), "changelog");
+        model.write(file);
+
+        ChangeLogModel read = ChangeLogModel.read(file);
+        assertThat(read.getRepository(), is(equalTo("agubler/changelog")));
+        assertThat(read.getLastTag(), is(equalTo("1.0.1")));
+        assertThat(read.getLastTagSha(), is(equalTo("b2")));
+        assertThat(read.isComplete(), is(true));
+        ChangeLogRelease release = read.getRelease("a1", "b2");
+        assertThat(release.getTitle(), is(equalTo("1.0.1")));
+        assertThat(release.getDate(), is(equalTo(new Date(1400000000000L))));
+        assertThat(release.getEntries().get(0).getNumber(), is(equalTo("12")));
+        assertThat(release.getEntries().get(0).getJiraKeys(), is(equalTo(Arrays.asList("ABC-1"))));
+        assertThat(read.getRelease("1.0.1"), is(equalTo(release)));
+        assertThat(read.getRelease("a1", "c3"), is(nullValue()));
+    }
+
+    @Test
+    public void testUnreadableModelIgnored() throws Exception {
+        assertThat(ChangeLogModel.read(new File(folder.getRoot(), "missing.json")), is(nullValue()));
+
+        File file = folder.newFile("changelog.json");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("{\"format\":".getBytes("UTF-8"));
+        out.close();
+        assertThat(ChangeLogModel.read(file), is(nullValue()));
+
+        out = new FileOutputStream(file);
+        out.write("{\"format\":99,\"releases\":[]}".getBytes("UTF-8"));
+        out.close();
+        assertThat(ChangeLogModel.read(file), is(nullValue()));
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.agubler.changelog;
+
+import hudson.model.BuildListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ChangeLogQueueTest {
+
+    private ChangeLogQueue queue;
+
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void setUp() {
+        queue = new ChangeLogQueue(2);
+    }
+
+    @After
+    public void tearDown() {
+        queue.shutdown();
+    }
+
+    private ChangeLogQueue.Job job(final String name, final CountDownLatch release) {
+        return new ChangeLogQueue.Job() {
+            public void run(BuildListener listener, ChangeLogMetrics metrics) throws IOException, InterruptedException {
+                release.await();
+                ran.add(name);
+                listener.getLogger().println("[INFO] " + name);
+                metrics.setSucceeded(true);
+            }
+        };
+    }
+
+    @Test
+    public void testRequestsCoalescedWhileRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ChangeLogGeneration first = queue.submit("agubler/changelog@master", job("first", release), null);
+        while (queue.getRunning("agubler/changelog@master") == null) {
+            Thread.sleep(5);
+        }
+
+        ChangeLogGeneration second = queue.submit("agubler/changelog@master", job("second", release), null);
+        ChangeLogGeneration third = queue.submit("agubler/changelog@master", job("third", release), null);
+        ChangeLogGeneration fourth = queue.submit("agubler/changelog@master", job("fourth", release), null);
+
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(third, is(sameInstance(second)));
+        assertThat(fourth, is(sameInstance(second)));
+        assertThat(second.getStatus(), is(equalTo(ChangeLogGeneration.QUEUED)));
+
+        release.countDown();
+        assertThat(fourth.await(5, TimeUnit.SECONDS), is(true));
+
+        assertThat(ran, is(equalTo(Arrays.asList("first", "fourth"))));
+        assertThat(fourth.getRequests(), is(equalTo(3)));
+        assertThat(fourth.getStatus(), is(equalTo(ChangeLogGeneration.SUCCEEDED)));
+        assertThat(fourth.getLog(), containsString("[INFO] 3 requests for the change log coalesced into one generation"));
+        assertThat(fourth.getLog(), containsString("[INFO] fourth\n"));
+    }
+
+    @Test
+    public void testFailureRecorded() throws Exception {
+        ChangeLogGeneration generation = queue.submit("agubler/changelog@master", new ChangeLogQueue.Job() {
+            public void run(BuildListener listener, ChangeLogMetrics metrics) throws IOException {
+                throw new IOException("Not Found (404)");
+            }
+        }, null);
+
+        assertThat(generation.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(generation.getStatus(), is(equalTo(ChangeLogGeneration.FAILED)));
+        assertThat(generation.getMessage(), is(equalTo("Not Found (404)")));
+        assertThat(generation.getLog(), containsString("[ERROR] Unable to generate github change log: Not Found (404)"));
+    }
+
+    @Test
+    public void testOtherChangeLogsNotBlocked() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        queue.submit("agubler/changelog@master", job("blocked", blocked), null);
+
+        ChangeLogGeneration other = queue.submit("agubler/other@master", job("other", new CountDownLatch(0)), null);
+
+        assertThat(other.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(ran, is(equalTo(Collections.singletonList("other"))));
+        blocked.countDown();
+    }
+}
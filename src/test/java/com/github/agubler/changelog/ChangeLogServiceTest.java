@@ -0,0 +1,233 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.codec.binary.Base64;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class ChangeLogServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GitHubStubServer server;
+
+    private ChangeLogService service;
+
+    /**
+     * The delay of each compare of the repository four, by range, so that the newest releases are fetched last
+     */
+    private final Map<String, Long> compareDelays = new HashMap<String, Long>();
+
+    /**
+     * The range of the compare of the repository four that fails, null if none fails
+     */
+    private volatile String failingCompare;
+
+    /**
+     * The change log published to the repository four
+     */
+    private volatile String publishedChangeLog;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.handle("/orgs/agubler/repos", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "[{\"name\":\"one\"},{\"name\":\"other\"},{\"name\":\"two\"}]");
+            }
+        });
+        server.handle("/repos/agubler/one", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    GitHubStubServer.respond(exchange, 200, "{}");
+                } else if (path.endsWith("/one")) {
+                    GitHubStubServer.respond(exchange, 200, "{\"name\":\"one\",\"owner\":{\"login\":\"agubler\"}}");
+                } else {
+                    //no tags and no existing change log
+                    GitHubStubServer.respond(exchange, 200, "[]");
+                }
+            }
+        });
+        server.handle("/repos/agubler/three", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (path.endsWith("/git/matching-refs/tags/")) {
+                    GitHubStubServer.respond(exchange, 200, "[{\"ref\":\"refs/tags/1.0.0\",\"object\":{\"sha\":\"a1\",\"type\":\"commit\"}}," +
+                            "{\"ref\":\"refs/tags/1.1.0\",\"object\":{\"sha\":\"b2\",\"type\":\"commit\"}}]");
+                } else if (path.endsWith("/compare/a1...b2")) {
+                    GitHubStubServer.respond(exchange, 200, "{\"total_commits\":1,\"commits\":[{\"sha\":\"b2\",\"commit\":" +
+                            "{\"message\":\"Merge pull request #7 from a/b\\n\\nSeventh\",\"committer\":{\"date\":\"2014-07-21T10:00:00Z\"}}}]}");
+                } else {
+                    GitHubStubServer.respond(exchange, 200, "{\"name\":\"three\",\"owner\":{\"login\":\"agubler\"}}");
+                }
+            }
+        });
+        compareDelays.put("c3...d4", 400L);
+        compareDelays.put("b2...c3", 200L);
+        compareDelays.put("a1...b2", 0L);
+        server.handle("/repos/agubler/four", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if ("PUT".equals(exchange.getRequestMethod())) {
+                    String content = new JsonParser().parse(read(exchange.getRequestBody())).getAsJsonObject().get("content").getAsString();
+                    publishedChangeLog = new String(Base64.decodeBase64(content), "UTF-8");
+                    GitHubStubServer.respond(exchange, 200, "{}");
+                } else if (path.endsWith("/four")) {
+                    GitHubStubServer.respond(exchange, 200, "{\"name\":\"four\",\"owner\":{\"login\":\"agubler\"}}");
+                } else if (path.endsWith("/git/matching-refs/tags/")) {
+                    GitHubStubServer.respond(exchange, 200, "[{\"ref\":\"refs/tags/1.1.0\",\"object\":{\"sha\":\"b2\",\"type\":\"commit\"}}," +
+                            "{\"ref\":\"refs/tags/1.3.0\",\"object\":{\"sha\":\"d4\",\"type\":\"commit\"}}," +
+                            "{\"ref\":\"refs/tags/1.0.0\",\"object\":{\"sha\":\"a1\",\"type\":\"commit\"}}," +
+                            "{\"ref\":\"refs/tags/1.2.0\",\"object\":{\"sha\":\"c3\",\"type\":\"commit\"}}]");
+                } else if (path.contains("/compare/")) {
+                    String range = path.substring(path.indexOf("/compare/") + "/compare/".length());
+                    try {
+                        Thread.sleep(compareDelays.get(range));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (range.equals(failingCompare)) {
+                        GitHubStubServer.respond(exchange, 500, "{\"message\":\"Server Error\"}");
+                    } else {
+                        String headSha = range.substring(range.indexOf("...") + 3);
+                        GitHubStubServer.respond(exchange, 200, "{\"total_commits\":1,\"commits\":[{\"sha\":\"" + headSha + "\",\"commit\":" +
+                                "{\"message\":\"Merge pull request #" + headSha.substring(1) + " from a/b\\n\\nChange " + headSha +
+                                "\",\"committer\":{\"date\":\"2014-07-21T10:00:00Z\"}}}]}");
+                    }
+                } else if (path.contains("/git/ref/heads/")) {
+                    //no head branch, so no upcoming release
+                    GitHubStubServer.respond(exchange, 404, "{\"message\":\"Not Found\"}");
+                } else {
+                    //no existing change log
+                    GitHubStubServer.respond(exchange, 200, "[]");
+                }
+            }
+        });
+        server.handle("/repos/agubler/two", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        });
+        server.start();
+
+        service = new ChangeLogService(null) {
+            @Override
+            protected ChangeLogGitHubClient createClient(String gitHubHost) {
+                return server.createClient();
+            }
+        };
+        service.setRepositoryConcurrency(2);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testRepositoriesGeneratedPastFailures() throws Exception {
+        List<ChangeLogService.RepositoryResult> results = service.createChangeLogs("localhost", "token", "agubler",
+                Arrays.asList("two"), Pattern.compile("on.*"), "master", "CHANGELOG.md", false, null, false);
+
+        assertThat(results.size(), is(equalTo(2)));
+        assertThat(results.get(0).getRepositoryName(), is(equalTo("two")));
+        assertThat(results.get(0).isFailed(), is(true));
+        assertThat(results.get(1).getRepositoryName(), is(equalTo("one")));
+        assertThat(results.get(1).getStatus(), is(equalTo("published")));
+        //the phases of the repositories are kept apart from those of the build
+        assertThat(service.getMetrics().getPhases().containsKey("change_logs"), is(true));
+        assertThat(service.getMetrics().getRepositoryPhases().containsKey("repository"), is(true));
+        assertThat(service.getMetrics().getRepositoryPhases().containsKey("publish"), is(true));
+    }
+
+    @Test
+    public void testCachesSavedWhenRepositoriesCannotBeListed() throws Exception {
+        service.setCompareCache(new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE));
+        try {
+            service.createChangeLogs("localhost", "token", "missing", Arrays.<String>asList(), Pattern.compile(".*"),
+                    "master", "CHANGELOG.md", false, null, false);
+            fail("the repositories of a missing owner cannot be listed");
+        } catch (IOException expected) {
+        }
+
+        assertThat(service.getMetrics().getCaches().get(0).getName(), is(equalTo("compare")));
+    }
+
+    @Test
+    public void testTagReleasePrecomputedIntoCompareCache() throws Exception {
+        service.setCompareCache(new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE));
+
+        assertThat(service.precomputeRelease("localhost", "token", "agubler", "three", "1.1.0", null, false, null), is(true));
+        assertThat(service.precomputeRelease("localhost", "token", "agubler", "three", "1.0.0", null, false, null), is(false));
+
+        CompareCache compareCache = new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE);
+        compareCache.load();
+        ChangeLogRelease release = compareCache.get(RepositoryId.create("agubler", "three"), "a1", "b2");
+        assertThat(release.getEntries().size(), is(equalTo(1)));
+        assertThat(release.getEntries().get(0).getNumber(), is(equalTo("7")));
+    }
+
+    @Test
+    public void testReleasesFetchedOutOfOrderAssembledNewestFirst() throws Exception {
+        service.setConcurrency(3);
+        service.createChangeLog("localhost", "token", "agubler", "four", "master", "CHANGELOG.md", false, null, false);
+
+        int newest = publishedChangeLog.indexOf(MarkdownRenderer.releaseTitle("1.3.0"));
+        int middle = publishedChangeLog.indexOf(MarkdownRenderer.releaseTitle("1.2.0"));
+        int oldest = publishedChangeLog.indexOf(MarkdownRenderer.releaseTitle("1.1.0"));
+        assertThat(newest, is(greaterThan(-1)));
+        assertThat(middle, is(greaterThan(newest)));
+        assertThat(oldest, is(greaterThan(middle)));
+        assertThat(publishedChangeLog.indexOf("Change d4"), is(greaterThan(newest)));
+        assertThat(publishedChangeLog.indexOf("Change c3"), is(greaterThan(middle)));
+        assertThat(publishedChangeLog.indexOf("Change b2"), is(greaterThan(oldest)));
+    }
+
+    @Test
+    public void testFailingRangeNamedWhileOthersFetchedOutOfOrder() throws Exception {
+        service.setConcurrency(3);
+        failingCompare = "b2...c3";
+        try {
+            service.createChangeLog("localhost", "token", "agubler", "four", "master", "CHANGELOG.md", false, null, false);
+            fail("a release that cannot be compared fails the change log");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString("version 1.2.0 (1.1.0...1.2.0)"));
+        }
+        assertThat(publishedChangeLog, is(nullValue()));
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toString("UTF-8");
+    }
+}
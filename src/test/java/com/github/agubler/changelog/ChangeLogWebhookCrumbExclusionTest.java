@@ -0,0 +1,89 @@
+package com.github.agubler.changelog;
+
+import hudson.security.csrf.DefaultCrumbIssuer;
+import hudson.util.Secret;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class ChangeLogWebhookCrumbExclusionTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Before
+    public void setUp() {
+        j.jenkins.setCrumbIssuer(new DefaultCrumbIssuer(false));
+        j.jenkins.getDescriptorByType(GithubChangeLogBuilder.DescriptorImpl.class).setWebhookSecret(Secret.fromString("s3cret"));
+    }
+
+    @Test
+    public void testDeliveryAcceptedWithoutCrumb() throws Exception {
+        byte[] payload = payload("push-tag.json");
+
+        assertThat(post(ChangeLogWebhookRootAction.URL_NAME + "/", "push", payload), is(equalTo(202)));
+    }
+
+    @Test
+    public void testOtherPathsStillNeedCrumb() throws Exception {
+        byte[] payload = payload("push-tag.json");
+
+        assertThat(post(ChangeLogWebhookRootAction.URL_NAME + "-other/", "push", payload), is(equalTo(403)));
+    }
+
+    private int post(String path, String eventType, byte[] payload) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(j.getURL(), path).openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("X-GitHub-Event", eventType);
+            connection.setRequestProperty("X-Hub-Signature-256", sign(payload, "s3cret"));
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(payload);
+            } finally {
+                out.close();
+            }
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private byte[] payload(String name) throws IOException {
+        InputStream in = getClass().getResourceAsStream("webhook/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String sign(byte[] payload, String secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+        return "sha256=" + Hex.encodeHexString(mac.doFinal(payload));
+    }
+}
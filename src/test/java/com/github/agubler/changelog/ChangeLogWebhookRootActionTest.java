@@ -0,0 +1,194 @@
+package com.github.agubler.changelog;
+
+import hudson.model.BuildListener;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ChangeLogWebhookRootActionTest {
+
+    private final ChangeLogWebhookRootAction webhook = new ChangeLogWebhookRootAction();
+
+    private final List<String> precomputed = Collections.synchronizedList(new ArrayList<String>());
+
+    private byte[] payload(String name) throws IOException {
+        InputStream in = getClass().getResourceAsStream("webhook/" + name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String sign(byte[] payload, String secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+        return "sha256=" + Hex.encodeHexString(mac.doFinal(payload));
+    }
+
+    private ChangeLogWebhookEvent event(String eventType, String name) throws IOException {
+        return ChangeLogWebhookEvent.parse(eventType, new String(payload(name), "UTF-8"));
+    }
+
+    private GithubChangeLogBuilder builder(String repository, String repositoryPattern, String headBranch,
+                                           final CountDownLatch done) {
+        return new GithubChangeLogBuilder("agubler", repository, repositoryPattern, "master", headBranch, "", "",
+                "CHANGELOG.md", "", "", false, null, false, true, false, null, false, null) {
+            @Override
+            public boolean precomputeRelease(BuildListener listener, ChangeLogWebhookEvent event) {
+                precomputed.add(getGithubRepository() + ":" + event);
+                done.countDown();
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void testTagPushParsed() throws Exception {
+        ChangeLogWebhookEvent event = event("push", "push-tag.json");
+
+        assertThat(event.isTag(), is(true));
+        assertThat(event.getOwner(), is(equalTo("agubler")));
+        assertThat(event.getRepositoryName(), is(equalTo("changelog")));
+        assertThat(event.getTagName(), is(equalTo("1.2.0")));
+    }
+
+    @Test
+    public void testBranchPushParsed() throws Exception {
+        ChangeLogWebhookEvent event = event("push", "push-branch.json");
+
+        assertThat(event.isTag(), is(false));
+        assertThat(event.getBranchName(), is(equalTo("integration")));
+        assertThat(event.getHeadSha(), is(equalTo("9d8c7b6a5f4e3d2c1b0a99887766554433221100")));
+    }
+
+    @Test
+    public void testEventsWithoutReleasesIgnored() throws Exception {
+        assertThat(event("push", "push-branch-deleted.json"), is(nullValue()));
+        assertThat(event("ping", "ping.json"), is(nullValue()));
+        assertThat(event("create", "create-tag.json").getTagName(), is(equalTo("1.2.0")));
+    }
+
+    @Test
+    public void testDeliveryTriggersMatchingBuilders() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        List<GithubChangeLogBuilder> builders = Arrays.asList(
+                builder("changelog", null, "", done),
+                builder("other", "change.*", "", done),
+                builder("other", null, "", done),
+                builder("changelog", null, "develop", done));
+
+        byte[] payload = payload("push-branch.json");
+        StringWriter text = new StringWriter();
+        int status = webhook.deliver("push", sign(payload, "s3cret"), payload, "s3cret", builders, new PrintWriter(text, true));
+
+        assertThat(status, is(equalTo(202)));
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        Collections.sort(precomputed);
+        assertThat(precomputed, is(equalTo(Arrays.asList(
+                "changelog:agubler/changelog branch integration at 9d8c7b6a5f4e3d2c1b0a99887766554433221100",
+                "other:agubler/changelog branch integration at 9d8c7b6a5f4e3d2c1b0a99887766554433221100"))));
+    }
+
+    @Test
+    public void testTagPushAndCreateCoalesced() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        List<GithubChangeLogBuilder> builders = Arrays.<GithubChangeLogBuilder>asList(
+                new GithubChangeLogBuilder("agubler", "changelog", null, "master", "", "", "",
+                        "CHANGELOG.md", "", "", false, null, false, true, false, null, false, null) {
+                    @Override
+                    public boolean precomputeRelease(BuildListener listener, ChangeLogWebhookEvent event) {
+                        try {
+                            //hold the generation of the branch while the tag is delivered twice
+                            blocked.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        precomputed.add(event.toString());
+                        done.countDown();
+                        return true;
+                    }
+                });
+
+        byte[] branch = payload("push-branch.json");
+        byte[] push = payload("push-tag.json");
+        byte[] create = payload("create-tag.json");
+        webhook.deliver("push", sign(branch, "s3cret"), branch, "s3cret", builders, new PrintWriter(new StringWriter()));
+        webhook.deliver("push", sign(push, "s3cret"), push, "s3cret", builders, new PrintWriter(new StringWriter()));
+        StringWriter text = new StringWriter();
+        assertThat(webhook.deliver("create", sign(create, "s3cret"), create, "s3cret", builders,
+                new PrintWriter(text, true)), is(equalTo(202)));
+        assertThat(text.toString().trim(), is(equalTo("The release of agubler/changelog tag 1.2.0 is already queued for generation")));
+        blocked.countDown();
+
+        assertThat(done.await(5, TimeUnit.SECONDS), is(true));
+        Thread.sleep(100);
+        assertThat(precomputed, is(equalTo(Arrays.asList(
+                "agubler/changelog branch integration at 9d8c7b6a5f4e3d2c1b0a99887766554433221100",
+                "agubler/changelog tag 1.2.0"))));
+    }
+
+    @Test
+    public void testSignatureVerified() throws Exception {
+        byte[] payload = payload("push-tag.json");
+        String signature = sign(payload, "s3cret");
+        List<GithubChangeLogBuilder> builders = Collections.emptyList();
+
+        assertThat(webhook.deliver("push", signature, payload, "s3cret", builders, new PrintWriter(new StringWriter())),
+                is(equalTo(202)));
+        assertThat(webhook.deliver("push", signature, payload, "other", builders, new PrintWriter(new StringWriter())),
+                is(equalTo(403)));
+        assertThat(webhook.deliver("push", null, payload, "s3cret", builders, new PrintWriter(new StringWriter())),
+                is(equalTo(403)));
+    }
+
+    @Test
+    public void testDeliveriesRefusedWithoutSecret() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        List<GithubChangeLogBuilder> builders = Arrays.asList(builder("changelog", null, "", done));
+        byte[] payload = payload("push-tag.json");
+
+        assertThat(webhook.deliver("push", null, payload, null, builders, new PrintWriter(new StringWriter())),
+                is(equalTo(403)));
+        assertThat(webhook.deliver("push", sign(payload, "s3cret"), payload, "", builders, new PrintWriter(new StringWriter())),
+                is(equalTo(403)));
+        assertThat(done.await(100, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test
+    public void testInvalidPayloadRejected() throws Exception {
+        List<GithubChangeLogBuilder> builders = Collections.emptyList();
+        byte[] invalid = "{\"zen\":1}".getBytes("UTF-8");
+        byte[] ping = payload("ping.json");
+
+        assertThat(webhook.deliver("push", sign(invalid, "s3cret"), invalid, "s3cret", builders,
+                new PrintWriter(new StringWriter())), is(equalTo(400)));
+        assertThat(webhook.deliver("ping", sign(ping, "s3cret"), ping, "s3cret", builders,
+                new PrintWriter(new StringWriter())), is(equalTo(200)));
+    }
+}
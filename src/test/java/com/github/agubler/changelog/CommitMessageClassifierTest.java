@@ -0,0 +1,75 @@
+package com.github.agubler.changelog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CommitMessageClassifierTest {
+
+    private CommitMessageClassifier classifier = new CommitMessageClassifier(true, "https://jira.example.com");
+
+    @Test
+    public void testClassifyPullRequestMerge() {
+        ChangeLogEntry entry = classifier.classify("Merge pull request #42 from agubler/feature\n\nAdd the ABC-12 feature\n\nMore detail");
+        assertThat(entry.getNumber(), is(equalTo("42")));
+        assertThat(entry.getTitle(), is(equalTo("Add the ABC-12 feature")));
+        assertThat(entry.getJiraKeys(), is(equalTo(Arrays.asList("ABC-12"))));
+    }
+
+    @Test
+    public void testClassifyMergeWithoutTitle() {
+        ChangeLogEntry entry = classifier.classify("Merge pull request #7 from agubler/feature");
+        assertThat(entry.getNumber(), is(equalTo("7")));
+        assertThat(entry.getTitle(), is(equalTo("")));
+        assertThat(entry.getJiraKeys(), is(equalTo(Collections.<String>emptyList())));
+    }
+
+    @Test
+    public void testClassifyOtherCommits() {
+        assertThat(classifier.classify("Fix the build"), is(nullValue()));
+        assertThat(classifier.classify("Merge branch 'master' into integration\n\nConflicts"), is(nullValue()));
+    }
+
+    @Test
+    public void testWholeJiraKeysOnly() {
+        assertThat(classifier.createEntry("1", "Add the ABCD-12 feature").getJiraKeys(), is(equalTo(Arrays.asList("ABCD-12"))));
+        assertThat(classifier.getJiraKeys("Add the ABCD-12 feature"), is(equalTo(Arrays.asList("ABCD-12"))));
+    }
+
+    @Test
+    public void testWholeJiraKeysLinkedOnly() {
+        //the keys linked are the keys looked up
+        assertThat(classifier.linkJiraReferences("Add the ABCD-12 feature, read the files as utf-8"), is(equalTo(
+                "Add the [ABCD-12](https://jira.example.com/browse/ABCD-12) feature, read the files as utf-8")));
+    }
+
+    @Test
+    public void testNoJiraKeysInOtherWords() {
+        assertThat(classifier.createEntry("1", "Read the files as utf-8").getJiraKeys(), is(equalTo(Collections.<String>emptyList())));
+        assertThat(classifier.getJiraKeys("Read the files as utf-8"), is(equalTo(Collections.<String>emptyList())));
+    }
+
+    @Test
+    public void testLinkJiraKey() throws Exception {
+        StringBuilder linked = new StringBuilder();
+        classifier.linkJiraKey("ABCD-12", linked);
+        assertThat(linked.toString(), is(equalTo("[ABCD-12](https://jira.example.com/browse/ABCD-12)")));
+    }
+
+    @Test
+    public void testLinkEachJiraKey() {
+        assertThat(classifier.linkJiraReferences("ABC-1 and DEF-22 fixed"), is(equalTo(
+                "[ABC-1](https://jira.example.com/browse/ABC-1) and [DEF-22](https://jira.example.com/browse/DEF-22) fixed")));
+    }
+
+    @Test
+    public void testNoLinksWhenDisabled() {
+        assertThat(new CommitMessageClassifier(false, null).linkJiraReferences("ABC-1 fixed"), is(equalTo("ABC-1 fixed")));
+    }
+}
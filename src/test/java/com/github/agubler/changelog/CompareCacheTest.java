@@ -0,0 +1,74 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CompareCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RepositoryId repository = new RepositoryId("agubler", "changelog");
+
+    @Test
+    public void testCacheMiss() throws Exception {
+        CompareCache compareCache = new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE);
+        compareCache.load();
+        assertThat(compareCache.get(repository, "a1", "b2"), is(nullValue()));
+        assertThat(compareCache.getMisses(), is(equalTo(1)));
+        assertThat(compareCache.getHits(), is(equalTo(0)));
+    }
+
+    @Test
+    public void testCacheSurvivesSave() throws Exception {
+        CompareCache compareCache = new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE);
+        compareCache.put(repository, "a1", "b2", release(1000L, "12", "Fix the thing"));
+        compareCache.save();
+
+        CompareCache reloaded = new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE);
+        reloaded.load();
+        ChangeLogRelease release = reloaded.get(repository, "a1", "b2");
+        assertThat(release.getDate(), is(equalTo(new Date(1000L))));
+        assertThat(release.getEntries().get(0).getNumber(), is(equalTo("12")));
+        assertThat(release.getEntries().get(0).getTitle(), is(equalTo("Fix the thing")));
+        assertThat(reloaded.getHits(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testCacheKeyedByRepository() throws Exception {
+        CompareCache compareCache = new CompareCache(folder.getRoot(), CompareCache.DEFAULT_MAX_SIZE);
+        compareCache.put(repository, "a1", "b2", release(1000L, "12", "Fix the thing"));
+        assertThat(compareCache.get(new RepositoryId("agubler", "other"), "a1", "b2"), is(nullValue()));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        CompareCache compareCache = new CompareCache(folder.getRoot(), 200);
+        compareCache.put(repository, "a1", "b2", release(1000L, "12", "Fix the thing"));
+        compareCache.put(repository, "b2", "c3", release(2000L, "13", "Fix another thing"));
+        compareCache.get(repository, "a1", "b2");
+        compareCache.save();
+
+        CompareCache reloaded = new CompareCache(folder.getRoot(), 200);
+        reloaded.load();
+        assertThat(reloaded.get(repository, "a1", "b2"), is(notNullValue()));
+        assertThat(reloaded.get(repository, "b2", "c3"), is(nullValue()));
+    }
+
+    private static ChangeLogRelease release(long date, String number, String title) {
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setDate(new Date(date));
+        release.getEntries().add(new ChangeLogEntry(number, title));
+        return release;
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.agubler.changelog;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.codec.binary.Base64;
+import org.eclipse.egit.github.core.RepositoryContents;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class FileContentsServiceTest {
+
+    private GitHubStubServer server;
+
+    private final List<String> bodies = new ArrayList<String>();
+
+    private final List<String> contentLengths = new ArrayList<String>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog/contents/CHANGELOG.md", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                contentLengths.add(exchange.getRequestHeaders().getFirst("Content-Length"));
+                bodies.add(read(exchange.getRequestBody()));
+                GitHubStubServer.respond(exchange, 200, "{}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/contents", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "[{\"type\":\"file\",\"name\":\"CHANGELOG.md\",\"path\":\"CHANGELOG.md\",\"sha\":\"c1\"}," +
+                        "{\"type\":\"dir\",\"name\":\"docs\",\"path\":\"docs\",\"sha\":\"d1\"}]");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testContentStreamedAsBase64() throws Exception {
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setTitle("1.0.1");
+        release.setDate(new Date(0));
+        //odd numbers of bytes and multi-byte characters exercise the base64 padding
+        release.getEntries().add(new ChangeLogEntry("12", "Fix the caf\u00e9 menu"));
+        release.getEntries().add(new ChangeLogEntry("11", "Add \"quoted\" titles"));
+        MarkdownRenderer renderer = new MarkdownRenderer("https://github.com/agubler/changelog/pull/", new CommitMessageClassifier(false, null));
+        StreamingContent content = renderer.changeLog(new ChangeLogMarker("1.0.1", "b2"), Arrays.asList(release), "\n###1.0.0 (date)\n");
+
+        GitHubFileContentRequest request = new GitHubFileContentRequest();
+        request.setMessage("Auto-generated Change Log from Build");
+        request.setBranch("master");
+        request.setSha("a\"1");
+        new FileContentsService(server.createClient()).createOrUpdateFile(new RepositoryId("agubler", "changelog"), "CHANGELOG.md", request, content);
+
+        StringWriter expected = new StringWriter();
+        content.writeTo(expected);
+        JsonObject json = new JsonParser().parse(bodies.get(0)).getAsJsonObject();
+        assertThat(new String(Base64.decodeBase64(json.get("content").getAsString()), "UTF-8"), is(equalTo(expected.toString())));
+        assertThat(json.get("sha").getAsString(), is(equalTo("a\"1")));
+        assertThat(json.get("branch").getAsString(), is(equalTo("master")));
+        assertThat(Integer.parseInt(contentLengths.get(0)), is(equalTo(bodies.get(0).getBytes("UTF-8").length)));
+    }
+
+    @Test
+    public void testLargeFileCommittedThroughGitData() throws Exception {
+        final List<String> refUpdates = new ArrayList<String>();
+        server.handle("/repos/agubler/changelog/git", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath().substring((GitHubStubServer.API_PREFIX + "/repos/agubler/changelog/git").length());
+                String body = read(exchange.getRequestBody());
+                if (path.equals("/refs/heads/master") && "GET".equals(exchange.getRequestMethod())) {
+                    //the branch moves after it is first read
+                    String head = refUpdates.isEmpty() ? "p1" : "p2";
+                    GitHubStubServer.respond(exchange, 200, "{\"ref\":\"refs/heads/master\",\"object\":{\"sha\":\"" + head + "\",\"type\":\"commit\"}}");
+                } else if (path.equals("/refs/heads/master")) {
+                    refUpdates.add(body);
+                    GitHubStubServer.respond(exchange, refUpdates.size() == 1 ? 422 : 200, refUpdates.size() == 1 ?
+                            "{\"message\":\"Update is not a fast forward\"}" : "{\"ref\":\"refs/heads/master\",\"object\":{\"sha\":\"c2\"}}");
+                } else if (path.startsWith("/commits/")) {
+                    GitHubStubServer.respond(exchange, 200, "{\"sha\":\"" + path.substring("/commits/".length()) + "\",\"tree\":{\"sha\":\"t1\"}}");
+                } else if (path.equals("/commits")) {
+                    bodies.add(body);
+                    GitHubStubServer.respond(exchange, 201, "{\"sha\":\"c" + bodies.size() + "\"}");
+                } else if (path.equals("/trees")) {
+                    GitHubStubServer.respond(exchange, 201, "{\"sha\":\"t2\"}");
+                } else {
+                    bodies.add(body);
+                    GitHubStubServer.respond(exchange, 201, "{\"sha\":\"b1\"}");
+                }
+            }
+        });
+
+        GitHubFileContentRequest request = new GitHubFileContentRequest();
+        request.setMessage("Auto-generated Change Log from Build");
+        request.setBranch("master");
+        FileContentsService service = new FileContentsService(server.createClient());
+        service.setGitDataThreshold(4);
+        service.createOrUpdateFile(new RepositoryId("agubler", "changelog"), "CHANGELOG.md", request, text("caf\u00e9 changes\n"));
+
+        JsonObject blob = new JsonParser().parse(bodies.get(0)).getAsJsonObject();
+        assertThat(new String(Base64.decodeBase64(blob.get("content").getAsString()), "UTF-8"), is(equalTo("caf\u00e9 changes\n")));
+        assertThat(blob.get("encoding").getAsString(), is(equalTo("base64")));
+        //the commit is rebuilt on the new head of the branch, the blob is not sent again
+        assertThat(bodies.size(), is(equalTo(3)));
+        assertThat(new JsonParser().parse(bodies.get(2)).getAsJsonObject().get("parents").getAsJsonArray().get(0).getAsString(), is(equalTo("p2")));
+        assertThat(refUpdates.size(), is(equalTo(2)));
+        assertThat(new JsonParser().parse(refUpdates.get(1)).getAsJsonObject().get("sha").getAsString(), is(equalTo("c3")));
+    }
+
+    @Test
+    public void testBlobShaMatchesGit() throws Exception {
+        //shas from git hash-object, the length in the blob header counts utf-8 bytes
+        assertThat(FileContentsService.blobSha(text("hello\n")), is(equalTo("ce013625030ba8dba906f756967f9e9ca394464a")));
+        assertThat(FileContentsService.blobSha(text("caf\u00e9\n")), is(equalTo("572eb43fe8e34fb87d01c69e01151ff696022924")));
+    }
+
+    @Test
+    public void testMeasuredContentRenderedOncePerUse() throws Exception {
+        final AtomicInteger renders = new AtomicInteger();
+        FileContentsService.MeasuredContent content = FileContentsService.measure(new StreamingContent() {
+            public void writeTo(Writer writer) throws IOException {
+                renders.incrementAndGet();
+                writer.write("caf\u00e9 changes\n");
+            }
+        });
+        assertThat(content.getSha(), is(equalTo(content.getSha())));
+
+        GitHubFileContentRequest request = new GitHubFileContentRequest();
+        request.setMessage("Auto-generated Change Log from Build");
+        new FileContentsService(server.createClient()).createOrUpdateFile(new RepositoryId("agubler", "changelog"), "CHANGELOG.md", request, content);
+
+        //counted, hashed and sent
+        assertThat(renders.get(), is(equalTo(3)));
+        assertThat(content.getLength(), is(equalTo(14L)));
+        assertThat(Integer.parseInt(contentLengths.get(0)), is(equalTo(bodies.get(0).getBytes("UTF-8").length)));
+    }
+
+    @Test
+    public void testFileMetadataFromDirectoryListing() throws Exception {
+        FileContentsService service = new FileContentsService(server.createClient());
+        RepositoryContents metadata = service.getFileMetadata(new RepositoryId("agubler", "changelog"), "CHANGELOG.md", "master");
+
+        assertThat(metadata.getSha(), is(equalTo("c1")));
+        assertThat(metadata.getContent(), is(nullValue()));
+        assertThat(server.getRequests().get(0).getRequestURI().getQuery(), is(equalTo("ref=master")));
+        assertThat(service.getFileMetadata(new RepositoryId("agubler", "changelog"), "docs", "master"), is(nullValue()));
+    }
+
+    @Test
+    public void testFileMetadataOfMissingDirectory() throws Exception {
+        server.handle("/repos/agubler/changelog/contents/missing", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/contents/broken", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 500, "{\"message\":\"Server Error\"}");
+            }
+        });
+        FileContentsService service = new FileContentsService(server.createClient());
+
+        assertThat(service.getFileMetadata(new RepositoryId("agubler", "changelog"), "missing/CHANGELOG.md", "master"), is(nullValue()));
+        try {
+            service.getFileMetadata(new RepositoryId("agubler", "changelog"), "broken/CHANGELOG.md", "master");
+            fail("a failure other than a missing directory is not taken for a missing change log");
+        } catch (RequestException e) {
+            assertThat(e.getStatus(), is(equalTo(500)));
+        }
+    }
+
+    private static StreamingContent text(final String text) {
+        return new StreamingContent() {
+            public void writeTo(Writer writer) throws IOException {
+                writer.write(text);
+            }
+        };
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toString("UTF-8");
+    }
+}
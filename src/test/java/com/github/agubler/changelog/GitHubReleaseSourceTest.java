@@ -0,0 +1,241 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class GitHubReleaseSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GitHubStubServer server;
+
+    private Repository repository;
+
+    private GitHubReleaseSource releaseSource;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.start();
+        repository = new Repository();
+        repository.setName("changelog");
+        repository.setOwner(new User().setLogin("agubler"));
+        releaseSource = new GitHubReleaseSource(server.createClient(), repository, new CommitMessageClassifier(false, null));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testReleaseFromCompare() throws Exception {
+        server.handle("/repos/agubler/changelog/compare/a0...c2", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "{\"total_commits\":2,\"commits\":[" + commit("b1", "Merge pull request #1 from a/b\\n\\nFirst") +
+                        "," + commit("c2", "Merge pull request #2 from a/b\\n\\nSecond") + "],\"files\":[{\"filename\":\"README.md\"}]}");
+            }
+        });
+
+        ChangeLogRelease release = releaseSource.getRelease("a0", "c2");
+        assertThat(numbers(release), is(equalTo(Arrays.asList("1", "2"))));
+        assertThat(server.getRequests().size(), is(equalTo(1)));
+    }
+
+    private void handleAnnotatedTags() {
+        server.handle("/repos/agubler/changelog/git/matching-refs/tags/v1", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "[{\"ref\":\"refs/tags/v1.0.0\",\"object\":{\"sha\":\"a1\",\"type\":\"commit\"}}," +
+                        "{\"ref\":\"refs/tags/v1.1.0\",\"object\":{\"sha\":\"t2\",\"type\":\"tag\"}}," +
+                        "{\"ref\":\"refs/tags/v1.2.0\",\"object\":{\"sha\":\"t3\",\"type\":\"tag\"}}]");
+            }
+        });
+        server.handle("/repos/agubler/changelog/git/tags", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String sha = exchange.getRequestURI().getPath().endsWith("/t2") ? "b2" : "c3";
+                GitHubStubServer.respond(exchange, 200, "{\"object\":{\"sha\":\"" + sha + "\",\"type\":\"commit\"}}");
+            }
+        });
+    }
+
+    @Test
+    public void testMatchingTagsPeeled() throws Exception {
+        handleAnnotatedTags();
+        releaseSource.setConcurrency(2);
+
+        List<RepositoryTag> tags = releaseSource.getTags("v1");
+        assertThat(tags.size(), is(equalTo(2)));
+        assertThat(tags.get(0).getName(), is(equalTo("v1.0.0")));
+        assertThat(tags.get(0).getCommit().getSha(), is(equalTo("a1")));
+        assertThat(tags.get(1).getName(), is(equalTo("v1.1.0")));
+        assertThat(tags.get(1).getCommit().getSha(), is(equalTo("b2")));
+        assertThat(tags.get(2).getName(), is(equalTo("v1.2.0")));
+        assertThat(tags.get(2).getCommit().getSha(), is(equalTo("c3")));
+    }
+
+    @Test
+    public void testPeeledTagsCached() throws Exception {
+        handleAnnotatedTags();
+        TagObjectCache cache = new TagObjectCache(folder.getRoot(), TagObjectCache.DEFAULT_MAX_SIZE);
+        releaseSource.setTagObjectCache(cache);
+        releaseSource.getTags("v1");
+        cache.save();
+
+        TagObjectCache reloaded = new TagObjectCache(folder.getRoot(), TagObjectCache.DEFAULT_MAX_SIZE);
+        reloaded.load();
+        releaseSource = new GitHubReleaseSource(server.createClient(), repository, new CommitMessageClassifier(false, null));
+        releaseSource.setTagObjectCache(reloaded);
+        List<RepositoryTag> tags = releaseSource.getTags("v1");
+
+        assertThat(tags.get(1).getCommit().getSha(), is(equalTo("b2")));
+        assertThat(tags.get(2).getCommit().getSha(), is(equalTo("c3")));
+        //the refs are listed again, the tag objects are not read again
+        assertThat(server.getRequests().size(), is(equalTo(4)));
+        assertThat(reloaded.getHits(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testBranchResolvedByRef() throws Exception {
+        server.handle("/repos/agubler/changelog/git/ref/heads/integration", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "{\"ref\":\"refs/heads/integration\",\"object\":{\"sha\":\"c3\",\"type\":\"commit\"}}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/git/ref/heads/missing", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 404, "{\"message\":\"Not Found\"}");
+            }
+        });
+
+        assertThat(releaseSource.getBranchSha("integration"), is(equalTo("c3")));
+        assertThat(releaseSource.getBranchSha("missing"), is(nullValue()));
+    }
+
+    @Test
+    public void testLargeReleaseWalked() throws Exception {
+        server.handle("/repos/agubler/changelog/compare/a0...e4", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                //the compare is truncated to its first commit
+                GitHubStubServer.respond(exchange, 200, "{\"total_commits\":4,\"merge_base_commit\":" + commit("a0", "Initial commit") +
+                        ",\"commits\":[" + commit("b1", "Merge pull request #1 from a/b\\n\\nFirst") + "]}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/commits", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                if (query.contains("page=3")) {
+                    GitHubStubServer.respond(exchange, 500, "{\"message\":\"walked past the base\"}");
+                } else if (query.contains("page=2")) {
+                    exchange.getResponseHeaders().set("Link", link(3));
+                    GitHubStubServer.respond(exchange, 200, "[" + commit("b1", "Merge pull request #1 from a/b\\n\\nFirst", "a0") + "," +
+                            commit("a0", "Initial commit") + "]");
+                } else {
+                    exchange.getResponseHeaders().set("Link", link(2));
+                    GitHubStubServer.respond(exchange, 200, "[" + commit("e4", "Merge pull request #3 from a/b\\n\\nThird", "d3") + "," +
+                            commit("d3", "Merge pull request #2 from a/b\\n\\nSecond", "c2") + "," + commit("c2", "Fix a typo", "b1") + "]");
+                }
+            }
+        });
+
+        ChangeLogRelease release = releaseSource.getRelease("a0", "e4");
+        assertThat(numbers(release), is(equalTo(Arrays.asList("1", "2", "3"))));
+        assertThat(server.getRequests().size(), is(equalTo(3)));
+        assertThat(server.getRequests().get(1).getRequestURI().getQuery().contains("sha=e4"), is(true));
+    }
+
+    @Test
+    public void testLargeReleaseWithOldBranchWalked() throws Exception {
+        final List<String> history = new ArrayList<String>();
+        for (int i = 260; i > 0; i--) {
+            String parent = i > 1 ? "m" + (i - 1) : "base";
+            String message = "Merge pull request #" + i + " from a/b\\n\\nChange " + i;
+            history.add(i == 130 ? commit("m" + i, message, parent, "s1") : commit("m" + i, message, parent));
+        }
+        //a branch forked before the base and merged into the release, its commit is dated before the base
+        history.add(commit("base", "Release 1.0.0", "old"));
+        history.add(commit("s1", "Merge pull request #500 from a/old\\n\\nOld change", "old"));
+        history.add(commit("old", "Initial commit"));
+        server.handle("/repos/agubler/changelog/compare/base...m260", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "{\"total_commits\":261,\"merge_base_commit\":" + commit("base", "Release 1.0.0") +
+                        ",\"commits\":[" + commit("s1", "Merge pull request #500 from a/old\\n\\nOld change") + "]}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/commits", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respondPage(exchange, history, 100);
+            }
+        });
+
+        List<String> numbers = numbers(releaseSource.getRelease("base", "m260"));
+        assertThat(numbers.size(), is(equalTo(261)));
+        assertThat(numbers.subList(0, 3), is(equalTo(Arrays.asList("500", "1", "2"))));
+        assertThat(numbers.get(260), is(equalTo("260")));
+        assertThat(server.getRequests().size(), is(equalTo(4)));
+    }
+
+    @Test
+    public void testIncompleteHistoryFails() throws Exception {
+        server.handle("/repos/agubler/changelog/compare/a0...c2", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 200, "{\"total_commits\":3,\"merge_base_commit\":" + commit("a0", "Initial commit") +
+                        ",\"commits\":[" + commit("b1", "Merge pull request #1 from a/b\\n\\nFirst") + "]}");
+            }
+        });
+        server.handle("/repos/agubler/changelog/commits", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respondPage(exchange, Arrays.asList(commit("c2", "Fix a typo", "b1"),
+                        commit("b1", "Merge pull request #1 from a/b\\n\\nFirst", "a0"), commit("a0", "Initial commit")), 100);
+            }
+        });
+
+        try {
+            releaseSource.getRelease("a0", "c2");
+            fail("a release missing commits is not returned");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is(equalTo("Unable to walk the history from c2 to a0: only 2 of the 3 commits found")));
+        }
+    }
+
+    private String link(int page) {
+        return "<http://localhost:" + server.getPort() + GitHubStubServer.API_PREFIX + "/repos/agubler/changelog/commits?sha=e4&per_page=100&page=" +
+                page + ">; rel=\"next\"";
+    }
+
+    private static String commit(String sha, String message, String... parents) {
+        StringBuilder parentShas = new StringBuilder();
+        for (String parent : parents) {
+            parentShas.append(parentShas.length() > 0 ? "," : "").append("{\"sha\":\"").append(parent).append("\"}");
+        }
+        return "{\"sha\":\"" + sha + "\",\"commit\":{\"message\":\"" + message + "\",\"committer\":{\"date\":\"2014-07-21T10:00:00Z\"}}," +
+                "\"parents\":[" + parentShas + "]}";
+    }
+
+    private static List<String> numbers(ChangeLogRelease release) {
+        List<String> numbers = new ArrayList<String>();
+        for (ChangeLogEntry entry : release.getEntries()) {
+            numbers.add(entry.getNumber());
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the github api, requests are answered by the handlers registered for a path. Every response can
+ * be delayed to simulate the latency of the api, and a rate limit can be enforced with the headers github sends.
+ */
+public class GitHubStubServer {
+
+    /**
+     * The path prefix of the api on a github enterprise host
+     */
+    public static final String API_PREFIX = "/api/v3";
+
+    private final HttpServer server;
+
+    private final List<HttpExchange> requests = Collections.synchronizedList(new ArrayList<HttpExchange>());
+
+    /**
+     * The name prefix of the handler threads
+     */
+    public static final String THREAD_NAME = "github-stub-server-";
+
+    /**
+     * The handler threads, so requests are answered concurrently as github does
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * The bytes allocated by the handlers, so they can be told apart from the allocations of the client
+     */
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * The delay before each response in milliseconds
+     */
+    private volatile long latency;
+
+    /**
+     * The requests allowed per rate limit window, -1 for no rate limit
+     */
+    private int rateLimit = -1;
+
+    private long rateLimitWindow;
+
+    private int rateLimitRemaining;
+
+    private long rateLimitReset;
+
+    static {
+        //without it the responses are held back by nagle's algorithm, adding 40ms to every request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public GitHubStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final AtomicInteger threads = new AtomicInteger();
+        executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, THREAD_NAME + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(executorService);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Delays every response
+     */
+    public void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Limits the requests answered in each window of time, further requests are refused with a 403 until the window
+     * resets. Github reports the reset time in seconds, so the window is a whole number of seconds.
+     */
+    public synchronized void setRateLimit(int rateLimit, int windowSeconds) {
+        this.rateLimit = rateLimit;
+        this.rateLimitWindow = windowSeconds * 1000L;
+        this.rateLimitRemaining = rateLimit;
+        this.rateLimitReset = 0;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns a client for the stub server
+     */
+    public ChangeLogGitHubClient createClient() {
+        return new ChangeLogGitHubClient("localhost", getPort(), "http");
+    }
+
+    /**
+     * Registers the handler for the api path, the handler also answers any sub path
+     */
+    public void handle(String path, final HttpHandler handler) {
+        server.createContext(API_PREFIX + path, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.add(exchange);
+                long allocated = threadAllocatedBytes();
+                try {
+                    if (latency > 0) {
+                        Thread.sleep(latency);
+                    }
+                    if (!rateLimited(exchange)) {
+                        handler.handle(exchange);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.close();
+                } finally {
+                    allocatedBytes.addAndGet(threadAllocatedBytes() - allocated);
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts the request against the rate limit, setting the rate limit headers
+     *
+     * @return true if the request was refused
+     */
+    private boolean rateLimited(HttpExchange exchange) throws IOException {
+        int remaining;
+        long reset;
+        synchronized (this) {
+            if (rateLimit < 0) {
+                return false;
+            }
+            long now = System.currentTimeMillis();
+            if (now >= rateLimitReset) {
+                rateLimitRemaining = rateLimit;
+                //the window ends on a whole second, as github reports it
+                rateLimitReset = (now + rateLimitWindow) / 1000L * 1000L + 1000L;
+            }
+            remaining = rateLimitRemaining > 0 ? --rateLimitRemaining : -1;
+            reset = rateLimitReset;
+        }
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(Math.max(remaining, 0)));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(reset / 1000L));
+        if (remaining < 0) {
+            respond(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the bytes allocated by the handlers since the server was created, -1 if the jvm does not measure them
+     */
+    public long getAllocatedBytes() {
+        return threadAllocatedBytes() < 0 ? -1 : allocatedBytes.get();
+    }
+
+    private static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the requests received, in order
+     */
+    public List<HttpExchange> getRequests() {
+        return requests;
+    }
+
+    /**
+     * Writes the response body with the status code, gzip compressed if the client accepts it as github does
+     */
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = body.getBytes("UTF-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(bytes);
+            gzip.close();
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a page of the items as a json array, with the Link header github sends when there are further pages. The
+     * page and per_page query parameters are honoured, per_page up to the maximum page size.
+     */
+    public static void respondPage(HttpExchange exchange, List<String> items, int maxPageSize) throws IOException {
+        Map<String, String> params = queryParams(exchange);
+        int page = params.containsKey("page") ? Integer.parseInt(params.get("page")) : 1;
+        int pageSize = params.containsKey("per_page") ? Math.min(Integer.parseInt(params.get("per_page")), maxPageSize) : Math.min(30, maxPageSize);
+        int lastPage = Math.max(1, (items.size() + pageSize - 1) / pageSize);
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = (page - 1) * pageSize; i < Math.min(page * pageSize, items.size()); i++) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append(items.get(i));
+        }
+        body.append(']');
+
+        if (page < lastPage) {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            exchange.getResponseHeaders().set("Link", "<" + pageUrl(exchange, host, page + 1) + ">; rel=\"next\", <" +
+                    pageUrl(exchange, host, lastPage) + ">; rel=\"last\"");
+        }
+        respond(exchange, 200, body.toString());
+    }
+
+    private static String pageUrl(HttpExchange exchange, String host, int page) {
+        StringBuilder url = new StringBuilder("http://").append(host).append(exchange.getRequestURI().getRawPath()).append('?');
+        for (Map.Entry<String, String> param : queryParams(exchange).entrySet()) {
+            if (!"page".equals(param.getKey())) {
+                url.append(param.getKey()).append('=').append(param.getValue()).append('&');
+            }
+        }
+        return url.append("page=").append(page).toString();
+    }
+
+    /**
+     * Returns the raw query parameters of the request
+     */
+    public static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int separator = param.indexOf('=');
+                if (separator > 0) {
+                    params.put(param.substring(0, separator), param.substring(separator + 1));
+                }
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+public class GitHubTransportTest {
+
+    private GitHubStubServer server;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private String description;
+
+    @Before
+    public void setUp() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("Change ").append(i).append(' ');
+        }
+        description = text.toString();
+
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()));
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inFlight.decrementAndGet();
+                GitHubStubServer.respond(exchange, 200, "{\"name\":\"changelog\",\"description\":\"" + description + "\"}");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testCompressedResponseDecompressed() throws Exception {
+        ChangeLogMetrics metrics = new ChangeLogMetrics();
+        ChangeLogGitHubClient client = server.createClient().setTransport(new GitHubTransport()).setMetrics(metrics);
+
+        Repository repository = new RepositoryService(client).getRepository(new RepositoryId("agubler", "changelog"));
+
+        assertThat(repository.getDescription(), is(equalTo(description)));
+        assertThat(server.getRequests().get(0).getResponseHeaders().getFirst("Content-Encoding"), is(equalTo("gzip")));
+        assertThat(metrics.getEndpoints().get(0).getBytesReceived(), is(lessThan((long) description.length())));
+    }
+
+    @Test
+    public void testConnectionReused() throws Exception {
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setTransport(new GitHubTransport()));
+        for (int i = 0; i < 3; i++) {
+            repositoryService.getRepository(new RepositoryId("agubler", "changelog"));
+        }
+
+        HashSet<Integer> ports = new HashSet<Integer>();
+        for (HttpExchange exchange : server.getRequests()) {
+            ports.add(exchange.getRemoteAddress().getPort());
+        }
+        assertThat(ports.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testRequestsInFlightBounded() throws Exception {
+        GitHubTransport transport = new GitHubTransport();
+        transport.setPoolSize(2);
+        final RepositoryService repositoryService = new RepositoryService(server.createClient().setTransport(transport));
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 6; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        repositoryService.getRepository(new RepositoryId("agubler", "changelog"));
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(server.getRequests().size(), is(equalTo(6)));
+        assertThat(maxInFlight.get(), is(equalTo(2)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.agubler.changelog;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class JiraIssueServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JiraStubServer jira;
+
+    @Before
+    public void setUp() throws Exception {
+        jira = new JiraStubServer();
+        for (int i = 1; i <= 120; i++) {
+            jira.addIssue("ABC-" + i, "Issue " + i, "Story", "Done");
+        }
+        jira.start();
+    }
+
+    @After
+    public void tearDown() {
+        jira.stop();
+    }
+
+    @Test
+    public void testIssuesFetchedInBatches() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 1; i <= 120; i++) {
+            keys.add("ABC-" + i);
+        }
+        keys.add("XYZ-1");
+        Map<String, JiraIssue> issues = new HashMap<String, JiraIssue>();
+        JiraIssueService service = new JiraIssueService(jira.getUrl() + "/");
+        service.getIssues(keys, issues);
+
+        assertThat(service.getRequests(), is(equalTo(3)));
+        assertThat(jira.getSearches().get(0).startsWith("key in (\"ABC-1\",\"ABC-2\","), is(true));
+        assertThat(issues.size(), is(equalTo(121)));
+        JiraIssue issue = issues.get("ABC-120");
+        assertThat(issue.getSummary(), is(equalTo("Issue 120")));
+        assertThat(issue.getType(), is(equalTo("Story")));
+        assertThat(issue.getStatus(), is(equalTo("Done")));
+        //an issue that does not exist is returned without its details, so it is cached too
+        assertThat(issues.get("XYZ-1").isFound(), is(false));
+    }
+
+    @Test
+    public void testIssuesFetchedBeforeFailureKept() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 1; i <= 60; i++) {
+            keys.add("ABC-" + i);
+        }
+        final Map<String, JiraIssue> issues = new HashMap<String, JiraIssue>() {
+            @Override
+            public JiraIssue put(String key, JiraIssue issue) {
+                //jira goes down after the first batch
+                jira.setStatus(503);
+                return super.put(key, issue);
+            }
+        };
+        try {
+            new JiraIssueService(jira.getUrl()).getIssues(keys, issues);
+            throw new AssertionError("Expected the second batch to fail");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is(equalTo("Jira search failed with status 503")));
+        }
+        assertThat(issues.size(), is(equalTo(JiraIssueService.BATCH_SIZE)));
+    }
+
+    @Test
+    public void testCachedIssuesExpire() throws Exception {
+        JiraIssueCache cache = new JiraIssueCache(folder.getRoot(), JiraIssueCache.DEFAULT_MAX_SIZE, 60);
+        cache.putIssue(new JiraIssue(jira.getUrl(), "ABC-1", "Issue 1", "Story", "Done", System.currentTimeMillis()));
+        cache.putIssue(new JiraIssue(jira.getUrl(), "ABC-2", "Issue 2", "Bug", "Open",
+                System.currentTimeMillis() - 61 * 60 * 1000L));
+        cache.save();
+
+        JiraIssueCache reloaded = new JiraIssueCache(folder.getRoot(), JiraIssueCache.DEFAULT_MAX_SIZE, 60);
+        reloaded.load();
+        assertThat(reloaded.getIssue(jira.getUrl(), "ABC-1").getSummary(), is(equalTo("Issue 1")));
+        assertThat(reloaded.getIssue(jira.getUrl(), "ABC-2"), is(nullValue()));
+        assertThat(reloaded.getIssue("https://other.jira", "ABC-1"), is(nullValue()));
+        assertThat(Arrays.asList(reloaded.getHits(), reloaded.getMisses()), is(equalTo(Arrays.asList(1, 2))));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local jira answering the "key in (...)" searches of the jira issue service, from the issues added to it
+ */
+public class JiraStubServer {
+
+    private static final Pattern QUOTED_KEY = Pattern.compile("\"([^\"]+)\"");
+
+    private final HttpServer server;
+
+    /**
+     * The issues as the json jira returns for them, by key
+     */
+    private final Map<String, String> issues = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The JQL of the searches received, in order
+     */
+    private final List<String> searches = new CopyOnWriteArrayList<String>();
+
+    private volatile int status = 200;
+
+    public JiraStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/rest/api/2/search", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String jql = URLDecoder.decode(GitHubStubServer.queryParams(exchange).get("jql"), "UTF-8");
+                searches.add(jql);
+                if (status != 200) {
+                    GitHubStubServer.respond(exchange, status, "{\"errorMessages\":[\"Unavailable\"]}");
+                    return;
+                }
+                StringBuilder body = new StringBuilder("{\"issues\":[");
+                Matcher matcher = QUOTED_KEY.matcher(jql);
+                int found = 0;
+                while (matcher.find()) {
+                    String issue = issues.get(matcher.group(1));
+                    if (issue != null) {
+                        body.append(found++ > 0 ? "," : "").append(issue);
+                    }
+                }
+                GitHubStubServer.respond(exchange, 200, body.append("],\"total\":").append(found).append('}').toString());
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Adds an issue to the searches
+     */
+    public JiraStubServer addIssue(String key, String summary, String type, String status) {
+        issues.put(key, "{\"key\":\"" + key + "\",\"fields\":{\"summary\":\"" + summary + "\",\"issuetype\":{\"name\":\"" +
+                type + "\"},\"status\":{\"name\":\"" + status + "\"}}}");
+        return this;
+    }
+
+    /**
+     * Answers every search with the status, 200 to answer them again
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns the JQL of the searches received, in order
+     */
+    public List<String> getSearches() {
+        return searches;
+    }
+}
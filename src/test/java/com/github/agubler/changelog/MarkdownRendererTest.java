@@ -0,0 +1,42 @@
+package com.github.agubler.changelog;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class MarkdownRendererTest {
+
+    private MarkdownRenderer renderer = new MarkdownRenderer("https://github.com/agubler/changelog/pull/", new CommitMessageClassifier(false, null));
+
+    @Test
+    public void testRenderChangeLog() throws Exception {
+        ChangeLogRelease release = new ChangeLogRelease();
+        release.setTitle("1.0.1");
+        release.setDate(new Date(0));
+        release.getEntries().add(new ChangeLogEntry("12", "Second change"));
+        release.getEntries().add(new ChangeLogEntry("11", "First change"));
+
+        StringWriter writer = new StringWriter();
+        renderer.render(writer, new ChangeLogMarker("1.0.1", "b2"), Arrays.asList(release), "\n###1.0.0 (date)\n");
+
+        assertThat(writer.toString(), is(equalTo("## Change Log\n" + new ChangeLogMarker("1.0.1", "b2") + "\n" +
+                MarkdownRenderer.releaseTitle("1.0.1") + new Date(0) + ")\n" +
+                "- [#12](https://github.com/agubler/changelog/pull/12) Second change\n" +
+                "- [#11](https://github.com/agubler/changelog/pull/11) First change\n" +
+                "\n###1.0.0 (date)\n")));
+    }
+
+    @Test
+    public void testRenderWithoutReleases() throws Exception {
+        StringWriter writer = new StringWriter();
+        renderer.changeLog(null, Collections.<ChangeLogRelease>emptyList(), "").writeTo(writer);
+        assertThat(writer.toString(), is(equalTo("## Change Log\n")));
+    }
+}
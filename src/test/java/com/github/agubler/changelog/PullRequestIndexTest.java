@@ -0,0 +1,108 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PullRequestIndexTest {
+
+    private static final RepositoryId REPOSITORY = new RepositoryId("agubler", "changelog");
+
+    private static final String PAGE_1 = "[" +
+            pullRequest(4, "Squashed ABC-4 change", "d4", "2014-07-04T10:00:00Z", "2014-07-04T10:00:00Z", "\"feature\"") + "," +
+            pullRequest(3, "Abandoned change", "c3", null, "2014-07-03T10:00:00Z", "") + "]";
+
+    private static final String PAGE_2 = "[" +
+            pullRequest(2, "Rebased change", "b2", "2014-07-02T10:00:00Z", "2014-07-02T10:00:00Z", "\"bug\",\"ui\"") + "]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GitHubStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.handle("/repos/agubler/changelog/pulls", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (exchange.getRequestURI().getQuery().contains("page=2")) {
+                    GitHubStubServer.respond(exchange, 200, PAGE_2);
+                } else {
+                    exchange.getResponseHeaders().set("Link", "<http://localhost:" + server.getPort() + GitHubStubServer.API_PREFIX +
+                            "/repos/agubler/changelog/pulls?state=closed&sort=updated&direction=desc&per_page=100&page=2>; rel=\"next\"");
+                    GitHubStubServer.respond(exchange, 200, PAGE_1);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testMergedPullRequestsIndexed() throws Exception {
+        PullRequestIndex index = new PullRequestIndex(folder.getRoot(), REPOSITORY, PullRequestIndex.DEFAULT_MAX_SIZE);
+        index.update(server.createClient());
+
+        assertThat(index.getFetched(), is(equalTo(3)));
+        assertThat(server.getRequests().get(0).getRequestURI().getQuery(), containsString("sort=updated"));
+        Map<String, ChangeLogEntry> entries = index.getEntries(new CommitMessageClassifier(false, null));
+        assertThat(entries.size(), is(equalTo(2)));
+        assertThat(entries.get("d4").getNumber(), is(equalTo("4")));
+        assertThat(entries.get("d4").getJiraKeys(), is(equalTo(Arrays.asList("ABC-4"))));
+        assertThat(entries.get("b2").getLabels(), is(equalTo(Arrays.asList("bug", "ui"))));
+    }
+
+    @Test
+    public void testUpdateStopsAtLastUpdated() throws Exception {
+        PullRequestIndex index = new PullRequestIndex(folder.getRoot(), REPOSITORY, PullRequestIndex.DEFAULT_MAX_SIZE);
+        index.update(server.createClient());
+        index.save();
+
+        PullRequestIndex reloaded = new PullRequestIndex(folder.getRoot(), REPOSITORY, PullRequestIndex.DEFAULT_MAX_SIZE);
+        reloaded.load();
+        reloaded.update(server.createClient());
+
+        //the first page reaches the pull requests updated before the last update, so the second is never fetched
+        assertThat(server.getRequests().size(), is(equalTo(3)));
+        assertThat(reloaded.getFetched(), is(equalTo(1)));
+        assertThat(reloaded.getEntries(new CommitMessageClassifier(false, null)).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testClassifyBySha() throws Exception {
+        PullRequestIndex index = new PullRequestIndex(folder.getRoot(), REPOSITORY, PullRequestIndex.DEFAULT_MAX_SIZE);
+        index.update(server.createClient());
+        CommitMessageClassifier classifier = new CommitMessageClassifier(false, null,
+                index.getEntries(new CommitMessageClassifier(false, null)));
+
+        assertThat(classifier.classify("d4", "Squashed ABC-4 change (#4)").getTitle(), is(equalTo("Squashed ABC-4 change")));
+        assertThat(classifier.classify("e5", "Merge pull request #5 from agubler/feature\n\nMerged").getNumber(), is(equalTo("5")));
+        assertThat(classifier.classify("f6", "Fix a typo"), is(nullValue()));
+    }
+
+    private static String pullRequest(int number, String title, String mergeCommitSha, String mergedAt, String updatedAt, String labels) {
+        return "{\"number\":" + number + ",\"title\":\"" + title + "\",\"merge_commit_sha\":" +
+                (mergeCommitSha != null ? "\"" + mergeCommitSha + "\"" : "null") + ",\"merged_at\":" +
+                (mergedAt != null ? "\"" + mergedAt + "\"" : "null") + ",\"updated_at\":\"" + updatedAt + "\",\"labels\":[" +
+                labels.replaceAll("(\"[^\"]*\")", "{\"name\":$1}") + "]}";
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.eclipse.egit.github.core.service.RepositoryService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class RateLimitSchedulerTest {
+
+    private static final long NOW = 1000000000000L;
+
+    private static final String RESET = Long.toString(NOW / 1000 + 100);
+
+    private RateLimitScheduler scheduler = new RateLimitScheduler();
+
+    private GitHubStubServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GitHubStubServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testNoWaitWithPlentyRemaining() {
+        scheduler.update(200, "5000", "4000", RESET, null, NOW);
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(0L)));
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testRequestsSpreadWhenRunningLow() {
+        scheduler.setReserve(0);
+        scheduler.update(200, "5000", "10", RESET, null, NOW);
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(0L)));
+        //100 seconds until the reset shared between the 10 remaining requests
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(10000L)));
+    }
+
+    @Test
+    public void testWaitForResetWhenOnlyReserveLeft() {
+        scheduler.setReserve(100);
+        scheduler.update(200, "5000", "100", RESET, null, NOW);
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(100000L)));
+    }
+
+    @Test
+    public void testNotModifiedResponsesDoNotUseUpTheLimit() {
+        scheduler.setReserve(100);
+        scheduler.update(200, "5000", "150", RESET, null, NOW);
+        //a build of cache hits, github reports the same remaining count for every 304
+        for (int i = 0; i < 200; i++) {
+            assertThat(scheduler.reserveSlot(NOW), is(equalTo(0L)));
+            scheduler.update(304, "5000", "150", RESET, null, NOW);
+        }
+        assertThat(scheduler.getRemaining(), is(equalTo(150)));
+    }
+
+    @Test
+    public void testNewestResponseCorrectsTheCountUpward() {
+        scheduler.setReserve(0);
+        scheduler.update(200, "5000", "1000", RESET, null, NOW);
+        scheduler.reserveSlot(NOW);
+        scheduler.reserveSlot(NOW);
+        scheduler.reserveSlot(NOW);
+        assertThat(scheduler.getRemaining(), is(equalTo(997)));
+        //the response to the newest request, only one of the three used up the limit
+        scheduler.update(304, "5000", "999", RESET, null, NOW);
+        assertThat(scheduler.getRemaining(), is(equalTo(999)));
+    }
+
+    @Test
+    public void testRetryAfterHonoured() {
+        assertThat(scheduler.update(403, null, null, null, "30", NOW), is(equalTo(30000L)));
+        assertThat(scheduler.reserveSlot(NOW), is(equalTo(30000L)));
+    }
+
+    @Test
+    public void testForbiddenWithoutRateLimitNotRetried() {
+        assertThat(scheduler.update(403, "5000", "4000", RESET, null, NOW), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testRateLimitedRequestRetried() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        server.handle("/repos/agubler/changelog", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (calls.getAndIncrement() == 0) {
+                    exchange.getResponseHeaders().set("X-RateLimit-Limit", "5000");
+                    exchange.getResponseHeaders().set("X-RateLimit-Remaining", "0");
+                    exchange.getResponseHeaders().set("X-RateLimit-Reset", Long.toString(System.currentTimeMillis() / 1000));
+                    GitHubStubServer.respond(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                } else {
+                    exchange.getResponseHeaders().set("X-RateLimit-Limit", "5000");
+                    exchange.getResponseHeaders().set("X-RateLimit-Remaining", "4999");
+                    exchange.getResponseHeaders().set("X-RateLimit-Reset", Long.toString(System.currentTimeMillis() / 1000 + 3600));
+                    GitHubStubServer.respond(exchange, 200, "{\"name\":\"changelog\"}");
+                }
+            }
+        });
+
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setRateLimitScheduler(scheduler));
+        assertThat(repositoryService.getRepository(new RepositoryId("agubler", "changelog")).getName(), is(equalTo("changelog")));
+        assertThat(calls.get(), is(equalTo(2)));
+        assertThat(scheduler.getRetries(), is(equalTo(1)));
+        assertThat(scheduler.getRemaining(), is(greaterThan(4000)));
+    }
+
+    @Test
+    public void testSecondaryRateLimitRetried() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        server.handle("/repos/agubler/changelog", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                if (calls.getAndIncrement() == 0) {
+                    exchange.getResponseHeaders().set("Retry-After", "0");
+                    GitHubStubServer.respond(exchange, 429, "{\"message\":\"You have exceeded a secondary rate limit\"}");
+                } else {
+                    GitHubStubServer.respond(exchange, 200, "{\"name\":\"changelog\"}");
+                }
+            }
+        });
+
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setRateLimitScheduler(scheduler));
+        assertThat(repositoryService.getRepository(new RepositoryId("agubler", "changelog")).getName(), is(equalTo("changelog")));
+        assertThat(calls.get(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testForbiddenNotRetried() throws Exception {
+        server.handle("/repos/agubler/changelog", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                GitHubStubServer.respond(exchange, 403, "{\"message\":\"Must have admin rights to Repository.\"}");
+            }
+        });
+
+        RepositoryService repositoryService = new RepositoryService(server.createClient().setRateLimitScheduler(scheduler));
+        try {
+            repositoryService.getRepository(new RepositoryId("agubler", "changelog"));
+            fail("Expected the request to fail");
+        } catch (RequestException e) {
+            assertThat(e.getStatus(), is(equalTo(403)));
+        }
+        assertThat(server.getRequests().size(), is(equalTo(1)));
+    }
+}
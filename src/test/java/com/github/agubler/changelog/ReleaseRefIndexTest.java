@@ -0,0 +1,42 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TypedResource;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReleaseRefIndexTest {
+
+    @Test
+    public void testReleasesFilteredAndOrdered() {
+        ReleaseRefIndex index = new ReleaseRefIndex(Arrays.asList(tag("v1.0.0", "a1"), tag("v1.10.0", "c3"),
+                tag("v1.2.0-nightly", "n1"), tag("v1.2.0", "b2")), Pattern.compile("v[0-9.]+"));
+
+        assertThat(index.size(), is(equalTo(3)));
+        assertThat(index.getLatest().getName(), is(equalTo("v1.10.0")));
+        assertThat(index.indexOf("v1.2.0"), is(equalTo(1)));
+        assertThat(index.indexOf("v1.2.0-nightly"), is(equalTo(-1)));
+        assertThat(index.getBaseSha(1), is(equalTo("a1")));
+        assertThat(index.getBaseSha(2), is(nullValue()));
+    }
+
+    @Test
+    public void testMarkerFoundInIndex() {
+        ReleaseRefIndex index = new ReleaseRefIndex(Arrays.asList(tag("1.0.0", "a1"), tag("1.0.1", "b2")), null);
+
+        assertThat(new ChangeLogMarker("1.0.0", "a1").indexOf(index), is(equalTo(1)));
+        assertThat(new ChangeLogMarker("1.0.0", "d4").indexOf(index), is(equalTo(-1)));
+        assertThat(new ChangeLogMarker("0.9.0", "a1").indexOf(index), is(equalTo(-1)));
+    }
+
+    private static RepositoryTag tag(String name, String sha) {
+        return new RepositoryTag().setName(name).setCommit(new TypedResource().setSha(sha));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.agubler.changelog;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReleaseWindowTest {
+
+    private static final long DAY = 24L * 60L * 60L * 1000L;
+
+    private static final long NOW = 1500000000000L;
+
+    private static String section(String title, long time) {
+        return MarkdownRenderer.releaseTitle(title) + new Date(time).toString() + ")\n- [#1](url1) Change\n";
+    }
+
+    @Test
+    public void testArchiveName() {
+        assertThat(ReleaseWindow.archiveName("CHANGELOG.md", 1), is(equalTo("CHANGELOG-1.x.md")));
+        assertThat(ReleaseWindow.archiveName("docs/CHANGELOG.md", 2), is(equalTo("docs/CHANGELOG-2.x.md")));
+        assertThat(ReleaseWindow.archiveName("docs.v1/CHANGES", 3), is(equalTo("docs.v1/CHANGES-3.x")));
+    }
+
+    @Test
+    public void testUnboundedWindow() {
+        ReleaseWindow releaseWindow = new ReleaseWindow(0, 0);
+
+        assertThat(releaseWindow.isBounded(), is(false));
+        assertThat(releaseWindow.getMaxReleases(), is(equalTo(Integer.MAX_VALUE)));
+        assertThat(releaseWindow.getCutoff(NOW), is(nullValue()));
+    }
+
+    @Test
+    public void testSectionDate() {
+        assertThat(ReleaseWindow.sectionDate(section("1.0.0", NOW)), is(equalTo(new Date(NOW / 1000 * 1000))));
+        assertThat(ReleaseWindow.sectionDate("\n###1.0.0 (yesterday)\n"), is(nullValue()));
+    }
+
+    @Test
+    public void testTruncateToMaxReleases() {
+        String releasesText = section("1.2.0", NOW) + section("1.1.0", NOW - DAY) + section("1.0.0", NOW - 2 * DAY);
+
+        assertThat(ReleaseWindow.sections(releasesText).size(), is(equalTo(3)));
+        assertThat(ReleaseWindow.truncate(releasesText, 2, null),
+                is(equalTo(section("1.2.0", NOW) + section("1.1.0", NOW - DAY))));
+        assertThat(ReleaseWindow.truncate(releasesText, 0, null), is(equalTo("")));
+    }
+
+    @Test
+    public void testTruncateToCutoff() {
+        String releasesText = section("1.2.0", NOW) + section("1.1.0", NOW - 10 * DAY) + section("1.0.0", NOW - 40 * DAY);
+        ReleaseWindow releaseWindow = new ReleaseWindow(0, 30);
+
+        assertThat(ReleaseWindow.truncate(releasesText, releaseWindow.getMaxReleases(), releaseWindow.getCutoff(NOW)),
+                is(equalTo(section("1.2.0", NOW) + section("1.1.0", NOW - 10 * DAY))));
+    }
+}
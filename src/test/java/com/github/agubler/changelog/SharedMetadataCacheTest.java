@@ -0,0 +1,107 @@
+package com.github.agubler.changelog;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class SharedMetadataCacheTest {
+
+    private SharedMetadataCache cache = new SharedMetadataCache();
+
+    @Test
+    public void testConcurrentFetchesShared() throws Exception {
+        final AtomicInteger fetches = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> loader = new Callable<String>() {
+            public String call() throws Exception {
+                fetches.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return "tags";
+            }
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executorService.submit(new Callable<String>() {
+                public String call() throws IOException {
+                    return cache.get("github.com/agubler/changelog:tags", 60000, loader);
+                }
+            });
+            Future<String> second = executorService.submit(new Callable<String>() {
+                public String call() throws IOException {
+                    return cache.get("github.com/agubler/changelog:tags", 60000, loader);
+                }
+            });
+            //both lookups are registered before the fetch completes
+            while (cache.getHits() + cache.getMisses() < 2) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertThat(first.get(), is(equalTo("tags")));
+            assertThat(second.get(), is(equalTo("tags")));
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertThat(fetches.get(), is(equalTo(1)));
+        assertThat(cache.getHitRate(), is(equalTo(50)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        cache.setMaxSizeMb(1);
+        String value = new String(new char[200 * 1024]).replace('\0', 'a');
+        cache.get("a", 0, constant(value));
+        cache.get("b", 0, constant(value));
+        cache.get("a", 0, constant(value));
+        cache.get("c", 0, constant(value));
+
+        assertThat(cache.getEntryCount(), is(equalTo(2)));
+        assertThat(cache.getEvictions(), is(equalTo(1L)));
+        cache.get("a", 0, constant(value));
+        assertThat(cache.getMisses(), is(equalTo(3L)));
+    }
+
+    @Test
+    public void testFailureNotCached() throws Exception {
+        try {
+            cache.get("a", 0, new Callable<String>() {
+                public String call() throws IOException {
+                    throw new IOException("Not Found (404)");
+                }
+            });
+            fail("Expected the fetch to fail");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is(equalTo("Not Found (404)")));
+        }
+        assertThat(cache.get("a", 0, constant("found")), is(equalTo("found")));
+    }
+
+    @Test
+    public void testSharedValueNotKept() throws Exception {
+        assertThat(cache.share("a:tags:", constant("1.0.0")), is(equalTo("1.0.0")));
+        //the tag moved, the next build sees it at once
+        assertThat(cache.share("a:tags:", constant("1.1.0")), is(equalTo("1.1.0")));
+        assertThat(cache.getEntryCount(), is(equalTo(0)));
+        assertThat(cache.getMisses(), is(equalTo(2L)));
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
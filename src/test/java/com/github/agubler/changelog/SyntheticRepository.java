@@ -0,0 +1,577 @@
+package com.github.agubler.changelog;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.eclipse.egit.github.core.TreeEntry;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A repository generated on the fly and served by a {@link GitHubStubServer}, for running whole change log generations
+ * offline. The history is linear: every release adds the same number of commits and is tagged on its last commit, and
+ * the head branch is a further release ahead of the last tag. The commit messages cycle through the configured shapes,
+ * and every merge and squash commit has a closed pull request. The files written to the repository, through the
+ * contents api or the git data api, are kept so the next generation reads them back.
+ */
+public class SyntheticRepository {
+
+    /**
+     * A merge commit of a pull request, "Merge pull request #n from ..." with the title in the second paragraph
+     */
+    public static final String MERGE = "merge";
+
+    /**
+     * A squash merge of a pull request, the title followed by "(#n)"
+     */
+    public static final String SQUASH = "squash";
+
+    /**
+     * A commit pushed directly to the branch
+     */
+    public static final String PLAIN = "plain";
+
+    /**
+     * The size above which the contents api leaves out the content of a file, as github does
+     */
+    private static final int MAX_CONTENT_SIZE = 1024 * 1024;
+
+    /**
+     * The time of the first commit, every later commit is an hour after the one before
+     */
+    private static final long FIRST_COMMIT_TIME = 1388534400000L;
+
+    private final String owner;
+
+    private final String name;
+
+    private int tags = 10;
+
+    private int commitsPerRelease = 10;
+
+    private String[] messageShapes = {MERGE, SQUASH, PLAIN};
+
+    private boolean annotatedTags;
+
+    private String headBranch = ChangeLogService.DEFAULT_HEAD_BRANCH;
+
+    private int maxPageSize = 100;
+
+    private int maxCompareCommits = 250;
+
+    private String jiraProject;
+
+    /**
+     * The files of the repository by path
+     */
+    private final Map<String, byte[]> files = Collections.synchronizedMap(new HashMap<String, byte[]>());
+
+    /**
+     * The blobs created through the git data api by sha
+     */
+    private final Map<String, byte[]> blobs = Collections.synchronizedMap(new HashMap<String, byte[]>());
+
+    /**
+     * The files of the trees created through the git data api, by tree sha
+     */
+    private final Map<String, Map<String, String>> trees = Collections.synchronizedMap(new HashMap<String, Map<String, String>>());
+
+    /**
+     * The trees of the commits created through the git data api, by commit sha
+     */
+    private final Map<String, String> commitTrees = Collections.synchronizedMap(new HashMap<String, String>());
+
+    private int created;
+
+    public SyntheticRepository(String owner, String name) {
+        this.owner = owner;
+        this.name = name;
+    }
+
+    /**
+     * Sets the number of tags, the oldest is the first release
+     */
+    public SyntheticRepository setTags(int tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    /**
+     * Sets the number of commits in every release, including the upcoming release on the head branch
+     */
+    public SyntheticRepository setCommitsPerRelease(int commitsPerRelease) {
+        this.commitsPerRelease = commitsPerRelease;
+        return this;
+    }
+
+    /**
+     * Sets the shapes the commit messages cycle through, {@link #MERGE}, {@link #SQUASH} or {@link #PLAIN}
+     */
+    public SyntheticRepository setMessageShapes(String... messageShapes) {
+        this.messageShapes = messageShapes;
+        return this;
+    }
+
+    /**
+     * Makes every other tag annotated, so its ref points to a tag object that needs peeling
+     */
+    public SyntheticRepository setAnnotatedTags(boolean annotatedTags) {
+        this.annotatedTags = annotatedTags;
+        return this;
+    }
+
+    public SyntheticRepository setHeadBranch(String headBranch) {
+        this.headBranch = headBranch;
+        return this;
+    }
+
+    /**
+     * Sets the largest page of a listing, github allows 100 items
+     */
+    public SyntheticRepository setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    /**
+     * Sets the most commits a compare lists, github lists 250 and the history has to be walked for the rest
+     */
+    public SyntheticRepository setMaxCompareCommits(int maxCompareCommits) {
+        this.maxCompareCommits = maxCompareCommits;
+        return this;
+    }
+
+    /**
+     * Starts every pull request title with the key of a jira issue of the project, numbered as the pull request
+     */
+    public SyntheticRepository setJiraProject(String jiraProject) {
+        this.jiraProject = jiraProject;
+        return this;
+    }
+
+    /**
+     * Returns the name of the tag of a release, the releases count up through the patch, minor and major versions
+     *
+     * @param release The release, 0 for the oldest
+     */
+    public static String tagName(int release) {
+        return (release / 100 + 1) + "." + (release / 10 % 10) + "." + (release % 10);
+    }
+
+    /**
+     * Returns the sha of a commit
+     *
+     * @param commit The commit, 0 for the oldest
+     */
+    public static String sha(int commit) {
+        return String.format("%040x", commit + 1);
+    }
+
+    /**
+     * Returns the content of a file written to the repository, null if there is none
+     */
+    public String getFile(String path) throws IOException {
+        byte[] content = files.get(path);
+        return content != null ? new String(content, "UTF-8") : null;
+    }
+
+    /**
+     * Writes a file to the repository
+     */
+    public void putFile(String path, String content) throws IOException {
+        files.put(path, content.getBytes("UTF-8"));
+    }
+
+    /**
+     * Registers the repository with the server, it answers every request under /repos/owner/name
+     */
+    public void register(GitHubStubServer server) {
+        final String prefix = GitHubStubServer.API_PREFIX + "/repos/" + owner + "/" + name;
+        server.handle("/repos/" + owner + "/" + name, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath().substring(prefix.length());
+                String method = exchange.getRequestMethod();
+                if (path.isEmpty()) {
+                    GitHubStubServer.respond(exchange, 200, GsonUtils.toJson(repository()));
+                } else if (path.startsWith("/git/matching-refs/tags/")) {
+                    GitHubStubServer.respondPage(exchange, tagRefs(path.substring("/git/matching-refs/tags/".length())), maxPageSize);
+                } else if (path.startsWith("/git/tags/")) {
+                    respond(exchange, tagObject(path.substring("/git/tags/".length())));
+                } else if (path.equals("/git/ref/heads/" + headBranch)) {
+                    respond(exchange, reference("refs/heads/" + headBranch, sha(commitCount() - 1)));
+                } else if (path.startsWith("/compare/")) {
+                    respond(exchange, compare(path.substring("/compare/".length())));
+                } else if (path.equals("/commits")) {
+                    GitHubStubServer.respondPage(exchange, history(GitHubStubServer.queryParams(exchange).get("sha")), maxPageSize);
+                } else if (path.startsWith("/commits/")) {
+                    int commit = commitIndex(path.substring("/commits/".length()));
+                    respond(exchange, commit >= 0 ? commit(commit) : null);
+                } else if (path.equals("/pulls")) {
+                    GitHubStubServer.respondPage(exchange, pullRequests(), maxPageSize);
+                } else if (path.startsWith("/contents")) {
+                    String filePath = path.length() > "/contents/".length() ? path.substring("/contents/".length()) : "";
+                    if ("PUT".equals(method)) {
+                        putContents(exchange, filePath);
+                    } else {
+                        respond(exchange, contents(filePath));
+                    }
+                } else if (path.startsWith("/git/")) {
+                    gitData(exchange, method, path.substring("/git/".length()));
+                } else {
+                    respond(exchange, null);
+                }
+            }
+        });
+    }
+
+    private int commitCount() {
+        return (tags + 1) * commitsPerRelease;
+    }
+
+    /**
+     * Returns the commit a sha names, -1 if it is not a commit of the history
+     */
+    private int commitIndex(String sha) {
+        try {
+            int commit = Integer.parseInt(sha, 16) - 1;
+            return sha.length() == 40 && commit >= 0 && commit < commitCount() ? commit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Map<String, Object> repository() {
+        Map<String, Object> repository = new LinkedHashMap<String, Object>();
+        repository.put("name", name);
+        repository.put("owner", Collections.singletonMap("login", owner));
+        return repository;
+    }
+
+    private List<String> tagRefs(String prefix) {
+        List<String> refs = new ArrayList<String>();
+        for (int release = 0; release < tags; release++) {
+            String tagName = tagName(release);
+            if (tagName.startsWith(prefix)) {
+                String sha = sha((release + 1) * commitsPerRelease - 1);
+                boolean annotated = annotatedTags && release % 2 == 1;
+                Map<String, Object> object = new LinkedHashMap<String, Object>();
+                object.put("sha", annotated ? "a" + sha.substring(1) : sha);
+                object.put("type", annotated ? "tag" : "commit");
+                Map<String, Object> ref = new LinkedHashMap<String, Object>();
+                ref.put("ref", "refs/tags/" + tagName);
+                ref.put("object", object);
+                refs.add(GsonUtils.toJson(ref));
+            }
+        }
+        return refs;
+    }
+
+    private Map<String, Object> tagObject(String sha) {
+        if (!sha.startsWith("a") || commitIndex("0" + sha.substring(1)) < 0) {
+            return null;
+        }
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        object.put("sha", "0" + sha.substring(1));
+        object.put("type", "commit");
+        Map<String, Object> tag = new LinkedHashMap<String, Object>();
+        tag.put("sha", sha);
+        tag.put("object", object);
+        return tag;
+    }
+
+    private static Map<String, Object> reference(String ref, String sha) {
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        object.put("sha", sha);
+        object.put("type", "commit");
+        Map<String, Object> reference = new LinkedHashMap<String, Object>();
+        reference.put("ref", ref);
+        reference.put("object", object);
+        return reference;
+    }
+
+    private Map<String, Object> compare(String range) {
+        int separator = range.indexOf("...");
+        int base = separator > 0 ? commitIndex(range.substring(0, separator)) : -1;
+        int head = separator > 0 ? commitIndex(range.substring(separator + 3)) : -1;
+        if (base < 0 || head < 0) {
+            return null;
+        }
+        List<Map<String, Object>> commits = new ArrayList<Map<String, Object>>();
+        for (int commit = base + 1; commit <= head && commits.size() < maxCompareCommits; commit++) {
+            commits.add(commit(commit));
+        }
+        Map<String, Object> compare = new LinkedHashMap<String, Object>();
+        compare.put("total_commits", Math.max(head - base, 0));
+        compare.put("merge_base_commit", Collections.singletonMap("sha", sha(Math.min(base, head))));
+        compare.put("commits", commits);
+        return compare;
+    }
+
+    /**
+     * Returns the history from a commit back to the first commit, newest first
+     */
+    private List<String> history(String sha) {
+        List<String> history = new ArrayList<String>();
+        for (int commit = commitIndex(sha); commit >= 0; commit--) {
+            history.add(GsonUtils.toJson(commit(commit)));
+        }
+        return history;
+    }
+
+    private Map<String, Object> commit(int commit) {
+        Map<String, Object> committer = new LinkedHashMap<String, Object>();
+        committer.put("name", "synthetic");
+        committer.put("date", date(commit));
+        Map<String, Object> details = new LinkedHashMap<String, Object>();
+        details.put("message", message(commit));
+        details.put("committer", committer);
+        details.put("tree", Collections.singletonMap("sha", sha(commit)));
+        Map<String, Object> summary = new LinkedHashMap<String, Object>();
+        summary.put("sha", sha(commit));
+        summary.put("commit", details);
+        summary.put("parents", commit > 0 ? Collections.singletonList(Collections.singletonMap("sha", sha(commit - 1)))
+                : Collections.emptyList());
+        return summary;
+    }
+
+    private String message(int commit) {
+        int number = commit + 1;
+        String shape = messageShapes[commit % messageShapes.length];
+        if (MERGE.equals(shape)) {
+            return "Merge pull request #" + number + " from synthetic/change-" + number + "\n\n" + title(number);
+        } else if (SQUASH.equals(shape)) {
+            return title(number) + " (#" + number + ")\n\n* squashed commit";
+        }
+        return "Fix typo " + number;
+    }
+
+    private String title(int number) {
+        return (jiraProject != null ? jiraProject + "-" + number + " " : "") + "Change " + number + " of " + name;
+    }
+
+    private static String date(int commit) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(FIRST_COMMIT_TIME + commit * 3600000L));
+    }
+
+    /**
+     * Returns the closed pull requests, the most recently updated first
+     */
+    private List<String> pullRequests() {
+        List<String> pullRequests = new ArrayList<String>();
+        for (int commit = commitCount() - 1; commit >= 0; commit--) {
+            if (!PLAIN.equals(messageShapes[commit % messageShapes.length])) {
+                Map<String, Object> pullRequest = new LinkedHashMap<String, Object>();
+                pullRequest.put("number", commit + 1);
+                pullRequest.put("title", title(commit + 1));
+                pullRequest.put("merge_commit_sha", sha(commit));
+                pullRequest.put("merged_at", date(commit));
+                pullRequest.put("updated_at", date(commit));
+                pullRequest.put("labels", Collections.emptyList());
+                pullRequests.add(GsonUtils.toJson(pullRequest));
+            }
+        }
+        return pullRequests;
+    }
+
+    /**
+     * Returns a file, or the listing of a directory, null if there is neither
+     */
+    private Object contents(String path) {
+        byte[] content = files.get(path);
+        if (content != null) {
+            Map<String, Object> file = fileMetadata(path, content);
+            //large files are left out, as github does, and read from their blob
+            file.put("encoding", content.length > MAX_CONTENT_SIZE ? "none" : "base64");
+            file.put("content", content.length > MAX_CONTENT_SIZE ? "" : Base64.encodeBase64String(content));
+            return file;
+        }
+
+        List<Map<String, Object>> listing = new ArrayList<Map<String, Object>>();
+        String directory = path.isEmpty() ? "" : path + "/";
+        synchronized (files) {
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                String filePath = file.getKey();
+                if (filePath.startsWith(directory) && filePath.indexOf('/', directory.length()) < 0) {
+                    listing.add(fileMetadata(filePath, file.getValue()));
+                }
+            }
+        }
+        return listing.isEmpty() && !path.isEmpty() ? null : listing;
+    }
+
+    private static Map<String, Object> fileMetadata(String path, byte[] content) {
+        Map<String, Object> file = new LinkedHashMap<String, Object>();
+        file.put("type", "file");
+        file.put("name", path.substring(path.lastIndexOf('/') + 1));
+        file.put("path", path);
+        file.put("sha", blobSha(content));
+        file.put("size", content.length);
+        return file;
+    }
+
+    /**
+     * Creates or updates a file, refusing an update that does not name the sha of the file it replaces
+     */
+    private void putContents(HttpExchange exchange, String path) throws IOException {
+        ContentRequest request = GsonUtils.fromJson(readBody(exchange), ContentRequest.class);
+        byte[] content = Base64.decodeBase64(request.content);
+        synchronized (files) {
+            byte[] existing = files.get(path);
+            if (existing != null ? !blobSha(existing).equals(request.sha) : request.sha != null) {
+                GitHubStubServer.respond(exchange, 409, "{\"message\":\"" + path + " does not match " + request.sha + "\"}");
+                return;
+            }
+            files.put(path, content);
+        }
+        respond(exchange, Collections.singletonMap("content", fileMetadata(path, content)));
+    }
+
+    /**
+     * Answers the git data api requests that commit a large file: the blob, the tree and commit created on the head of
+     * the branch, and the update of the branch, which writes the files of the tree
+     */
+    private void gitData(HttpExchange exchange, String method, String path) throws IOException {
+        if ("POST".equals(method) && path.equals("blobs")) {
+            byte[] content = Base64.decodeBase64(GsonUtils.fromJson(readBody(exchange), ContentRequest.class).content);
+            String sha = blobSha(content);
+            blobs.put(sha, content);
+            GitHubStubServer.respond(exchange, 201, "{\"sha\":\"" + sha + "\"}");
+        } else if ("GET".equals(method) && path.startsWith("blobs/")) {
+            String sha = path.substring("blobs/".length());
+            byte[] content = blobs.get(sha);
+            synchronized (files) {
+                for (byte[] file : files.values()) {
+                    if (content == null && blobSha(file).equals(sha)) {
+                        content = file;
+                    }
+                }
+            }
+            Map<String, Object> blob = new LinkedHashMap<String, Object>();
+            blob.put("sha", sha);
+            blob.put("encoding", "base64");
+            blob.put("content", content != null ? Base64.encodeBase64String(content) : null);
+            respond(exchange, content != null ? blob : null);
+        } else if ("GET".equals(method) && path.startsWith("refs/heads/")) {
+            respond(exchange, reference(path, sha(0)));
+        } else if ("GET".equals(method) && path.startsWith("commits/")) {
+            String sha = path.substring("commits/".length());
+            String tree = commitTrees.containsKey(sha) ? commitTrees.get(sha) : sha;
+            respond(exchange, gitObject(sha, Collections.singletonMap("sha", tree)));
+        } else if ("POST".equals(method) && path.equals("trees")) {
+            TreeRequest request = GsonUtils.fromJson(readBody(exchange), TreeRequest.class);
+            Map<String, String> entries = new HashMap<String, String>();
+            for (TreeEntry entry : request.tree) {
+                entries.put(entry.getPath(), entry.getSha());
+            }
+            String sha = createdSha('e');
+            trees.put(sha, entries);
+            GitHubStubServer.respond(exchange, 201, GsonUtils.toJson(gitObject(sha, null)));
+        } else if ("POST".equals(method) && path.equals("commits")) {
+            CommitRequest request = GsonUtils.fromJson(readBody(exchange), CommitRequest.class);
+            String sha = createdSha('c');
+            commitTrees.put(sha, request.tree);
+            GitHubStubServer.respond(exchange, 201, GsonUtils.toJson(gitObject(sha, Collections.singletonMap("sha", request.tree))));
+        } else if ("POST".equals(method) && path.startsWith("refs/heads/")) {
+            String sha = GsonUtils.fromJson(readBody(exchange), CommitRequest.class).sha;
+            Map<String, String> entries = trees.get(commitTrees.get(sha));
+            if (entries == null) {
+                GitHubStubServer.respond(exchange, 422, "{\"message\":\"Object does not exist\"}");
+                return;
+            }
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                files.put(entry.getKey(), blobs.get(entry.getValue()));
+            }
+            respond(exchange, reference("refs/" + path, sha));
+        } else {
+            respond(exchange, null);
+        }
+    }
+
+    /**
+     * Returns the sha of a tree or commit created through the git data api, which never clashes with a commit of the
+     * history
+     */
+    private synchronized String createdSha(char type) {
+        return type + String.format("%039x", ++created);
+    }
+
+    private static Map<String, Object> gitObject(String sha, Object tree) {
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+        object.put("sha", sha);
+        if (tree != null) {
+            object.put("tree", tree);
+        }
+        return object;
+    }
+
+    private static void respond(HttpExchange exchange, Object body) throws IOException {
+        if (body == null) {
+            GitHubStubServer.respond(exchange, 404, "{\"message\":\"Not Found\"}");
+        } else {
+            GitHubStubServer.respond(exchange, 200, GsonUtils.toJson(body));
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String blobSha(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + content.length + "\0").getBytes("UTF-8"));
+            return Hex.encodeHexString(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ContentRequest {
+
+        private String content;
+
+        private String sha;
+    }
+
+    private static class TreeRequest {
+
+        private List<TreeEntry> tree;
+    }
+
+    private static class CommitRequest {
+
+        private String tree;
+
+        private String sha;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.agubler.changelog;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class VersionKeyTest {
+
+    @Test
+    public void testParseIgnoresText() {
+        assertThat(VersionKey.parse("asset-version-1.0.12-rc").toString(), is(equalTo("1.0.12")));
+        assertThat(VersionKey.parse("asset-version-1.0.12"), is(equalTo(VersionKey.parse("1.0.12"))));
+    }
+
+    @Test
+    public void testCompareLargeSegments() {
+        assertThat(VersionKey.parse("release-20240101123000").compareTo(VersionKey.parse("release-20231231235959")), is(equalTo(1)));
+    }
+
+    @Test
+    public void testCompareNumerically() {
+        assertThat(VersionKey.parse("1.10.0").compareTo(VersionKey.parse("1.9.0")), is(equalTo(1)));
+        assertThat(VersionKey.parse("1.2").compareTo(VersionKey.parse("1.2.1")), is(equalTo(-1)));
+    }
+
+    @Test
+    public void testSortNewestFirst() {
+        List<RepositoryTag> tags = new ArrayList<RepositoryTag>(Arrays.asList(tag("1.0.9"), tag("1.0.10"), tag("0.9"), tag("v1.0.10")));
+        VersionKey.sortNewestFirst(tags);
+        assertThat(names(tags), is(equalTo(Arrays.asList("1.0.10", "v1.0.10", "1.0.9", "0.9"))));
+    }
+
+    private static RepositoryTag tag(String name) {
+        RepositoryTag tag = new RepositoryTag();
+        tag.setName(name);
+        return tag;
+    }
+
+    private static List<String> names(List<RepositoryTag> tags) {
+        List<String> names = new ArrayList<String>();
+        for (RepositoryTag tag : tags) {
+            names.add(tag.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.agubler.changelog;
+
+import hudson.FilePath;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class WorkspaceReleaseSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File repository;
+
+    private WorkspaceReleaseSource releaseSource;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = folder.newFolder("repository");
+        git("init", "-q");
+        git("symbolic-ref", "HEAD", "refs/heads/master");
+        commit("Initial commit");
+        git("tag", "1.0.0");
+        mergePullRequest(1, "Add the ABC-1 feature");
+        commit("Fix a typo");
+        mergePullRequest(2, "Fix the ABC-2 bug");
+        git("tag", "-a", "-m", "Release 1.1.0", "1.1.0");
+        git("checkout", "-q", "-b", "integration");
+        mergePullRequest(3, "Upcoming change");
+        git("checkout", "-q", "master");
+
+        releaseSource = new WorkspaceReleaseSource(new FilePath(repository), new CommitMessageClassifier(false, null));
+    }
+
+    @Test
+    public void testAnnotatedTagsPeeled() throws Exception {
+        List<RepositoryTag> tags = releaseSource.getTags("");
+        VersionKey.sortNewestFirst(tags);
+        assertThat(tags.size(), is(equalTo(2)));
+        assertThat(tags.get(0).getName(), is(equalTo("1.1.0")));
+        assertThat(tags.get(0).getCommit().getSha(), is(equalTo(git("rev-parse", "1.1.0^{commit}"))));
+        assertThat(tags.get(1).getCommit().getSha(), is(equalTo(git("rev-parse", "1.0.0"))));
+    }
+
+    @Test
+    public void testTagPrefix() throws Exception {
+        List<RepositoryTag> tags = releaseSource.getTags("1.1");
+        assertThat(tags.size(), is(equalTo(1)));
+        assertThat(tags.get(0).getName(), is(equalTo("1.1.0")));
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        ChangeLogRelease release = releaseSource.getRelease(git("rev-parse", "1.0.0"), git("rev-parse", "1.1.0^{commit}"));
+        assertThat(numbers(release), is(equalTo(Arrays.asList("1", "2"))));
+        assertThat(release.getEntries().get(0).getTitle(), is(equalTo("Add the ABC-1 feature")));
+        assertThat(release.getEntries().get(1).getJiraKeys(), is(equalTo(Arrays.asList("ABC-2"))));
+        assertThat(release.getDate().getTime() / 1000, is(equalTo(Long.parseLong(git("log", "-1", "--format=%ct", "1.1.0")))));
+    }
+
+    @Test
+    public void testIndexedCommitResolvedBySha() throws Exception {
+        String squashSha = git("rev-parse", "1.1.0^{commit}^1");
+        CommitMessageClassifier classifier = new CommitMessageClassifier(false, null,
+                Collections.singletonMap(squashSha, new ChangeLogEntry("7", "Squashed change")));
+        releaseSource = new WorkspaceReleaseSource(new FilePath(repository), classifier);
+        ChangeLogRelease release = releaseSource.getRelease(git("rev-parse", "1.0.0"), git("rev-parse", "1.1.0^{commit}"));
+        assertThat(numbers(release), is(equalTo(Arrays.asList("1", "7", "2"))));
+    }
+
+    @Test
+    public void testBranchSha() throws Exception {
+        String integrationSha = releaseSource.getBranchSha("integration");
+        assertThat(integrationSha, is(equalTo(git("rev-parse", "integration"))));
+        assertThat(numbers(releaseSource.getRelease(git("rev-parse", "1.1.0^{commit}"), integrationSha)), is(equalTo(Arrays.asList("3"))));
+        assertThat(releaseSource.getBranchSha("missing"), is(nullValue()));
+    }
+
+    private void commit(String message) throws Exception {
+        git("commit", "-q", "--allow-empty", "-m", message);
+    }
+
+    private void mergePullRequest(int number, String title) throws Exception {
+        String base = git("rev-parse", "--abbrev-ref", "HEAD");
+        git("checkout", "-q", "-b", "feature-" + number);
+        commit(title);
+        git("checkout", "-q", base);
+        git("merge", "-q", "--no-ff", "-m", "Merge pull request #" + number + " from agubler/feature-" + number + "\n\n" + title,
+                "feature-" + number);
+    }
+
+    private String git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.addAll(Arrays.asList("git", "-c", "user.name=Test", "-c", "user.email=test@example.com",
+                "-c", "commit.gpgsign=false", "-c", "tag.gpgsign=false"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(repository).redirectErrorStream(true).start();
+        String output = read(process.getInputStream()).trim();
+        if (process.waitFor() != 0) {
+            throw new IOException("git " + args[0] + " failed: " + output);
+        }
+        return output;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString("UTF-8");
+    }
+
+    private static List<String> numbers(ChangeLogRelease release) {
+        List<String> numbers = new ArrayList<String>();
+        for (ChangeLogEntry entry : release.getEntries()) {
+            numbers.add(entry.getNumber());
+        }
+        return numbers;
+    }
+}